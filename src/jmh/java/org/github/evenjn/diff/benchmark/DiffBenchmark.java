@@ -0,0 +1,106 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.github.evenjn.diff.DiffPair;
+import org.github.evenjn.diff.DiffingTuple;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.Equivalencer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of {@link DiffingTuple#diff(org.github.evenjn.yarn.Tuple,
+ * Equivalencer) diff}, reading every pair of the alignment.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class DiffBenchmark {
+
+	/**
+	 * The size of the original tuple: small, medium and huge.
+	 */
+	@Param( { "100", "10000", "100000" } )
+	public int size;
+
+	/**
+	 * The probability that an element of the original tuple is edited.
+	 */
+	@Param( { "0.001", "0.05" } )
+	public double edit_ratio;
+
+	@Param( { "basic", "custom" } )
+	public String equivalencer_name;
+
+	private int[] original;
+
+	private int[] revised;
+
+	private DiffingTuple<Integer> original_boxed;
+
+	private KnittingTuple<Integer> revised_boxed;
+
+	private Equivalencer<Integer, Integer> equivalencer;
+
+	@Setup
+	public void setup( ) {
+		Random random = new Random( 1 );
+		original = Inputs.original( random, size );
+		revised = Inputs.revised( random, original, edit_ratio );
+		original_boxed = DiffingTuple.wrap( Inputs.boxed( original ) );
+		revised_boxed = Inputs.boxed( revised );
+		equivalencer = Inputs.equivalencer( equivalencer_name );
+	}
+
+	@Benchmark
+	public void diff( Blackhole blackhole ) {
+		for ( DiffPair<Integer, Integer> pair : original_boxed.diff( revised_boxed,
+				equivalencer ) ) {
+			blackhole.consume( pair );
+		}
+	}
+
+	/**
+	 * The same alignment, computed on the arrays of integers. This does not
+	 * depend on the equivalencer.
+	 */
+	@Benchmark
+	public void diff_int( Blackhole blackhole ) {
+		for ( DiffPair<Integer, Integer> pair : DiffingTuple.diff( original,
+				revised ) ) {
+			blackhole.consume( pair );
+		}
+	}
+}
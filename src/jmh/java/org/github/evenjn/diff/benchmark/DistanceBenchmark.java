@@ -0,0 +1,107 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.github.evenjn.diff.DiffingTuple;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.Equivalencer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link DiffingTuple#distance_levenshtein(
+ * org.github.evenjn.yarn.Tuple, Equivalencer) distance_levenshtein} and
+ * {@link DiffingTuple#distance_lcs(org.github.evenjn.yarn.Tuple, Equivalencer)
+ * distance_lcs}, with and without a bound on the distance.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class DistanceBenchmark {
+
+	/**
+	 * The size of the original tuple: small, medium and huge. Sizes are smaller
+	 * than those of {@link DiffBenchmark}, because these distances take time
+	 * proportional to the product of the sizes.
+	 */
+	@Param( { "100", "1000", "10000" } )
+	public int size;
+
+	/**
+	 * The probability that an element of the original tuple is edited.
+	 */
+	@Param( { "0.001", "0.05" } )
+	public double edit_ratio;
+
+	@Param( { "basic", "custom" } )
+	public String equivalencer_name;
+
+	private DiffingTuple<Integer> original;
+
+	private KnittingTuple<Integer> revised;
+
+	private Equivalencer<Integer, Integer> equivalencer;
+
+	@Setup
+	public void setup( ) {
+		Random random = new Random( 1 );
+		int[] array = Inputs.original( random, size );
+		original = DiffingTuple.wrap( Inputs.boxed( array ) );
+		revised = Inputs.boxed( Inputs.revised( random, array, edit_ratio ) );
+		equivalencer = Inputs.equivalencer( equivalencer_name );
+	}
+
+	@Benchmark
+	public int distance_levenshtein( ) {
+		return original.distance_levenshtein( revised, equivalencer );
+	}
+
+	@Benchmark
+	public int distance_lcs( ) {
+		return original.distance_lcs( revised, equivalencer );
+	}
+
+	/**
+	 * Whether the Levenshtein distance is at most 10, which rejects most pairs
+	 * after a few elements when the edit ratio is high.
+	 */
+	@Benchmark
+	public int distance_levenshtein_bounded( ) {
+		return original.distance_levenshtein( revised, equivalencer, 10 );
+	}
+
+	@Benchmark
+	public int distance_lcs_bounded( ) {
+		return original.distance_lcs( revised, equivalencer, 10 );
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+
+/**
+ * Deterministic inputs shared by the benchmarks.
+ *
+ * An input is a random sequence over an alphabet of 1000 symbols, which
+ * resembles the lines of a text file, and a revision of it where each element
+ * is deleted, replaced or preceded by an insertion with the given
+ * probability.
+ */
+class Inputs {
+
+	static final int alphabet = 1000;
+
+	static int[] original( Random random, int size ) {
+		int[] result = new int[size];
+		for ( int i = 0; i < size; i++ ) {
+			result[i] = random.nextInt( alphabet );
+		}
+		return result;
+	}
+
+	static int[] revised( Random random, int[] original, double edit_ratio ) {
+		int[] result = new int[original.length * 2];
+		int size = 0;
+		for ( int element : original ) {
+			if ( random.nextDouble( ) >= edit_ratio ) {
+				result[size++] = element;
+				continue;
+			}
+			switch ( random.nextInt( 3 ) ) {
+				case 0:
+					// deletion
+					break;
+				case 1:
+					// substitution
+					result[size++] = random.nextInt( alphabet );
+					break;
+				default:
+					// insertion
+					result[size++] = random.nextInt( alphabet );
+					result[size++] = element;
+					break;
+			}
+		}
+		int[] trimmed = new int[size];
+		System.arraycopy( result, 0, trimmed, 0, size );
+		return trimmed;
+	}
+
+	static KnittingTuple<Integer> boxed( int[] array ) {
+		ArrayList<Integer> result = new ArrayList<>( array.length );
+		for ( int element : array ) {
+			result.add( element );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	/**
+	 * Returns the equivalencer with the argument name: "basic" is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer},
+	 * "custom" is an equivalencer the library knows nothing about.
+	 */
+	static Equivalencer<Integer, Integer> equivalencer( String name ) {
+		switch ( name ) {
+			case "basic":
+				return new BasicEquivalencer<Integer, Integer>( );
+			case "custom":
+				return ( front, back ) -> front.intValue( ) == back.intValue( );
+			default:
+				throw new IllegalArgumentException( name );
+		}
+	}
+}
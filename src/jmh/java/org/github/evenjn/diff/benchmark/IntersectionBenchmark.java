@@ -0,0 +1,93 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.github.evenjn.diff.DiffingTuple;
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of
+ * {@link DiffingTuple#longestCommonSubtupleIntersection(
+ * org.github.evenjn.yarn.Cursor, Equivalencer)
+ * longestCommonSubtupleIntersection}, which aligns one tuple with many masks.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class IntersectionBenchmark {
+
+	@Param( { "100", "10000" } )
+	public int size;
+
+	@Param( { "4", "32" } )
+	public int masks;
+
+	/**
+	 * The probability that an element of the original tuple is edited in a
+	 * mask.
+	 */
+	@Param( { "0.001", "0.05" } )
+	public double edit_ratio;
+
+	@Param( { "basic", "custom" } )
+	public String equivalencer_name;
+
+	private DiffingTuple<Integer> original;
+
+	private ArrayList<Tuple<Integer>> revised;
+
+	private Equivalencer<Integer, Integer> equivalencer;
+
+	@Setup
+	public void setup( ) {
+		Random random = new Random( 1 );
+		int[] array = Inputs.original( random, size );
+		original = DiffingTuple.wrap( Inputs.boxed( array ) );
+		revised = new ArrayList<>( );
+		for ( int i = 0; i < masks; i++ ) {
+			revised.add( Inputs.boxed( Inputs.revised( random, array, edit_ratio ) ) );
+		}
+		equivalencer = Inputs.equivalencer( equivalencer_name );
+	}
+
+	@Benchmark
+	public Tuple<Integer> intersection( ) {
+		return original.longestCommonSubtupleIntersection(
+				KnittingCursor.wrap( revised.iterator( ) ), equivalencer );
+	}
+}
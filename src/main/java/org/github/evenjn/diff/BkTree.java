@@ -0,0 +1,445 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>BkTree</h1>
+ *
+ * <p>
+ * A {@code BkTree} is an index of tuples that finds the tuples close to a
+ * given tuple, where closeness is measured by the
+ * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance" >Levenshtein
+ * distance</a>.
+ * </p>
+ *
+ * <p>
+ * The index is a <a href= "https://en.wikipedia.org/wiki/BK-tree" >BK-tree</a>:
+ * each tuple is stored in a node, and the children of a node are labelled by
+ * their distance from it. By the triangle inequality, a search that knows the
+ * distance between the tuple searched for and a node visits only the children
+ * whose labels are close to that distance. Distances are computed with a
+ * bound, so a node far from the tuple searched for is dismissed after
+ * comparing few elements.
+ * </p>
+ *
+ * <p>
+ * Searches may run concurrently with each other. Adding a tuple waits for the
+ * running searches to complete, and the searches that start in the meantime
+ * wait for the tuple to be added. The equivalencer may be invoked
+ * concurrently by several threads.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <K>
+ *          The type of elements in the tuples.
+ * @since 1.0
+ */
+public final class BkTree<K> {
+
+	private static final class Node<K> {
+
+		private final Tuple<K> tuple;
+
+		/**
+		 * The symbols of the elements of the tuple, or {@code null} when elements
+		 * are compared by the equivalencer.
+		 */
+		private final int[] symbols;
+
+		/**
+		 * The number of tuples added before this one.
+		 */
+		private final int order;
+
+		/**
+		 * The labels of the children, in increasing order.
+		 */
+		private int[] edges = new int[0];
+
+		private ArrayList<Node<K>> children = new ArrayList<>( 0 );
+
+		private Node(Tuple<K> tuple, int[] symbols, int order) {
+			this.tuple = tuple;
+			this.symbols = symbols;
+			this.order = order;
+		}
+
+		/**
+		 * Returns the index of the first child whose label is at least
+		 * {@code edge}.
+		 */
+		private int search( int edge ) {
+			int index = Arrays.binarySearch( edges, 0, children.size( ), edge );
+			return index < 0 ? -index - 1 : index;
+		}
+
+		private int maxEdge( ) {
+			return children.isEmpty( ) ? 0 : edges[children.size( ) - 1];
+		}
+	}
+
+	private static final class Found<K> implements
+			Neighbor<K> {
+
+		private final Node<K> node;
+
+		private final int distance;
+
+		private Found(Node<K> node, int distance) {
+			this.node = node;
+			this.distance = distance;
+		}
+
+		@Override
+		public Tuple<K> tuple( ) {
+			return node.tuple;
+		}
+
+		@Override
+		public int distance( ) {
+			return distance;
+		}
+	}
+
+	/**
+	 * Orders neighbors by distance, and then by the order they were added.
+	 */
+	private static final Comparator<Found<?>> closer =
+			Comparator.<Found<?>> comparingInt( found -> found.distance )
+					.thenComparingInt( found -> found.node.order );
+
+	/**
+	 * <p>
+	 * {@code nu} returns an empty index, that tells whether elements are
+	 * equivalent using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @return An empty index.
+	 * @since 1.0
+	 */
+	public static <K> BkTree<K> nu( ) {
+		return nu( new BasicEquivalencer<K, K>( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code nu} returns an empty index, that tells whether elements are
+	 * equivalent using the argument {@code equivalencer}.
+	 * </p>
+	 *
+	 * <p>
+	 * The equivalencer must be reflexive, symmetric and transitive, otherwise
+	 * the Levenshtein distance is not a metric, and searches may miss tuples.
+	 * When it is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, each
+	 * element is mapped to an integer symbol once, when its tuple is added or
+	 * searched for, and distances are computed on symbols.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return An empty index.
+	 * @throws IllegalArgumentException
+	 *           when {@code equivalencer} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <K> BkTree<K> nu( Equivalencer<K, K> equivalencer ) {
+		if ( equivalencer == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new BkTree<K>( equivalencer );
+	}
+
+	private final Equivalencer<K, K> equivalencer;
+
+	private final Interner<K, K> interner;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock( );
+
+	private Node<K> root;
+
+	private int size;
+
+	private BkTree(Equivalencer<K, K> equivalencer) {
+		this.equivalencer = equivalencer;
+		this.interner = Interner.of( equivalencer );
+	}
+
+	/**
+	 * <p>
+	 * {@code add} adds the argument tuple to this index.
+	 * </p>
+	 *
+	 * <p>
+	 * The tuple may not be modified after it is added.
+	 * </p>
+	 *
+	 * @param tuple
+	 *          The tuple to add.
+	 * @throws IllegalArgumentException
+	 *           when {@code tuple} is {@code null}.
+	 * @since 1.0
+	 */
+	public void add( Tuple<K> tuple ) {
+		if ( tuple == null ) {
+			throw new IllegalArgumentException( );
+		}
+		lock.writeLock( ).lock( );
+		try {
+			int[] symbols = interner == null ? null : interner.back( tuple );
+			Node<K> node = new Node<K>( tuple, symbols, size );
+			Node<K> current = root;
+			while ( current != null ) {
+				int edge = distance( tuple, symbols, current, Integer.MAX_VALUE );
+				int index = current.search( edge );
+				if ( index == current.children.size( )
+						|| current.edges[index] != edge ) {
+					if ( current.edges.length == current.children.size( ) ) {
+						current.edges = Arrays.copyOf( current.edges,
+								Math.max( 2, 2 * current.edges.length ) );
+					}
+					System.arraycopy( current.edges, index, current.edges, index + 1,
+							current.children.size( ) - index );
+					current.edges[index] = edge;
+					current.children.add( index, node );
+					break;
+				}
+				current = current.children.get( index );
+			}
+			if ( root == null ) {
+				root = node;
+			}
+			size++;
+		}
+		finally {
+			lock.writeLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code size} returns the number of tuples in this index.
+	 * </p>
+	 *
+	 * @return The number of tuples in this index.
+	 * @since 1.0
+	 */
+	public int size( ) {
+		lock.readLock( ).lock( );
+		try {
+			return size;
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code within} returns the tuples in this index whose distance from the
+	 * argument {@code query} is not larger than the argument
+	 * {@code max_distance}.
+	 * </p>
+	 *
+	 * <p>
+	 * Tuples are sorted by increasing distance. Tuples at the same distance are
+	 * sorted in the order they were added.
+	 * </p>
+	 *
+	 * @param query
+	 *          The tuple to search for.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @return The tuples within {@code max_distance} of {@code query}, with
+	 *         their distances.
+	 * @throws IllegalArgumentException
+	 *           when {@code query} is {@code null}, or when
+	 *           {@code max_distance} is negative.
+	 * @since 1.0
+	 */
+	public Tuple<Neighbor<K>> within( Tuple<K> query, int max_distance ) {
+		if ( query == null || max_distance < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		ArrayList<Found<K>> result = new ArrayList<>( );
+		lock.readLock( ).lock( );
+		try {
+			int[] symbols = interner == null ? null : interner.known( query );
+			ArrayDeque<Node<K>> stack = new ArrayDeque<>( );
+			if ( root != null ) {
+				stack.push( root );
+			}
+			while ( !stack.isEmpty( ) ) {
+				Node<K> node = stack.pop( );
+				// Beyond this bound, no child is close enough to be visited.
+				int bound = sum( max_distance, node.maxEdge( ) );
+				int distance = distance( query, symbols, node, bound );
+				if ( distance < 0 ) {
+					continue;
+				}
+				if ( distance <= max_distance ) {
+					result.add( new Found<K>( node, distance ) );
+				}
+				int low = node.search( distance - max_distance );
+				int high = node.search( sum( distance, max_distance, 1 ) );
+				for ( int index = low; index < high; index++ ) {
+					stack.push( node.children.get( index ) );
+				}
+			}
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+		result.sort( closer );
+		return KnittingTuple.wrap( new ArrayList<Neighbor<K>>( result ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code nearest} returns the tuples in this index that are closest to the
+	 * argument {@code query}, up to the argument {@code count} tuples.
+	 * </p>
+	 *
+	 * <p>
+	 * Tuples are sorted by increasing distance. Among tuples at the same
+	 * distance, those added first are preferred, and come first.
+	 * </p>
+	 *
+	 * @param query
+	 *          The tuple to search for.
+	 * @param count
+	 *          The maximum number of tuples to return. It must be non-negative.
+	 * @return The tuples closest to {@code query}, with their distances.
+	 * @throws IllegalArgumentException
+	 *           when {@code query} is {@code null}, or when {@code count} is
+	 *           negative.
+	 * @since 1.0
+	 */
+	public Tuple<Neighbor<K>> nearest( Tuple<K> query, int count ) {
+		if ( query == null || count < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		// The worst of the best tuples found so far is at the head.
+		PriorityQueue<Found<K>> best =
+				new PriorityQueue<>( Math.max( 1, count ), closer.reversed( ) );
+		lock.readLock( ).lock( );
+		try {
+			int[] symbols = interner == null ? null : interner.known( query );
+			ArrayDeque<Node<K>> stack = new ArrayDeque<>( );
+			if ( root != null && count > 0 ) {
+				stack.push( root );
+			}
+			while ( !stack.isEmpty( ) ) {
+				Node<K> node = stack.pop( );
+				// Tuples farther than the radius cannot be among the best.
+				int radius =
+						best.size( ) < count ? Integer.MAX_VALUE : best.peek( ).distance;
+				int distance = distance( query, symbols, node,
+						sum( radius, node.maxEdge( ) ) );
+				if ( distance < 0 ) {
+					continue;
+				}
+				Found<K> found = new Found<K>( node, distance );
+				if ( best.size( ) < count ) {
+					best.add( found );
+				}
+				else
+					if ( closer.compare( found, best.peek( ) ) < 0 ) {
+						best.poll( );
+						best.add( found );
+					}
+				if ( best.size( ) == count ) {
+					radius = best.peek( ).distance;
+				}
+				/*
+				 * Push the children whose labels are farthest from the distance
+				 * first, so that the most promising children are visited first, and
+				 * shrink the radius early.
+				 */
+				int low = node.search( distance - radius );
+				int high = node.search( sum( distance, radius, 1 ) );
+				while ( low < high ) {
+					if ( distance - node.edges[low] >= node.edges[high - 1]
+							- distance ) {
+						stack.push( node.children.get( low++ ) );
+					}
+					else {
+						stack.push( node.children.get( --high ) );
+					}
+				}
+			}
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+		ArrayList<Found<K>> result = new ArrayList<>( best );
+		result.sort( closer );
+		return KnittingTuple.wrap( new ArrayList<Neighbor<K>>( result ) );
+	}
+
+	/**
+	 * Returns the distance between the argument query and the tuple of the
+	 * argument node when it is not larger than {@code max}, or -1.
+	 */
+	private int distance( Tuple<K> query, int[] symbols, Node<K> node,
+			int max ) {
+		if ( symbols != null ) {
+			return Distance.levenshtein( symbols, node.symbols, interner.size( ),
+					max );
+		}
+		Tuple<K> tuple = node.tuple;
+		return Distance.levenshtein( query.size( ), tuple.size( ),
+				( i, j ) -> equivalencer.equivalent( query.get( i ), tuple.get( j ) ),
+				max );
+	}
+
+	/**
+	 * Returns the sum of the arguments, or {@code Integer.MAX_VALUE} when the
+	 * sum is larger.
+	 */
+	private static int sum( int... terms ) {
+		long sum = 0;
+		for ( int term : terms ) {
+			sum += term;
+		}
+		return (int) Math.min( Integer.MAX_VALUE, sum );
+	}
+}
@@ -0,0 +1,498 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Cursor;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>Consensus</h1>
+ *
+ * <p>
+ * A {@code Consensus} accumulates the support of the elements of a base tuple
+ * by a stream of other tuples, called masks.
+ * </p>
+ *
+ * <p>
+ * Each mask is aligned with the base tuple as by
+ * {@link DiffingTuple#diff(Tuple, Equivalencer, DiffOptions)}. An element of
+ * the base tuple is supported by a mask when the alignment pairs it with an
+ * equivalent element of the mask. The support of an element is the number of
+ * masks that support it.
+ * </p>
+ *
+ * <p>
+ * Masks are not retained: a {@code Consensus} keeps one counter for each
+ * element of the base tuple, whatever the number of masks. The elements
+ * supported by all the masks are the
+ * {@linkplain DiffingTuple#longestCommonSubtupleIntersection(Cursor)
+ * intersection} of the longest common subsequences, those supported by at
+ * least one mask are their
+ * {@linkplain DiffingTuple#longestCommonSubtupleUnion(Cursor) union}, and
+ * thresholds in between select the elements that most masks agree on.
+ * </p>
+ *
+ * <p>
+ * Masks may be added concurrently by several threads, and their alignments are
+ * computed concurrently. Queries may run concurrently with each other and with
+ * the alignments. The equivalencer may be invoked concurrently by several
+ * threads.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <I>
+ *          The type of elements in the base tuple.
+ * @param <Y>
+ *          The type of elements in the masks.
+ * @since 1.0
+ */
+public final class Consensus<I, Y> {
+
+	/**
+	 * <p>
+	 * {@code nu} returns an accumulator with no masks, that aligns masks with
+	 * the argument {@code base} tuple using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} and
+	 * the default options.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param base
+	 *          The base tuple.
+	 * @return An accumulator with no masks.
+	 * @throws IllegalArgumentException
+	 *           when {@code base} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <K> Consensus<K, K> nu( Tuple<K> base ) {
+		return nu( base, new BasicEquivalencer<K, K>( ), DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code nu} returns an accumulator with no masks, that aligns masks with
+	 * the argument {@code base} tuple using the argument {@code equivalencer}
+	 * and the default options.
+	 * </p>
+	 *
+	 * @param <I>
+	 *          The type of elements in the base tuple.
+	 * @param <Y>
+	 *          The type of elements in the masks.
+	 * @param base
+	 *          The base tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return An accumulator with no masks.
+	 * @throws IllegalArgumentException
+	 *           when {@code base} or {@code equivalencer} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <I, Y> Consensus<I, Y> nu( Tuple<I> base,
+			Equivalencer<I, Y> equivalencer ) {
+		return nu( base, equivalencer, DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code nu} returns an accumulator with no masks, that aligns masks with
+	 * the argument {@code base} tuple using the argument {@code equivalencer},
+	 * as specified by the argument {@code options}.
+	 * </p>
+	 *
+	 * <p>
+	 * When the argument options are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, the masks added
+	 * together by {@link #addAll(Cursor)} are aligned concurrently, in the pool
+	 * of the options.
+	 * </p>
+	 *
+	 * <p>
+	 * When the argument {@code equivalencer} is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, the
+	 * elements of the base tuple are mapped to integer symbols once, and each
+	 * mask is aligned on symbols. Elements of the masks that are not equivalent
+	 * to any element of the base tuple are not assigned a symbol.
+	 * </p>
+	 *
+	 * <p>
+	 * The base tuple may not be modified while the accumulator is in use.
+	 * </p>
+	 *
+	 * @param <I>
+	 *          The type of elements in the base tuple.
+	 * @param <Y>
+	 *          The type of elements in the masks.
+	 * @param base
+	 *          The base tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute the alignments.
+	 * @return An accumulator with no masks.
+	 * @throws IllegalArgumentException
+	 *           when {@code base}, {@code equivalencer} or {@code options} is
+	 *           {@code null}.
+	 * @since 1.0
+	 */
+	public static <I, Y> Consensus<I, Y> nu( Tuple<I> base,
+			Equivalencer<I, Y> equivalencer, DiffOptions options ) {
+		if ( base == null || equivalencer == null || options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new Consensus<I, Y>( base, equivalencer, options );
+	}
+
+	private final Tuple<I> base;
+
+	private final Equivalencer<I, Y> equivalencer;
+
+	private final DiffOptions options;
+
+	/**
+	 * Holds the symbols of the elements of the base tuple. No symbol is
+	 * assigned after construction, so it may be read concurrently, and its size
+	 * does not depend on the masks.
+	 */
+	private final Interner<I, Y> interner;
+
+	/**
+	 * The symbols of the base tuple, or {@code null} when elements are compared
+	 * by the equivalencer.
+	 */
+	private final int[] symbols;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock( );
+
+	/**
+	 * For each element of the base tuple, the number of masks that support it.
+	 */
+	private final int[] support;
+
+	private int masks;
+
+	private Consensus(Tuple<I> base, Equivalencer<I, Y> equivalencer,
+			DiffOptions options) {
+		this.base = base;
+		this.equivalencer = equivalencer;
+		this.options = options;
+		this.interner = Interner.of( equivalencer );
+		this.symbols = interner == null ? null : interner.front( base );
+		this.support = new int[base.size( )];
+	}
+
+	/**
+	 * <p>
+	 * {@code add} aligns the argument mask with the base tuple, and adds its
+	 * support to the support of the elements of the base tuple.
+	 * </p>
+	 *
+	 * <p>
+	 * The alignment is computed in the invoking thread.
+	 * </p>
+	 *
+	 * @param mask
+	 *          The mask to add.
+	 * @throws IllegalArgumentException
+	 *           when {@code mask} is {@code null}.
+	 * @since 1.0
+	 */
+	public void add( Tuple<Y> mask ) {
+		if ( mask == null ) {
+			throw new IllegalArgumentException( );
+		}
+		int[] counts = new int[base.size( )];
+		count( alignments( Collections.singletonList( mask ) ).apply( 0 ),
+				counts );
+		merge( counts, 1 );
+	}
+
+	/**
+	 * <p>
+	 * {@code addAll} aligns each mask in the argument cursor with the base
+	 * tuple, and adds their support to the support of the elements of the base
+	 * tuple.
+	 * </p>
+	 *
+	 * <p>
+	 * When the options of this accumulator are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, the cursor is read by
+	 * the invoking thread in batches of masks, and the masks of a batch are
+	 * aligned concurrently. Otherwise, masks are read and aligned one at a
+	 * time. Either way, the support is the same.
+	 * </p>
+	 *
+	 * @param masks
+	 *          A cursor of masks.
+	 * @throws IllegalArgumentException
+	 *           when {@code masks} is {@code null}.
+	 * @since 1.0
+	 */
+	public void addAll( Cursor<? extends Tuple<Y>> masks ) {
+		if ( masks == null ) {
+			throw new IllegalArgumentException( );
+		}
+		int batch = options.pool == null ? 1
+				: 16 * options.pool.getParallelism( );
+		ArrayList<Tuple<Y>> targets = new ArrayList<>( );
+		for ( Tuple<Y> mask : KnittingCursor.wrap( masks ).once( ) ) {
+			if ( mask == null ) {
+				throw new IllegalArgumentException( );
+			}
+			targets.add( mask );
+			if ( targets.size( ) == batch ) {
+				addBatch( targets );
+				targets.clear( );
+			}
+		}
+		if ( !targets.isEmpty( ) ) {
+			addBatch( targets );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code masks} returns the number of masks added to this accumulator.
+	 * </p>
+	 *
+	 * @return The number of masks added to this accumulator.
+	 * @since 1.0
+	 */
+	public int masks( ) {
+		lock.readLock( ).lock( );
+		try {
+			return masks;
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code support} returns the number of masks that support the element at
+	 * the argument {@code index} of the base tuple.
+	 * </p>
+	 *
+	 * @param index
+	 *          The index of an element of the base tuple.
+	 * @return The number of masks that support the element at {@code index}.
+	 * @throws IllegalArgumentException
+	 *           when {@code index} is negative, or when it is larger than or
+	 *           equal to the size of the base tuple.
+	 * @since 1.0
+	 */
+	public int support( int index ) {
+		if ( index < 0 || index >= support.length ) {
+			throw new IllegalArgumentException( );
+		}
+		lock.readLock( ).lock( );
+		try {
+			return support[index];
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code supported} returns the elements of the base tuple that are
+	 * supported by at least {@code min_support} masks, in the order of the base
+	 * tuple.
+	 * </p>
+	 *
+	 * @param min_support
+	 *          The minimum number of masks that support an element returned.
+	 *          It must be non-negative.
+	 * @return The elements of the base tuple supported by at least
+	 *         {@code min_support} masks.
+	 * @throws IllegalArgumentException
+	 *           when {@code min_support} is negative.
+	 * @since 1.0
+	 */
+	public Tuple<I> supported( int min_support ) {
+		if ( min_support < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		ArrayList<I> result = new ArrayList<>( );
+		lock.readLock( ).lock( );
+		try {
+			for ( int j = 0; j < support.length; j++ ) {
+				if ( support[j] >= min_support ) {
+					result.add( base.get( j ) );
+				}
+			}
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	/**
+	 * <p>
+	 * {@code supported_fraction} returns the elements of the base tuple that
+	 * are supported by at least the argument {@code fraction} of the masks, in
+	 * the order of the base tuple.
+	 * </p>
+	 *
+	 * <p>
+	 * When no mask has been added, all the elements are returned.
+	 * </p>
+	 *
+	 * @param fraction
+	 *          The minimum fraction of masks that support an element returned.
+	 *          It must be between 0 and 1, inclusive.
+	 * @return The elements of the base tuple supported by at least
+	 *         {@code fraction} of the masks.
+	 * @throws IllegalArgumentException
+	 *           when {@code fraction} is not between 0 and 1.
+	 * @since 1.0
+	 */
+	public Tuple<I> supported_fraction( double fraction ) {
+		if ( !( fraction >= 0 && fraction <= 1 ) ) {
+			throw new IllegalArgumentException( );
+		}
+		ArrayList<I> result = new ArrayList<>( );
+		lock.readLock( ).lock( );
+		try {
+			for ( int j = 0; j < support.length; j++ ) {
+				// A quotient of integers is exact when it equals the fraction.
+				if ( masks == 0 || support[j] / (double) masks >= fraction ) {
+					result.add( base.get( j ) );
+				}
+			}
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	/**
+	 * Returns the number of symbols held by this accumulator, or -1 when
+	 * elements are compared by the equivalencer.
+	 */
+	int interned( ) {
+		return interner == null ? -1 : interner.size( );
+	}
+
+	/**
+	 * Returns a function that aligns the base tuple with the mask at the
+	 * argument index. The function can be applied concurrently. Elements of the
+	 * masks that have no symbol are mapped to -1, that matches no symbol of the
+	 * base tuple.
+	 */
+	private IntFunction<EditScript> alignments(
+			List<? extends Tuple<Y>> targets ) {
+		if ( interner == null ) {
+			return t -> Diff.adiff_main( base, targets.get( t ), equivalencer,
+					options, options.deadline( ) );
+		}
+		return t -> Diff.adiff_main( symbols, interner.known( targets.get( t ) ),
+				options, options.deadline( ) );
+	}
+
+	private void addBatch( ArrayList<Tuple<Y>> targets ) {
+		int n = base.size( );
+		long[] cumulative = new long[targets.size( ) + 1];
+		for ( int t = 0; t < targets.size( ); t++ ) {
+			cumulative[t + 1] = cumulative[t] + n + targets.get( t ).size( );
+		}
+		IntFunction<EditScript> alignment = alignments( targets );
+		merge( options.run( ( ) -> count( 0, targets.size( ), n, cumulative,
+				alignment, options ) ), targets.size( ) );
+	}
+
+	private void merge( int[] counts, int added ) {
+		lock.writeLock( ).lock( );
+		try {
+			for ( int j = 0; j < support.length; j++ ) {
+				support[j] += counts[j];
+			}
+			masks += added;
+		}
+		finally {
+			lock.writeLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * Returns, for each of the {@code n} elements of the base tuple, the number
+	 * of alignments from {@code from} included to {@code to} excluded where it
+	 * is paired with an equivalent element. The two halves of the alignments
+	 * are counted concurrently in separate arrays, that are then summed, so the
+	 * result does not depend on scheduling.
+	 */
+	private static int[] count( int from, int to, int n, long[] cumulative,
+			IntFunction<EditScript> alignment, DiffOptions options ) {
+		long size = cumulative[to] - cumulative[from];
+		if ( to - from > 1
+				&& options.fork( (int) Math.min( size, Integer.MAX_VALUE ) ) ) {
+			int middle = ( from + to ) >>> 1;
+			ForkJoinTask<int[]> task = ForkJoinTask.adapt( ( ) -> count( middle, to,
+					n, cumulative, alignment, options ) ).fork( );
+			int[] counts = count( from, middle, n, cumulative, alignment, options );
+			int[] other = task.join( );
+			for ( int j = 0; j < n; j++ ) {
+				counts[j] += other[j];
+			}
+			return counts;
+		}
+		int[] counts = new int[n];
+		for ( int t = from; t < to; t++ ) {
+			count( alignment.apply( t ), counts );
+		}
+		return counts;
+	}
+
+	/**
+	 * Increments the counters of the elements of the base tuple that the
+	 * argument alignment pairs with an equivalent element.
+	 */
+	private static void count( EditScript diffs, int[] counts ) {
+		int j = 0;
+		for ( int d = 0; d < diffs.size( ); d++ ) {
+			if ( diffs.kind( d ) == EditScript.EQUAL ) {
+				for ( int k = 0; k < diffs.length( d ); k++ ) {
+					counts[j + k]++;
+				}
+			}
+			j += diffs.frontLength( d );
+		}
+	}
+}
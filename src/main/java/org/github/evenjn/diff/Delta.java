@@ -0,0 +1,385 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>Delta</h1>
+ *
+ * <p>
+ * {@code Delta} writes alignments in a compact binary form, called a delta,
+ * and reads them back given the front tuple.
+ * </p>
+ *
+ * <p>
+ * A delta is a sequence of runs of pairs of the same kind. Each run is written
+ * as a variable-length integer that encodes its kind and its length, seven
+ * bits per byte. Runs of equivalent pairs and runs of front elements alone
+ * carry no elements: they are read back from the front tuple. Runs of back
+ * elements alone, and runs of pairs of elements that are not equivalent, are
+ * followed by their back elements, written by a {@link DeltaSerializer}. A
+ * zero byte ends the delta, so several deltas may be written to the same
+ * stream one after the other.
+ * </p>
+ *
+ * <p>
+ * The deltas of alignments computed by {@link DiffingTuple} are written
+ * directly from the compact form of the alignment, without creating a
+ * {@link DiffPair} for each element. Other alignments are read pair by pair,
+ * and their pairs of two elements are assumed to be equivalent.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @since 1.0
+ */
+public final class Delta {
+
+	private Delta() {
+	}
+
+	/**
+	 * <p>
+	 * {@code write} writes the delta of the argument {@code alignment} to the
+	 * argument {@code stream}.
+	 * </p>
+	 *
+	 * <p>
+	 * The bytes are written one run at a time: for large alignments, the stream
+	 * should be buffered.
+	 * </p>
+	 *
+	 * @param <F>
+	 *          The type of front elements.
+	 * @param <B>
+	 *          The type of back elements.
+	 * @param alignment
+	 *          An alignment.
+	 * @param serializer
+	 *          A system that writes back elements.
+	 * @param stream
+	 *          The stream to write the delta to.
+	 * @throws IOException
+	 *           when the stream or the serializer fail.
+	 * @throws IllegalArgumentException
+	 *           when any argument is {@code null}.
+	 * @since 1.0
+	 */
+	public static <F, B> void write(
+			Iterable<DiffPair<F, B>> alignment,
+			DeltaSerializer<? super B> serializer,
+			OutputStream stream )
+			throws IOException {
+		if ( alignment == null || serializer == null || stream == null ) {
+			throw new IllegalArgumentException( );
+		}
+		write( alignment, serializer,
+				(DataOutput) new DataOutputStream( stream ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code write} writes the delta of the argument {@code alignment} to the
+	 * argument {@code buffer}, starting at its position.
+	 * </p>
+	 *
+	 * @param <F>
+	 *          The type of front elements.
+	 * @param <B>
+	 *          The type of back elements.
+	 * @param alignment
+	 *          An alignment.
+	 * @param serializer
+	 *          A system that writes back elements.
+	 * @param buffer
+	 *          The buffer to write the delta to.
+	 * @throws IOException
+	 *           when the serializer fails.
+	 * @throws java.nio.BufferOverflowException
+	 *           when the delta does not fit in the remaining bytes of the
+	 *           buffer.
+	 * @throws IllegalArgumentException
+	 *           when any argument is {@code null}.
+	 * @since 1.0
+	 */
+	public static <F, B> void write(
+			Iterable<DiffPair<F, B>> alignment,
+			DeltaSerializer<? super B> serializer,
+			ByteBuffer buffer )
+			throws IOException {
+		if ( alignment == null || serializer == null || buffer == null ) {
+			throw new IllegalArgumentException( );
+		}
+		write( alignment, serializer,
+				(DataOutput) new DataOutputStream( new OutputStream( ) {
+
+					@Override
+					public void write( int b ) {
+						buffer.put( (byte) b );
+					}
+
+					@Override
+					public void write( byte[] b, int off, int len ) {
+						buffer.put( b, off, len );
+					}
+				} ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code read} reads a delta from the argument {@code stream}, and returns
+	 * the alignment it encodes, of the argument {@code front} tuple with the
+	 * back tuple it was written from.
+	 * </p>
+	 *
+	 * <p>
+	 * The delta is read entirely before this method returns, and no byte after
+	 * its end is read. In each pair of equivalent elements, the back element is
+	 * the front element.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param front
+	 *          The front tuple of the alignment that was written.
+	 * @param serializer
+	 *          A system that reads back elements.
+	 * @param stream
+	 *          The stream to read the delta from.
+	 * @return The alignment encoded by the delta.
+	 * @throws IOException
+	 *           when the stream or the serializer fail, or when the stream
+	 *           ends before the delta.
+	 * @throws IllegalArgumentException
+	 *           when any argument is {@code null}, or when the delta does not
+	 *           cover exactly the elements of the front tuple.
+	 * @since 1.0
+	 */
+	public static <K> Iterable<DiffPair<K, K>> read(
+			Tuple<K> front,
+			DeltaSerializer<? extends K> serializer,
+			InputStream stream )
+			throws IOException {
+		if ( front == null || serializer == null || stream == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return read( front, serializer,
+				(DataInput) new DataInputStream( stream ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code read} reads a delta from the argument {@code buffer}, starting at
+	 * its position, and returns the alignment it encodes, of the argument
+	 * {@code front} tuple with the back tuple it was written from.
+	 * </p>
+	 *
+	 * <p>
+	 * The delta is read entirely before this method returns, and the position
+	 * of the buffer is left at its end. In each pair of equivalent elements,
+	 * the back element is the front element.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param front
+	 *          The front tuple of the alignment that was written.
+	 * @param serializer
+	 *          A system that reads back elements.
+	 * @param buffer
+	 *          The buffer to read the delta from.
+	 * @return The alignment encoded by the delta.
+	 * @throws IOException
+	 *           when the serializer fails, or when the buffer ends before the
+	 *           delta.
+	 * @throws IllegalArgumentException
+	 *           when any argument is {@code null}, or when the delta does not
+	 *           cover exactly the elements of the front tuple.
+	 * @since 1.0
+	 */
+	public static <K> Iterable<DiffPair<K, K>> read(
+			Tuple<K> front,
+			DeltaSerializer<? extends K> serializer,
+			ByteBuffer buffer )
+			throws IOException {
+		if ( front == null || serializer == null || buffer == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return read( front, serializer,
+				(DataInput) new DataInputStream( new InputStream( ) {
+
+					@Override
+					public int read( ) {
+						return buffer.hasRemaining( ) ? buffer.get( ) & 0xFF : -1;
+					}
+
+					@Override
+					public int read( byte[] b, int off, int len ) {
+						if ( len == 0 ) {
+							return 0;
+						}
+						if ( !buffer.hasRemaining( ) ) {
+							return -1;
+						}
+						int result = Math.min( len, buffer.remaining( ) );
+						buffer.get( b, off, result );
+						return result;
+					}
+				} ) );
+	}
+
+	static <F, B> void write(
+			Iterable<DiffPair<F, B>> alignment,
+			DeltaSerializer<? super B> serializer,
+			DataOutput output )
+			throws IOException {
+		if ( alignment instanceof DiffIterable ) {
+			DiffIterable<F, B> iterable = (DiffIterable<F, B>) alignment;
+			EditScript diffs = iterable.script( );
+			Tuple<B> back = iterable.back( );
+			int b = 0;
+			for ( int d = 0; d < diffs.size( ); d++ ) {
+				int kind = diffs.kind( d );
+				int length = diffs.length( d );
+				writeRun( output, kind, length );
+				if ( kind == EditScript.INSERT || kind == EditScript.REPLACE ) {
+					for ( int k = 0; k < length; k++ ) {
+						serializer.write( back.get( b + k ), output );
+					}
+				}
+				b += diffs.backLength( d );
+			}
+			output.write( 0 );
+			return;
+		}
+		// Pairs are grouped in runs; only the back elements of a run are kept.
+		int kind = -1;
+		int length = 0;
+		ArrayList<B> elements = new ArrayList<>( );
+		for ( DiffPair<F, B> pair : alignment ) {
+			int current = !pair.hasFront( ) ? EditScript.INSERT
+					: !pair.hasBack( ) ? EditScript.DELETE
+							: EditScript.EQUAL;
+			if ( current != kind ) {
+				flush( output, kind, length, elements, serializer );
+				kind = current;
+				length = 0;
+			}
+			length++;
+			if ( current == EditScript.INSERT ) {
+				elements.add( pair.back( ) );
+			}
+		}
+		flush( output, kind, length, elements, serializer );
+		output.write( 0 );
+	}
+
+	private static <B> void flush( DataOutput output, int kind, int length,
+			ArrayList<B> elements, DeltaSerializer<? super B> serializer )
+			throws IOException {
+		if ( length == 0 ) {
+			return;
+		}
+		writeRun( output, kind, length );
+		for ( B element : elements ) {
+			serializer.write( element, output );
+		}
+		elements.clear( );
+	}
+
+	/**
+	 * Writes the kind in the two lowest bits and the length above them, seven
+	 * bits per byte, least significant first.
+	 */
+	private static void writeRun( DataOutput output, int kind, int length )
+			throws IOException {
+		long value = ( (long) length << 2 ) | kind;
+		while ( ( value & ~0x7FL ) != 0 ) {
+			output.write( (int) ( ( value & 0x7F ) | 0x80 ) );
+			value >>>= 7;
+		}
+		output.write( (int) value );
+	}
+
+	private static long readRun( DataInput input )
+			throws IOException {
+		long result = 0;
+		for ( int shift = 0;; shift += 7 ) {
+			if ( shift > 28 ) {
+				throw new IllegalArgumentException( );
+			}
+			int b = input.readUnsignedByte( );
+			result |= (long) ( b & 0x7F ) << shift;
+			if ( ( b & 0x80 ) == 0 ) {
+				return result;
+			}
+		}
+	}
+
+	static <K> DiffIterable<K, K> read(
+			Tuple<K> front,
+			DeltaSerializer<? extends K> serializer,
+			DataInput input )
+			throws IOException {
+		EditScript diffs = new EditScript( );
+		ArrayList<K> back = new ArrayList<>( );
+		int f = 0;
+		for ( long run = readRun( input ); run != 0; run = readRun( input ) ) {
+			int kind = (int) ( run & 3 );
+			long length = run >>> 2;
+			if ( length == 0 || length > front.size( ) - f
+					&& kind != EditScript.INSERT
+					|| length > Integer.MAX_VALUE ) {
+				throw new IllegalArgumentException( );
+			}
+			diffs.add( kind, (int) length );
+			for ( int k = 0; k < length; k++ ) {
+				switch ( kind ) {
+					case EditScript.EQUAL:
+						back.add( front.get( f + k ) );
+						break;
+					case EditScript.DELETE:
+						break;
+					default:
+						back.add( serializer.read( input ) );
+				}
+			}
+			f += diffs.frontLength( diffs.size( ) - 1 );
+		}
+		if ( f != front.size( ) ) {
+			throw new IllegalArgumentException( );
+		}
+		return new DiffIterable<K, K>( front, KnittingTuple.wrap( back ),
+				( ) -> 0, ( ) -> diffs );
+	}
+}
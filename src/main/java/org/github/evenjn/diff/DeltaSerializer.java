@@ -0,0 +1,72 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ *
+ * <h1>DeltaSerializer</h1>
+ *
+ * <p>
+ * A {@code DeltaSerializer} writes and reads the elements that a
+ * {@link Delta delta} carries, that is, the elements of the back tuple that
+ * are not paired with an equivalent element of the front tuple.
+ * </p>
+ *
+ * <p>
+ * {@link DeltaSerializer#read(DataInput) read} must consume exactly the bytes
+ * that {@link DeltaSerializer#write(Object, DataOutput) write} produced for
+ * the same element.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <K>
+ *          The type of the elements.
+ * @since 1.0
+ */
+public interface DeltaSerializer<K> {
+
+	/**
+	 * @param element
+	 *          An element.
+	 * @param output
+	 *          The output to write the element to.
+	 * @throws IOException
+	 *           when the output fails.
+	 * @since 1.0
+	 */
+	void write( K element, DataOutput output )
+			throws IOException;
+
+	/**
+	 * @param input
+	 *          The input to read the element from.
+	 * @return The element.
+	 * @throws IOException
+	 *           when the input fails or ends.
+	 * @since 1.0
+	 */
+	K read( DataInput input )
+			throws IOException;
+}
@@ -24,146 +24,278 @@
 package org.github.evenjn.diff;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.ListIterator;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
 
-import org.github.evenjn.diff.DiffOp.Operation;
 import org.github.evenjn.knit.KnittingTuple;
 import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Tuple;
 
+/**
+ * The diff algorithm.
+ *
+ * Texts are ranges of tuples, and results are appended to an
+ * {@link EditScript}. Operations carry no elements: each operation consumes
+ * the elements that follow those consumed by the previous operation.
+ */
 class Diff {
-	
-	static <T,Y> LinkedList<DiffOp<T,Y>> adiff_main_nc(
-  		KnittingTuple<T> text1,
-  		KnittingTuple<Y> text2,
+
+  /**
+   * Access to the elements of the two texts being aligned, by position.
+   */
+  interface Texts {
+
+    /**
+     * Returns the length of the common prefix of text1[start1, end1) and
+     * text2[start2, end2).
+     */
+    int commonPrefix(int start1, int end1, int start2, int end2);
+
+    /**
+     * Returns the length of the common suffix of text1[start1, end1) and
+     * text2[start2, end2).
+     */
+    int commonSuffix(int start1, int end1, int start2, int end2);
+
+    /**
+     * Returns true when text1[i] equals text1[j].
+     */
+    boolean equals1(int i, int j);
+
+    /**
+     * Returns true when text2[i] equals text2[j].
+     */
+    boolean equals2(int i, int j);
+
+    /**
+     * Returns the offset of the first occurrence of text1[start1, end1) within
+     * text2[start2, end2), or -1.
+     */
+    int indexOf(int start1, int end1, int start2, int end2);
+
+    /**
+     * Returns a view of the same texts, with text1 and text2 swapped.
+     */
+    Texts swap();
+  }
+
+  static <T,Y> EditScript adiff_main(
+  		Tuple<T> text1,
+  		Tuple<Y> text2,
   		Equivalencer<T,Y> equivalencer,
+  		DiffOptions options,
       long deadline) {
     // Check for null inputs.
     if (text1 == null || text2 == null) {
       throw new IllegalArgumentException("Null inputs. (adiff_main)");
     }
 
-    // Check for equality (speedup).
-    LinkedList<DiffOp<T,Y>> diffs;
-    if (text1.equivalentTo(text2, equivalencer)) {
-      diffs = new LinkedList<DiffOp<T,Y>>();
-      if (text1.size() != 0) {
-        diffs.add(DiffOp.equal(text1, text2));
+    Interner<T,Y> interner = Interner.of(equivalencer);
+    if (interner != null) {
+      // Compare integer symbols (speedup).
+      return adiff_main(interner.front(text1), interner.back(text2),
+          options, deadline);
+    }
+
+    // Elements are accessed many times (speedup).
+    KnittingTuple<T> copy1 = KnittingTuple.wrap(
+        KnittingTuple.wrap(text1).collect(new ArrayList<>()));
+    KnittingTuple<Y> copy2 = KnittingTuple.wrap(
+        KnittingTuple.wrap(text2).collect(new ArrayList<>()));
+    EditScript diffs = new EditScript();
+    adiff_main_nc(copy1, 0, copy1.size(), copy2, 0, copy2.size(),
+        equivalencer, options, deadline, diffs);
+    return diffs;
+  }
+
+  static EditScript adiff_main(
+      int[] text1,
+      int[] text2,
+      DiffOptions options,
+      long deadline) {
+    switch (options.algorithm) {
+    case PATIENCE:
+      return PatienceDiff.pdiff_main(text1, text2, options, deadline);
+    case HISTOGRAM:
+      return HistogramDiff.hdiff_main(text1, text2, options, deadline);
+    default:
+      return IntDiff.idiff_main(text1, text2, options, deadline);
+    }
+  }
+
+  /**
+   * Returns the length of the equality that the alignment of text1 with text2
+   * is guaranteed to start with, without computing the alignment.
+   *
+   * The alignment starts with the common prefix, unless cleanupMerge shifts
+   * the first edit over it. That requires the edit to end with the prefix, so
+   * it cannot happen when the last element of the prefix does not occur again
+   * in either text. Otherwise, this method conservatively returns 0.
+   */
+  static int adiff_leadingEqual(Texts texts, int length1, int length2) {
+    int commonlength = texts.commonPrefix(0, length1, 0, length2);
+    if (commonlength == 0) {
+      return 0;
+    }
+    for (int i = commonlength; i < length1; i++) {
+      if (texts.equals1(commonlength - 1, i)) {
+        return 0;
+      }
+    }
+    for (int i = commonlength; i < length2; i++) {
+      if (texts.equals2(commonlength - 1, i)) {
+        return 0;
       }
-      return diffs;
     }
+    return commonlength;
+  }
+
+	static <T,Y> void adiff_main_nc(
+  		Tuple<T> text1, int start1, int end1,
+  		Tuple<Y> text2, int start2, int end2,
+  		Equivalencer<T,Y> equivalencer,
+  		DiffOptions options,
+      long deadline,
+      EditScript diffs) {
+    int from = diffs.size();
+    int text1_length = end1 - start1;
+    int text2_length = end2 - start2;
 
     // Trim off common prefix (speedup).
-    int commonlength_p = DiffingTuple.wrap(text1).longestCommonPrefix(text2, equivalencer);
-    KnittingTuple<T> commonprefix1 = text1.head(commonlength_p);
-    KnittingTuple<Y> commonprefix2 = text2.head(commonlength_p);
-    text1 = text1.headless(commonlength_p);
-    text2 = text2.headless(commonlength_p);
+    int commonlength_p = commonPrefix(text1, start1, end1, text2, start2, end2,
+        equivalencer);
 
-    // Trim off common suffix (speedup).
-    int commonlength_s = DiffingTuple.wrap(text1).longestCommonSuffix(text2, equivalencer);
-    KnittingTuple<T> commonsuffix1 = text1.tail(commonlength_s);
-    KnittingTuple<Y> commonsuffix2 = text2.tail(commonlength_s);
-    text1 = text1.tailless(commonlength_s);
-    text2 = text2.tailless(commonlength_s);
+    // Check for equality (speedup).
+    if (text1_length == text2_length && commonlength_p == text1_length) {
+      if (text1_length != 0) {
+        diffs.add(EditScript.EQUAL, text1_length);
+      }
+      return;
+    }
 
-    // Compute the diff on the middle block.
-    diffs = adiff_compute_nc(text1, text2, equivalencer, deadline);
+    // Trim off common suffix (speedup).
+    int commonlength_s = commonSuffix(
+        text1, start1 + commonlength_p, end1,
+        text2, start2 + commonlength_p, end2,
+        equivalencer);
 
-    // Restore the prefix and suffix.
+    // Compute the diff on the middle block, restoring the prefix and suffix.
     if (commonlength_p != 0) {
-      diffs.addFirst(DiffOp.equal(commonprefix1, commonprefix2));
+      diffs.add(EditScript.EQUAL, commonlength_p);
     }
+    adiff_compute_nc(
+        text1, start1 + commonlength_p, end1 - commonlength_s,
+        text2, start2 + commonlength_p, end2 - commonlength_s,
+        equivalencer, options, deadline, diffs);
     if (commonlength_s != 0) {
-      diffs.addLast(DiffOp.equal(commonsuffix1, commonsuffix2));
+      diffs.add(EditScript.EQUAL, commonlength_s);
     }
 
-    adiff_cleanupMerge(diffs, equivalencer);
-    return diffs;
+    adiff_cleanupMerge(texts(text1, text2, equivalencer), start1, start2,
+        diffs, from);
   }
 
-	static <T,Y> LinkedList<DiffOp<T,Y>> adiff_compute_nc(
-  		KnittingTuple<T> text1,
-  		KnittingTuple<Y> text2,
+	static <T,Y> void adiff_compute_nc(
+  		Tuple<T> text1, int start1, int end1,
+  		Tuple<Y> text2, int start2, int end2,
   		Equivalencer<T,Y> equivalencer,
-  		long deadline) {
-		LinkedList<DiffOp<T,Y>> diffs = new LinkedList<DiffOp<T,Y>>();
+  		DiffOptions options,
+  		long deadline,
+  		EditScript diffs) {
+    int text1_length = end1 - start1;
+    int text2_length = end2 - start2;
 
-    if (text1.size() == 0) {
+    if (text1_length == 0) {
       // Just add some text (speedup).
-      diffs.add(DiffOp.insert(text2));
-      return diffs;
+      diffs.add(EditScript.INSERT, text2_length);
+      return;
     }
 
-    if (text2.size() == 0) {
+    if (text2_length == 0) {
       // Just delete some text (speedup).
-      diffs.add(DiffOp.delete(text1));
-      return diffs;
+      diffs.add(EditScript.DELETE, text1_length);
+      return;
     }
-    
-    text1 = KnittingTuple.wrap( text1.collect( new ArrayList<>() ) );
-    text2 = KnittingTuple.wrap( text2.collect( new ArrayList<>() ) );
 
-    if (text1.size() > text2.size()) {
-      Optional<Integer> opt = text1.findSubtuple(text2, 0, equivalencer);
-      if (opt.isPresent()) {
-      	int i = opt.get();
+    if (text1_length > text2_length) {
+      int i = indexOf(text1, start1, end1, text2, start2, end2, equivalencer);
+      if (i != -1) {
         // Shorter text is inside the longer text (speedup).
-        diffs.add(DiffOp.delete(text1.head(i)));	
-        diffs.add(DiffOp.equal(text1.headless(i).head(text2.size()),text2));
-        diffs.add(DiffOp.delete(text1.headless(i + text2.size())));
-        return diffs;
+        diffs.add(EditScript.DELETE, i);
+        diffs.add(EditScript.EQUAL, text2_length);
+        diffs.add(EditScript.DELETE, text1_length - i - text2_length);
+        return;
       }
 
-      if (text2.size() == 1) {
+      if (text2_length == 1) {
         // Single character string.
         // After the previous speedup, the character can't be an equality.
-        diffs.add(DiffOp.delete(text1));
-        diffs.add(DiffOp.insert(text2));
-        return diffs;
+        diffs.add(EditScript.DELETE, text1_length);
+        diffs.add(EditScript.INSERT, text2_length);
+        return;
       }
     }
     else {
-      Optional<Integer> opt = text2.findSubtuple(text1, 0, equivalencer.swap( ));
-      if (opt.isPresent()) {
-      	int i = opt.get();
+      int i = indexOf(text2, start2, end2, text1, start1, end1,
+          equivalencer.swap());
+      if (i != -1) {
         // Shorter text is inside the longer text (speedup).
-        diffs.add(DiffOp.insert(text2.head(i)));
-        diffs.add(DiffOp.equal(text1, text2.headless(i).head(text1.size())));
-        diffs.add(DiffOp.insert(text2.headless(i + text1.size())));
-        return diffs;
+        diffs.add(EditScript.INSERT, i);
+        diffs.add(EditScript.EQUAL, text1_length);
+        diffs.add(EditScript.INSERT, text2_length - i - text1_length);
+        return;
       }
 
-      if (text1.size() == 1) {
+      if (text1_length == 1) {
         // Single character string.
         // After the previous speedup, the character can't be an equality.
-        diffs.add(DiffOp.delete(text1));
-        diffs.add(DiffOp.insert(text2));
-        return diffs;
+        diffs.add(EditScript.DELETE, text1_length);
+        diffs.add(EditScript.INSERT, text2_length);
+        return;
       }
     }
 
-    return adiff_bisect(text1, text2, equivalencer, deadline);
+    if (deadline >= 0) {
+      // Check to see if the problem can be split in two.
+      int[] hm = adiff_halfMatch(texts(text1, text2, equivalencer),
+          start1, end1, start2, end2);
+      if (hm != null) {
+        // A half-match was found.
+        int common1 = hm[0];
+        int common2 = hm[1];
+        int common_length = hm[2];
+        // Send both pairs off for separate processing.
+        adiff_main_nc(text1, start1, common1, text2, start2, common2,
+            equivalencer, options, deadline, diffs);
+        diffs.add(EditScript.EQUAL, common_length);
+        adiff_main_nc(
+            text1, common1 + common_length, end1,
+            text2, common2 + common_length, end2,
+            equivalencer, options, deadline, diffs);
+        return;
+      }
+    }
+
+    adiff_bisect(text1, start1, end1, text2, start2, end2,
+        equivalencer, options, deadline, diffs);
   }
 
-	static <T,Y> LinkedList<DiffOp<T,Y>> adiff_bisect(
-  		KnittingTuple<T> text1,
-  		KnittingTuple<Y> text2,
+	static <T,Y> void adiff_bisect(
+  		Tuple<T> text1, int start1, int end1,
+  		Tuple<Y> text2, int start2, int end2,
   		Equivalencer<T,Y> equivalencer,
-      long deadline) {
+  		DiffOptions options,
+      long deadline,
+      EditScript diffs) {
     // Cache the text lengths to prevent multiple calls.
-    int text1_length = text1.size();
-    int text2_length = text2.size();
+    int text1_length = end1 - start1;
+    int text2_length = end2 - start2;
     int max_d = (text1_length + text2_length + 1) / 2;
     int v_offset = max_d;
     int v_length = 2 * max_d;
-    int[] v1 = new int[v_length];
-    int[] v2 = new int[v_length];
-    for (int x = 0; x < v_length; x++) {
-      v1[x] = -1;
-      v2[x] = -1;
-    }
+    DiffContext context = DiffContext.current();
+    int[] v1 = context.forward(v_length);
+    int[] v2 = context.reverse(v_length);
     v1[v_offset + 1] = 0;
     v2[v_offset + 1] = 0;
     int delta = text1_length - text2_length;
@@ -193,7 +325,9 @@ class Diff {
         }
         int y1 = x1 - k1;
         while (x1 < text1_length && y1 < text2_length
-               && equivalencer.equivalent(text1.get(x1), text2.get(y1))) {
+               && equivalencer.equivalent(
+              		 text1.get(start1 + x1),
+              		 text2.get(start2 + y1))) {
           x1++;
           y1++;
         }
@@ -211,7 +345,9 @@ class Diff {
             int x2 = text1_length - v2[k2_offset];
             if (x1 >= x2) {
               // Overlap detected.
-              return adiff_bisectSplit(text1, text2, equivalencer, x1, y1, deadline);
+              adiff_bisectSplit(text1, start1, end1, text2, start2, end2,
+                  equivalencer, options, x1, y1, deadline, diffs);
+              return;
             }
           }
         }
@@ -229,8 +365,8 @@ class Diff {
         int y2 = x2 - k2;
         while (x2 < text1_length && y2 < text2_length
                && equivalencer.equivalent(
-              		 text1.get(text1_length - x2 - 1),
-                   text2.get(text2_length - y2 - 1))) {
+              		 text1.get(end1 - x2 - 1),
+                   text2.get(end2 - y2 - 1))) {
           x2++;
           y2++;
         }
@@ -250,7 +386,9 @@ class Diff {
             x2 = text1_length - x2;
             if (x1 >= x2) {
               // Overlap detected.
-              return adiff_bisectSplit(text1, text2, equivalencer, x1, y1, deadline);
+              adiff_bisectSplit(text1, start1, end1, text2, start2, end2,
+                  equivalencer, options, x1, y1, deadline, diffs);
+              return;
             }
           }
         }
@@ -258,132 +396,155 @@ class Diff {
     }
     // Diff took too long and hit the deadline or
     // number of diffs equals number of characters, no commonality at all.
-    LinkedList<DiffOp<T,Y>> diffs = new LinkedList<DiffOp<T,Y>>();
-    diffs.add(DiffOp.delete(text1));
-    diffs.add(DiffOp.insert(text2));
-    return diffs;
+    diffs.add(EditScript.DELETE, text1_length);
+    diffs.add(EditScript.INSERT, text2_length);
   }
 
-	private static <T,Y> LinkedList<DiffOp<T,Y>> adiff_bisectSplit(
-  		KnittingTuple<T> text1,
-  		KnittingTuple<Y> text2,
+	private static <T,Y> void adiff_bisectSplit(
+  		Tuple<T> text1, int start1, int end1,
+  		Tuple<Y> text2, int start2, int end2,
   		Equivalencer<T,Y> equivalencer,
+  		DiffOptions options,
       int x,
       int y,
-      long deadline) {
-  	KnittingTuple<T> text1a = text1.head(x);
-  	KnittingTuple<Y> text2a = text2.head(y);
-    KnittingTuple<T> text1b = text1.headless(x);
-    KnittingTuple<Y> text2b = text2.headless(y);
-
-    // Compute both diffs serially.
-    LinkedList<DiffOp<T,Y>> diffs = adiff_main_nc(text1a, text2a, equivalencer, deadline);
-    LinkedList<DiffOp<T,Y>> diffsb = adiff_main_nc(text1b, text2b, equivalencer, deadline);
-
-    diffs.addAll(diffsb);
-    return diffs;
+      long deadline,
+      EditScript diffs) {
+    if (options.fork(end1 - start1 + end2 - start2)) {
+      // Compute both diffs concurrently.
+      ForkJoinTask<EditScript> taskb = ForkJoinTask.adapt(() -> {
+        EditScript diffsb = new EditScript();
+        adiff_main_nc(text1, start1 + x, end1, text2, start2 + y, end2,
+            equivalencer, options, deadline, diffsb);
+        return diffsb;
+      }).fork();
+      adiff_main_nc(text1, start1, start1 + x, text2, start2, start2 + y,
+          equivalencer, options, deadline, diffs);
+      diffs.addAll(taskb.join());
+    }
+    else {
+      // Compute both diffs serially.
+      adiff_main_nc(text1, start1, start1 + x, text2, start2, start2 + y,
+          equivalencer, options, deadline, diffs);
+      adiff_main_nc(text1, start1 + x, end1, text2, start2 + y, end2,
+          equivalencer, options, deadline, diffs);
+    }
   }
 
-	static <T,Y> void adiff_cleanupMerge(
-  		LinkedList<DiffOp<T,Y>> diffs,
-  		Equivalencer<T,Y> equivalencer) {
-  	diffs.add(DiffOp.equal(KnittingTuple.empty(),KnittingTuple.empty()));  // Add a dummy entry at the end.
-  	ListIterator<DiffOp<T,Y>> pointer = diffs.listIterator();
+  /**
+   * Reorders and merges like edit sections, and merges equalities, in the
+   * operations of {@code diffs} from index {@code from} onwards. Those
+   * operations must start at {@code start1} in text1 and at {@code start2} in
+   * text2.
+   */
+	static void adiff_cleanupMerge(
+  		Texts texts,
+  		int start1,
+  		int start2,
+  		EditScript diffs,
+  		int from) {
+    int count = diffs.size() - from;
+    int[] kinds = new int[count + 1];
+    int[] lengths = new int[count + 1];
+    for (int i = 0; i < count; i++) {
+      kinds[i] = diffs.kind(from + i);
+      lengths[i] = diffs.length(from + i);
+    }
+    // Add a dummy entry at the end.
+    kinds[count] = EditScript.EQUAL;
+    lengths[count] = 0;
+    diffs.truncate(from);
+
+    int pointer1 = start1;
+    int pointer2 = start2;
     int count_delete = 0;
     int count_insert = 0;
-    KnittingTuple<T> text_delete = KnittingTuple.empty();
-    KnittingTuple<Y> text_insert = KnittingTuple.empty();
-    DiffOp<T,Y> thisDiff = pointer.next();
-    DiffOp<T,Y> prevEqual = null;
+    int length_delete = 0;
+    int length_insert = 0;
+    boolean prevEqual = false;
     int commonlength;
-    while (thisDiff != null) {
-      switch (thisDiff.getOperation()) {
-      case INSERT:
+    for (int i = 0; i <= count; i++) {
+      switch (kinds[i]) {
+      case EditScript.INSERT:
         count_insert++;
-        text_insert = text_insert.append(thisDiff.getInsertedText());
-        prevEqual = null;
+        length_insert += lengths[i];
+        pointer2 += lengths[i];
+        prevEqual = false;
         break;
-      case DELETE:
+      case EditScript.DELETE:
         count_delete++;
-        text_delete = text_delete.append(thisDiff.getDeletedText());
-        prevEqual = null;
+        length_delete += lengths[i];
+        pointer1 += lengths[i];
+        prevEqual = false;
         break;
-      case EQUAL:
+      case EditScript.EQUAL:
+        int length_equal = lengths[i];
         if (count_delete + count_insert > 1) {
-          boolean both_types = count_delete != 0 && count_insert != 0;
-          // Delete the offending records.
-          pointer.previous();  // Reverse direction.
-          while (count_delete-- > 0) {
-            pointer.previous();
-            pointer.remove();
-          }
-          while (count_insert-- > 0) {
-            pointer.previous();
-            pointer.remove();
-          }
-          if (both_types) {
+          int start_delete = pointer1 - length_delete;
+          int start_insert = pointer2 - length_insert;
+          if (count_delete != 0 && count_insert != 0) {
             // Factor out any common prefixies.
-            commonlength = DiffingTuple.wrap(text_insert).longestCommonPrefix(text_delete, equivalencer.swap());
+            commonlength = texts.commonPrefix(
+                start_delete, pointer1, start_insert, pointer2);
             if (commonlength != 0) {
-              if (pointer.hasPrevious()) {
-                thisDiff = pointer.previous();
-                assert thisDiff.getOperation() == Operation.EQUAL
+              int last = diffs.size() - 1;
+              if (last >= from) {
+                assert diffs.kind(last) == EditScript.EQUAL
                        : "Previous diff should have been an equality.";
-                KnittingTuple<T> t_f = thisDiff.getTextFront().append(text_delete.head(commonlength));
-                KnittingTuple<Y> t_b = thisDiff.getTextBack().append(text_insert.head(commonlength));
-                thisDiff.setEqualText(t_f, t_b);
-                pointer.next();
+                diffs.set(last, EditScript.EQUAL,
+                    diffs.length(last) + commonlength);
               } else {
-                pointer.add(DiffOp.equal(
-                		text_delete.head(commonlength),
-                    text_insert.head(commonlength)));
+                diffs.add(EditScript.EQUAL, commonlength);
               }
-              text_insert = text_insert.headless(commonlength);
-              text_delete = text_delete.headless(commonlength);
+              start_insert += commonlength;
+              start_delete += commonlength;
+              length_insert -= commonlength;
+              length_delete -= commonlength;
             }
             // Factor out any common suffixies.
-            commonlength = DiffingTuple.wrap(text_insert).longestCommonSuffix(text_delete, equivalencer.swap());
+            commonlength = texts.commonSuffix(
+                start_delete, pointer1, start_insert, pointer2);
             if (commonlength != 0) {
-              thisDiff = pointer.next();
-              assert thisDiff.getOperation() == Operation.EQUAL
-                  : "this Diff should have been an equality.";
-              KnittingTuple<T> text_1 = thisDiff.getTextFront().prepend(text_delete.tail(commonlength));
-              KnittingTuple<Y> text_2 = thisDiff.getTextBack().prepend(text_insert.tail(commonlength));
-              thisDiff.setEqualText(text_1, text_2);
-              text_insert = text_insert.tailless(commonlength);
-              text_delete = text_delete.tailless(commonlength);
-              pointer.previous();
+              length_equal += commonlength;
+              length_insert -= commonlength;
+              length_delete -= commonlength;
             }
           }
           // Insert the merged records.
-          if (text_delete.size() != 0) {
-            pointer.add(DiffOp.delete(text_delete));
+          if (length_delete != 0) {
+            diffs.add(EditScript.DELETE, length_delete);
           }
-          if (text_insert.size() != 0) {
-            pointer.add(DiffOp.insert(text_insert));
+          if (length_insert != 0) {
+            diffs.add(EditScript.INSERT, length_insert);
+          }
+          diffs.add(EditScript.EQUAL, length_equal);
+        } else {
+          if (count_delete != 0) {
+            diffs.add(EditScript.DELETE, length_delete);
+          }
+          if (count_insert != 0) {
+            diffs.add(EditScript.INSERT, length_insert);
+          }
+          if (prevEqual) {
+            // Merge this equality with the previous one.
+            int last = diffs.size() - 1;
+            diffs.set(last, EditScript.EQUAL, diffs.length(last) + length_equal);
+          } else {
+            diffs.add(EditScript.EQUAL, length_equal);
           }
-          // Step forward to the equality.
-          thisDiff = pointer.hasNext() ? pointer.next() : null;
-        } else if (prevEqual != null) {
-          // Merge this equality with the previous one.
-        	KnittingTuple<T> text_1 = prevEqual.getTextFront().append(thisDiff.getTextFront());
-					KnittingTuple<Y> text_2 = prevEqual.getTextBack().append(thisDiff.getTextBack());
-					prevEqual.setEqualText(text_1, text_2);
-          pointer.remove();
-          thisDiff = pointer.previous();
-          pointer.next();  // Forward direction
         }
+        pointer1 += lengths[i];
+        pointer2 += lengths[i];
         count_insert = 0;
         count_delete = 0;
-        text_delete = KnittingTuple.empty();
-        text_insert = KnittingTuple.empty();
-        prevEqual = thisDiff;
+        length_delete = 0;
+        length_insert = 0;
+        prevEqual = true;
         break;
       }
-      thisDiff = pointer.hasNext() ? pointer.next() : null;
     }
-    if (diffs.getLast().getEqualSize() == 0) {
-      diffs.removeLast();  // Remove the dummy entry at the end.
+    int last = diffs.size() - 1;
+    if (diffs.length(last) == 0) {
+      diffs.truncate(last);  // Remove the dummy entry at the end.
     }
 
     /*
@@ -392,69 +553,284 @@ class Diff {
      * e.g: A<ins>BA</ins>C -> <ins>AB</ins>AC
      */
     boolean changes = false;
-    // Create a new iterator at the start.
-    // (As opposed to walking the current one back.)
-    pointer = diffs.listIterator();
-    DiffOp<T,Y> prevDiff = pointer.hasNext() ? pointer.next() : null;
-    thisDiff = pointer.hasNext() ? pointer.next() : null;
-    DiffOp<T,Y> nextDiff = pointer.hasNext() ? pointer.next() : null;
+    int size = diffs.size();
+    // Removed operations are marked with a negative length.
+    int prevDiff = from;
+    int thisDiff = from + 1;
+    int nextDiff = from + 2;
+    // Where prevDiff starts in text1 and in text2.
+    int prev1 = start1;
+    int prev2 = start2;
     // Intentionally ignore the first and last element (don't need checking).
-    while (nextDiff != null) {
-      if (prevDiff.getOperation() == Operation.EQUAL &&
-          nextDiff.getOperation() == Operation.EQUAL) {
+    while (nextDiff < size) {
+      if (diffs.kind(prevDiff) == EditScript.EQUAL
+          && diffs.kind(nextDiff) == EditScript.EQUAL) {
         // This is a single edit surrounded by equalities.
-        if ((thisDiff.getOperation() == Operation.DELETE
-        		&& thisDiff.getDeletedText().endsWith(prevDiff.getTextFront()))
-        		|| (thisDiff.getOperation() == Operation.INSERT
-        		&& thisDiff.getInsertedText().endsWith(prevDiff.getTextBack()))) {
+        int prev_length = diffs.length(prevDiff);
+        int this_length = diffs.length(thisDiff);
+        int next_length = diffs.length(nextDiff);
+        int this1 = prev1 + prev_length;
+        int this2 = prev2 + prev_length;
+        if ((diffs.kind(thisDiff) == EditScript.DELETE
+            && endsWith(texts, true, this1, this_length, prev1, prev_length))
+            || (diffs.kind(thisDiff) == EditScript.INSERT
+            && endsWith(texts, false, this2, this_length, prev2, prev_length))) {
           // Shift the edit over the previous equality.
-        	if (thisDiff.getOperation() == Operation.DELETE) {
-            thisDiff.setDeletedText(prevDiff.getTextFront().append(
-                thisDiff.getDeletedText().tailless(prevDiff.getTextFront().size())));
-        	}
-        	else {
-            thisDiff.setInsertedText(prevDiff.getTextBack().append(
-                thisDiff.getInsertedText().tailless(prevDiff.getTextBack().size())));
-        	}
-          KnittingTuple<T> text_1 = prevDiff.getTextFront().append(nextDiff.getTextFront());
-          KnittingTuple<Y> text_2 = prevDiff.getTextBack().append(nextDiff.getTextBack());
-          nextDiff.setEqualText(text_1, text_2);
-          pointer.previous(); // Walk past nextDiff.
-          pointer.previous(); // Walk past thisDiff.
-          pointer.previous(); // Walk past prevDiff.
-          pointer.remove(); // Delete prevDiff.
-          pointer.next(); // Walk past thisDiff.
-          thisDiff = pointer.next(); // Walk past nextDiff.
-          nextDiff = pointer.hasNext() ? pointer.next() : null;
+          diffs.set(nextDiff, EditScript.EQUAL, prev_length + next_length);
+          diffs.set(prevDiff, EditScript.EQUAL, -1);
+          prev1 += diffs.frontLength(thisDiff);
+          prev2 += diffs.backLength(thisDiff);
+          prevDiff = nextDiff;
+          thisDiff = next(diffs, prevDiff);
+          nextDiff = next(diffs, thisDiff);
           changes = true;
-        } else if ((thisDiff.getOperation() == Operation.INSERT
-        					&& thisDiff.getInsertedText().startsWith(nextDiff.getTextBack()))
-        					|| (thisDiff.getOperation() == Operation.DELETE
-        					&& thisDiff.getDeletedText().startsWith(nextDiff.getTextFront()))) {
+          continue;
+        } else if ((diffs.kind(thisDiff) == EditScript.INSERT
+            && startsWith(texts, false, this2, this_length,
+                this2 + this_length, next_length))
+            || (diffs.kind(thisDiff) == EditScript.DELETE
+            && startsWith(texts, true, this1, this_length,
+                this1 + this_length, next_length))) {
           // Shift the edit over the next equality.
-          KnittingTuple<T> ndt_front = prevDiff.getTextFront().append(nextDiff.getTextFront());
-          KnittingTuple<Y> ndt_back = prevDiff.getTextBack().append(nextDiff.getTextBack());
-          prevDiff.setEqualText(ndt_front, ndt_back);
-        	if (thisDiff.getOperation() == Operation.DELETE) {
-            thisDiff.setDeletedText(thisDiff.getDeletedText().headless(nextDiff.getTextFront().size()).append(
-                nextDiff.getTextFront()));
-        	}
-        	else {
-            thisDiff.setInsertedText(thisDiff.getTextBack().headless(nextDiff.getTextBack().size()).append(
-                nextDiff.getTextBack()));
-        	}
-          pointer.remove(); // Delete nextDiff.
-          nextDiff = pointer.hasNext() ? pointer.next() : null;
+          diffs.set(prevDiff, EditScript.EQUAL, prev_length + next_length);
+          diffs.set(nextDiff, EditScript.EQUAL, -1);
+          prev1 += prev_length + next_length;
+          prev2 += prev_length + next_length;
+          prevDiff = thisDiff;
+          thisDiff = next(diffs, nextDiff);
+          nextDiff = next(diffs, thisDiff);
           changes = true;
+          continue;
         }
       }
+      prev1 += diffs.frontLength(prevDiff);
+      prev2 += diffs.backLength(prevDiff);
       prevDiff = thisDiff;
       thisDiff = nextDiff;
-      nextDiff = pointer.hasNext() ? pointer.next() : null;
+      nextDiff = next(diffs, nextDiff);
     }
     // If shifts were made, the diff needs reordering and another shift sweep.
     if (changes) {
-      adiff_cleanupMerge(diffs, equivalencer);
+      int kept = from;
+      for (int i = from; i < size; i++) {
+        if (diffs.length(i) >= 0) {
+          diffs.set(kept++, diffs.kind(i), diffs.length(i));
+        }
+      }
+      diffs.truncate(kept);
+      adiff_cleanupMerge(texts, start1, start2, diffs, from);
+    }
+  }
+
+  /**
+   * Do the two texts share a common run which is at least half the length of
+   * the longer text?
+   * This speedup can produce non-minimal diffs.
+   * @return Three integers: the start of the common run in text1, its start
+   *     in text2, and its length; or null if there was no match.
+   */
+  static int[] adiff_halfMatch(Texts texts,
+      int start1, int end1, int start2, int end2) {
+    if (end1 - start1 > end2 - start2) {
+      return adiff_halfMatchL(texts, start1, end1, start2, end2);
+    }
+    int[] hm = adiff_halfMatchL(texts.swap(), start2, end2, start1, end1);
+    return hm == null ? null : new int[] {hm[1], hm[0], hm[2]};
+  }
+
+  /**
+   * Like adiff_halfMatch, when text1 is the longer text.
+   */
+  private static int[] adiff_halfMatchL(Texts texts,
+      int start1, int end1, int start2, int end2) {
+    int text1_length = end1 - start1;
+    int text2_length = end2 - start2;
+    if (text1_length < 4 || text2_length * 2 < text1_length) {
+      return null;  // Pointless.
+    }
+
+    // First check if the second quarter is the seed for a half-match.
+    int[] hm1 = adiff_halfMatchI(texts, start1, end1, start2, end2,
+        start1 + (text1_length + 3) / 4);
+    // Check again based on the third quarter.
+    int[] hm2 = adiff_halfMatchI(texts, start1, end1, start2, end2,
+        start1 + (text1_length + 1) / 2);
+    if (hm1 == null && hm2 == null) {
+      return null;
+    } else if (hm2 == null) {
+      return hm1;
+    } else if (hm1 == null) {
+      return hm2;
+    } else {
+      // Both matched.  Select the longest.
+      return hm1[2] > hm2[2] ? hm1 : hm2;
+    }
+  }
+
+  /**
+   * Does a run of text2 exist within text1 such that the run is at least
+   * half the length of text1?
+   * @param i Start index of quarter length run within text1.
+   * @return Three integers: the start of the common run in text1, its start
+   *     in text2, and its length; or null if there was no match.
+   */
+  private static int[] adiff_halfMatchI(Texts texts,
+      int start1, int end1, int start2, int end2, int i) {
+    // Start with a 1/4 length run at position i as a seed.
+    int seed_end = i + (end1 - start1) / 4;
+    int best_common1 = 0;
+    int best_common2 = 0;
+    int best_common_length = 0;
+    int j = start2 - 1;
+    int offset;
+    while ((offset = texts.indexOf(i, seed_end, j + 1, end2)) != -1) {
+      j = j + 1 + offset;
+      int prefixLength = texts.commonPrefix(i, end1, j, end2);
+      int suffixLength = texts.commonSuffix(start1, i, start2, j);
+      if (best_common_length < suffixLength + prefixLength) {
+        best_common1 = i - suffixLength;
+        best_common2 = j - suffixLength;
+        best_common_length = suffixLength + prefixLength;
+      }
+    }
+    if (best_common_length * 2 >= end1 - start1) {
+      return new int[] {best_common1, best_common2, best_common_length};
+    } else {
+      return null;
+    }
+  }
+
+  private static int next(EditScript diffs, int index) {
+    int size = diffs.size();
+    if (index >= size) {
+      return size;
+    }
+    do {
+      index++;
+    } while (index < size && diffs.length(index) < 0);
+    return index;
+  }
+
+  private static boolean startsWith(Texts texts, boolean text1,
+      int start, int length, int prefix_start, int prefix_length) {
+    if (prefix_length > length) {
+      return false;
+    }
+    for (int i = 0; i < prefix_length; i++) {
+      if (text1
+          ? !texts.equals1(start + i, prefix_start + i)
+          : !texts.equals2(start + i, prefix_start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean endsWith(Texts texts, boolean text1,
+      int start, int length, int suffix_start, int suffix_length) {
+    return suffix_length <= length
+        && startsWith(texts, text1, start + length - suffix_length,
+            suffix_length, suffix_start, suffix_length);
+  }
+
+  static <T,Y> Texts texts(
+      Tuple<T> text1,
+      Tuple<Y> text2,
+      Equivalencer<T,Y> equivalencer) {
+    // Interned elements are equal when their keys are equal.
+    KeyedEquivalencer<T,Y> keys = equivalencer instanceof KeyedEquivalencer
+        ? (KeyedEquivalencer<T,Y>) equivalencer
+        : null;
+    return new Texts() {
+
+      @Override
+      public int commonPrefix(int start1, int end1, int start2, int end2) {
+        return Diff.commonPrefix(text1, start1, end1, text2, start2, end2,
+            equivalencer);
+      }
+
+      @Override
+      public int commonSuffix(int start1, int end1, int start2, int end2) {
+        return Diff.commonSuffix(text1, start1, end1, text2, start2, end2,
+            equivalencer);
+      }
+
+      @Override
+      public boolean equals1(int i, int j) {
+        if (keys != null) {
+          return Objects.equals(
+              keys.frontKey(text1.get(i)), keys.frontKey(text1.get(j)));
+        }
+        return Objects.equals(text1.get(i), text1.get(j));
+      }
+
+      @Override
+      public boolean equals2(int i, int j) {
+        if (keys != null) {
+          return Objects.equals(
+              keys.backKey(text2.get(i)), keys.backKey(text2.get(j)));
+        }
+        return Objects.equals(text2.get(i), text2.get(j));
+      }
+
+      @Override
+      public int indexOf(int start1, int end1, int start2, int end2) {
+        return Diff.indexOf(text2, start2, end2, text1, start1, end1,
+            equivalencer.swap());
+      }
+
+      @Override
+      public Texts swap() {
+        return texts(text2, text1, equivalencer.swap());
+      }
+    };
+  }
+
+  static <T,Y> int commonPrefix(
+      Tuple<T> text1, int start1, int end1,
+      Tuple<Y> text2, int start2, int end2,
+      Equivalencer<T,Y> equivalencer) {
+    int n = Math.min(end1 - start1, end2 - start2);
+    for (int i = 0; i < n; i++) {
+      if (!equivalencer.equivalent(text1.get(start1 + i), text2.get(start2 + i))) {
+        return i;
+      }
+    }
+    return n;
+  }
+
+  static <T,Y> int commonSuffix(
+      Tuple<T> text1, int start1, int end1,
+      Tuple<Y> text2, int start2, int end2,
+      Equivalencer<T,Y> equivalencer) {
+    int n = Math.min(end1 - start1, end2 - start2);
+    for (int i = 1; i <= n; i++) {
+      if (!equivalencer.equivalent(text1.get(end1 - i), text2.get(end2 - i))) {
+        return i - 1;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Returns the offset of the first occurrence of the second range within the
+   * first range, or -1.
+   */
+  static <T,Y> int indexOf(
+      Tuple<T> text1, int start1, int end1,
+      Tuple<Y> text2, int start2, int end2,
+      Equivalencer<T,Y> equivalencer) {
+    int length = end2 - start2;
+    int last = end1 - length;
+    outer:
+    for (int i = start1; i <= last; i++) {
+      for (int j = 0; j < length; j++) {
+        if (!equivalencer.equivalent(text1.get(i + j), text2.get(start2 + j))) {
+          continue outer;
+        }
+      }
+      return i - start1;
     }
+    return -1;
   }
 }
@@ -0,0 +1,368 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Cursor;
+import org.github.evenjn.yarn.EndOfCursorException;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ * A three-way merge, computed when it is iterated over for the first time.
+ *
+ * Ours and theirs are aligned with the base, concurrently when the options
+ * allow it, and the two alignments are memoized. Iterators walk both edit
+ * scripts at once, one operation at a time: a stable chunk that no side
+ * changes is a run of base elements that are EQUAL in both scripts, and every
+ * other chunk extends until both scripts reach an equality at the same base
+ * element. Chunks are views of the tuples, and no per-element pairs are
+ * created.
+ *
+ * When the equivalencer can be interned, the symbols of ours and theirs are
+ * kept, and a chunk that both change in the same way is stable.
+ */
+class Diff3<I, Y> implements
+		Iterable<MergeChunk<I, Y>> {
+
+	private final Tuple<I> base;
+
+	private final Tuple<Y> ours;
+
+	private final Tuple<Y> theirs;
+
+	private final Equivalencer<I, Y> equivalencer;
+
+	private final DiffOptions options;
+
+	private volatile EditScript[] scripts;
+
+	/**
+	 * The symbols of ours and theirs, or {@code null} when the equivalencer
+	 * cannot be interned. Written before the scripts.
+	 */
+	private int[] ours_symbols;
+
+	private int[] theirs_symbols;
+
+	Diff3(Tuple<I> base, Tuple<Y> ours, Tuple<Y> theirs,
+			Equivalencer<I, Y> equivalencer, DiffOptions options) {
+		this.base = base;
+		this.ours = ours;
+		this.theirs = theirs;
+		this.equivalencer = equivalencer;
+		this.options = options;
+	}
+
+	private EditScript[] scripts( ) {
+		EditScript[] result = scripts;
+		if ( result == null ) {
+			synchronized ( this ) {
+				result = scripts;
+				if ( result == null ) {
+					result = options.run( this::compute );
+					scripts = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the alignments of the base with ours and with theirs.
+	 */
+	private EditScript[] compute( ) {
+		Interner<I, Y> interner = Interner.of( equivalencer );
+		if ( interner != null ) {
+			// Symbols are assigned serially, and aligned concurrently.
+			int[] symbols = interner.front( base );
+			ours_symbols = interner.back( ours );
+			theirs_symbols = interner.back( theirs );
+			return both(
+					( ) -> Diff.adiff_main( symbols, ours_symbols, options,
+							options.deadline( ) ),
+					( ) -> Diff.adiff_main( symbols, theirs_symbols, options,
+							options.deadline( ) ) );
+		}
+		return both(
+				( ) -> Diff.adiff_main( base, ours, equivalencer, options,
+						options.deadline( ) ),
+				( ) -> Diff.adiff_main( base, theirs, equivalencer, options,
+						options.deadline( ) ) );
+	}
+
+	private EditScript[] both( Supplier<EditScript> first,
+			Supplier<EditScript> second ) {
+		int size = base.size( ) + Math.min( ours.size( ), theirs.size( ) );
+		if ( options.fork( size ) ) {
+			ForkJoinTask<EditScript> task =
+					ForkJoinTask.adapt( second::get ).fork( );
+			EditScript result = first.get( );
+			return new EditScript[] { result, task.join( ) };
+		}
+		return new EditScript[] { first.get( ), second.get( ) };
+	}
+
+	@Override
+	public Iterator<MergeChunk<I, Y>> iterator( ) {
+		return KnittingCursor.wrap( new Chunks( ) ).asIterator( );
+	}
+
+	/**
+	 * A position in an edit script of the base with another tuple.
+	 */
+	private static final class Walker {
+
+		private final EditScript diffs;
+
+		/**
+		 * The current operation, and the elements of it already consumed.
+		 */
+		private int current;
+
+		private int offset;
+
+		private int base;
+
+		private int other;
+
+		/**
+		 * Whether an operation other than EQUAL was consumed since the last
+		 * reset.
+		 */
+		private boolean changed;
+
+		private Walker(EditScript diffs) {
+			this.diffs = diffs;
+		}
+
+		private boolean done( ) {
+			return current == diffs.size( );
+		}
+
+		private boolean atEqual( ) {
+			return current < diffs.size( )
+					&& diffs.kind( current ) == EditScript.EQUAL;
+		}
+
+		private int remaining( ) {
+			return diffs.length( current ) - offset;
+		}
+
+		/**
+		 * Consumes the argument number of elements of the current equality.
+		 */
+		private void advance( int length ) {
+			offset += length;
+			base += length;
+			other += length;
+			if ( offset == diffs.length( current ) ) {
+				current++;
+				offset = 0;
+			}
+		}
+
+		/**
+		 * Consumes the operations up to the next equality.
+		 */
+		private void skipChanges( ) {
+			while ( current < diffs.size( )
+					&& diffs.kind( current ) != EditScript.EQUAL ) {
+				base += diffs.frontLength( current );
+				other += diffs.backLength( current );
+				current++;
+				changed = true;
+			}
+		}
+	}
+
+	private final class Chunks implements
+			Cursor<MergeChunk<I, Y>> {
+
+		private Walker ours_walker;
+
+		private Walker theirs_walker;
+
+		@Override
+		public MergeChunk<I, Y> next( )
+				throws EndOfCursorException {
+			if ( ours_walker == null ) {
+				EditScript[] both = scripts( );
+				ours_walker = new Walker( both[0] );
+				theirs_walker = new Walker( both[1] );
+			}
+			Walker a = ours_walker;
+			Walker b = theirs_walker;
+			if ( a.done( ) && b.done( ) ) {
+				throw EndOfCursorException.neo( );
+			}
+			int base_start = a.base;
+			int ours_start = a.other;
+			int theirs_start = b.other;
+			if ( a.atEqual( ) && b.atEqual( ) ) {
+				while ( a.atEqual( ) && b.atEqual( ) ) {
+					int length = Math.min( a.remaining( ), b.remaining( ) );
+					a.advance( length );
+					b.advance( length );
+				}
+				return new Chunk( base_start, a.base, ours_start, a.other,
+						theirs_start, b.other, false, false, false );
+			}
+			a.changed = false;
+			b.changed = false;
+			for ( ;; ) {
+				a.skipChanges( );
+				b.skipChanges( );
+				if ( a.base == b.base ) {
+					// Both are at an equality, or both are done.
+					break;
+				}
+				// The walker behind is within an equality: catch up.
+				Walker behind = a.base < b.base ? a : b;
+				Walker ahead = behind == a ? b : a;
+				behind.advance(
+						Math.min( ahead.base - behind.base, behind.remaining( ) ) );
+			}
+			boolean conflict = a.changed && b.changed
+					&& !same( ours_start, a.other, theirs_start, b.other );
+			return new Chunk( base_start, a.base, ours_start, a.other,
+					theirs_start, b.other, a.changed, b.changed, conflict );
+		}
+	}
+
+	/**
+	 * Returns whether the argument ranges of ours and theirs hold the same
+	 * symbols. Without symbols, only empty ranges are known to be the same.
+	 */
+	private boolean same( int ours_start, int ours_end, int theirs_start,
+			int theirs_end ) {
+		if ( ours_end - ours_start != theirs_end - theirs_start ) {
+			return false;
+		}
+		if ( ours_symbols == null ) {
+			return ours_end == ours_start;
+		}
+		for ( int i = 0; i < ours_end - ours_start; i++ ) {
+			if ( ours_symbols[ours_start + i] != theirs_symbols[theirs_start
+					+ i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private final class Chunk implements
+			MergeChunk<I, Y> {
+
+		private final int base_start;
+
+		private final int base_end;
+
+		private final int ours_start;
+
+		private final int ours_end;
+
+		private final int theirs_start;
+
+		private final int theirs_end;
+
+		private final boolean changed_ours;
+
+		private final boolean changed_theirs;
+
+		private final boolean conflict;
+
+		private Chunk(int base_start, int base_end, int ours_start, int ours_end,
+				int theirs_start, int theirs_end, boolean changed_ours,
+				boolean changed_theirs, boolean conflict) {
+			this.base_start = base_start;
+			this.base_end = base_end;
+			this.ours_start = ours_start;
+			this.ours_end = ours_end;
+			this.theirs_start = theirs_start;
+			this.theirs_end = theirs_end;
+			this.changed_ours = changed_ours;
+			this.changed_theirs = changed_theirs;
+			this.conflict = conflict;
+		}
+
+		@Override
+		public Tuple<I> base( ) {
+			return range( base, base_start, base_end );
+		}
+
+		@Override
+		public Tuple<Y> ours( ) {
+			return range( ours, ours_start, ours_end );
+		}
+
+		@Override
+		public Tuple<Y> theirs( ) {
+			return range( theirs, theirs_start, theirs_end );
+		}
+
+		@Override
+		public boolean changedOurs( ) {
+			return changed_ours;
+		}
+
+		@Override
+		public boolean changedTheirs( ) {
+			return changed_theirs;
+		}
+
+		@Override
+		public boolean isConflict( ) {
+			return conflict;
+		}
+
+		@Override
+		public Tuple<Y> merged( ) {
+			if ( isConflict( ) ) {
+				throw new IllegalStateException( );
+			}
+			return changed_theirs ? theirs( ) : ours( );
+		}
+	}
+
+	/**
+	 * Returns a view of the elements of the argument tuple from {@code start}
+	 * included to {@code end} excluded.
+	 */
+	private static <K> Tuple<K> range( Tuple<K> tuple, int start, int end ) {
+		return new Tuple<K>( ) {
+
+			@Override
+			public K get( int index ) {
+				if ( index < 0 || index >= end - start ) {
+					throw new IllegalArgumentException( );
+				}
+				return tuple.get( start + index );
+			}
+
+			@Override
+			public int size( ) {
+				return end - start;
+			}
+		};
+	}
+}
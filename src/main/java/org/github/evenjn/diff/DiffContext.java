@@ -0,0 +1,119 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.Arrays;
+
+/**
+ * Scratch memory for the diff and distance algorithms, confined to one thread.
+ *
+ * The arrays are reused across levels of the recursion and across successive
+ * diffs computed by the same thread. A caller may use an array until it
+ * requests the same array again: the bisection is done with its V arrays
+ * before recursing on the two halves, so the recursion can reuse them.
+ */
+class DiffContext {
+
+	/**
+	 * Arrays larger than this are allocated on demand and never retained, so
+	 * that a single huge diff does not pin memory in every thread.
+	 */
+	private static final int retained_capacity = 1 << 20;
+
+	private static final ThreadLocal<DiffContext> contexts =
+			ThreadLocal.withInitial( DiffContext::new );
+
+	static DiffContext current( ) {
+		return contexts.get( );
+	}
+
+	private int[] forward = new int[0];
+
+	private int[] reverse = new int[0];
+
+	private int[] row = new int[0];
+
+	private long[] words = new long[0];
+
+	private DiffContext() {
+	}
+
+	/**
+	 * Returns an array whose first {@code length} cells are -1, to store the
+	 * furthest reaching paths of the forward search.
+	 */
+	int[] forward( int length ) {
+		if ( length > retained_capacity ) {
+			return clear( new int[length], length );
+		}
+		forward = grow( forward, length );
+		return clear( forward, length );
+	}
+
+	/**
+	 * Returns an array whose first {@code length} cells are -1, to store the
+	 * furthest reaching paths of the reverse search.
+	 */
+	int[] reverse( int length ) {
+		if ( length > retained_capacity ) {
+			return clear( new int[length], length );
+		}
+		reverse = grow( reverse, length );
+		return clear( reverse, length );
+	}
+
+	/**
+	 * Returns an array of at least {@code length} cells, to store a row of the
+	 * dynamic programming matrix of an edit distance. Its content is undefined.
+	 */
+	int[] row( int length ) {
+		if ( length > retained_capacity ) {
+			return new int[length];
+		}
+		row = grow( row, length );
+		return row;
+	}
+
+	/**
+	 * Returns an array of at least {@code length} cells, to store the bit-vectors
+	 * of a bit-parallel edit distance. Its content is undefined.
+	 */
+	long[] words( int length ) {
+		if ( length > retained_capacity ) {
+			return new long[length];
+		}
+		if ( words.length < length ) {
+			words = new long[Math.min( retained_capacity,
+					Math.max( length, words.length * 2 ) )];
+		}
+		return words;
+	}
+
+	private static int[] grow( int[] array, int length ) {
+		if ( array.length >= length ) {
+			return array;
+		}
+		return new int[Math.min( retained_capacity,
+				Math.max( length, array.length * 2 ) )];
+	}
+
+	private static int[] clear( int[] array, int length ) {
+		Arrays.fill( array, 0, length, -1 );
+		return array;
+	}
+}
@@ -19,42 +19,103 @@
 package org.github.evenjn.diff;
 
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 import org.github.evenjn.knit.KnittingCursor;
-import org.github.evenjn.knit.KnittingTuple;
-import org.github.evenjn.lang.Equivalencer;
 import org.github.evenjn.yarn.Tuple;
 
+/**
+ * An alignment of two tuples, computed when it is iterated over for the first
+ * time, and memoized for later iterations.
+ *
+ * Until the alignment is computed, iterators read the equality the alignment
+ * is guaranteed to start with, so callers that stop at the first mismatch only
+ * pay for the computation when they reach it.
+ */
 class DiffIterable<F, B> implements
 		Iterable<DiffPair<F, B>> {
 
-	private Tuple<F> front;
+	private final Tuple<F> front;
+
+	private final Tuple<B> back;
 
-	private Tuple<B> back;
+	private final IntSupplier leading;
 
-	private LinkedList<DiffOp<F, B>> diffs;
+	private final Supplier<EditScript> computation;
 
-	DiffIterable(
-			Tuple<F> front, Tuple<B> back,
-			Equivalencer<F, B> equivalencer) {
+	private volatile int leading_length = -1;
+
+	private volatile EditScript diffs;
+
+	DiffIterable(Tuple<F> front, Tuple<B> back, IntSupplier leading,
+			Supplier<EditScript> computation) {
 		this.front = front;
 		this.back = back;
-		long deadline = ( -1 );
-		diffs =
-				Diff.adiff_main_nc(
-						KnittingTuple.wrap( front ),
-						KnittingTuple.wrap( back ),
-						equivalencer,
-						deadline );
+		this.leading = leading;
+		this.computation = computation;
+	}
+
+	/**
+	 * Returns a view of the argument array as a tuple.
+	 */
+	static Tuple<Integer> tuple( int[] array ) {
+		return new Tuple<Integer>( ) {
+
+			@Override
+			public Integer get( int index ) {
+				return array[index];
+			}
+
+			@Override
+			public int size( ) {
+				return array.length;
+			}
+		};
+	}
+
+	/**
+	 * Returns the back tuple.
+	 */
+	Tuple<B> back( ) {
+		return back;
+	}
+
+	/**
+	 * Returns the alignment, computing it if necessary.
+	 */
+	EditScript script( ) {
+		EditScript result = diffs;
+		if ( result == null ) {
+			synchronized ( this ) {
+				result = diffs;
+				if ( result == null ) {
+					result = computation.get( );
+					diffs = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private int leading( ) {
+		if ( diffs != null ) {
+			return 0;
+		}
+		// Racing threads compute the same value.
+		int result = leading_length;
+		if ( result < 0 ) {
+			result = leading.getAsInt( );
+			leading_length = result;
+		}
+		return result;
 	}
 
 	@Override
 	public Iterator<DiffPair<F, B>> iterator( ) {
-		KnittingCursor<DiffOp<F, B>> cursor =
-				KnittingCursor.wrap( diffs.iterator( ) );
 		DiffIterator<F, B> diffIterator =
-				new DiffIterator<F, B>( KnittingCursor.wrap( front ), KnittingCursor.wrap( back ), cursor );
+				new DiffIterator<F, B>( KnittingCursor.wrap( front ),
+						KnittingCursor.wrap( back ), leading( ), this::script );
 		return KnittingCursor.wrap( diffIterator ).asIterator( );
 	}
 }
@@ -17,6 +17,8 @@
  */
 package org.github.evenjn.diff;
 
+import java.util.function.Supplier;
+
 import org.github.evenjn.knit.KnittingCursor;
 import org.github.evenjn.yarn.Cursor;
 import org.github.evenjn.yarn.EndOfCursorException;
@@ -108,93 +110,67 @@ class DiffPairImpl<F, B> implements
 class DiffIterator<F, B> implements
 		Cursor<DiffPair<F, B>> {
 
-	private final KnittingCursor<DiffOp<F, B>> kd;
+	private final Supplier<EditScript> script;
 
 	private final KnittingCursor<F> kc_front;
 
 	private final KnittingCursor<B> kc_back;
 
+	private final int leading;
+
+	/**
+	 * @param leading
+	 *          The length of an equality that the alignment is known to start
+	 *          with. It is read before the alignment is requested.
+	 */
 	DiffIterator(
 			KnittingCursor<F> kc_front,
 			KnittingCursor<B> kc_back,
-			KnittingCursor<DiffOp<F, B>> kd) {
+			int leading,
+			Supplier<EditScript> script) {
 		this.kc_front = kc_front;
 		this.kc_back = kc_back;
-		this.kd = kd;
+		this.leading = leading;
+		this.script = script;
+		this.remaining = leading;
 	}
 
-	private DiffOp<F, B> current = null;
-
-	private DiffPairImpl<F, B> tray;
+	private EditScript diffs = null;
 
-	private int original_start;
+	private int current = 0;
 
-	private int original_length;
+	private int kind = EditScript.EQUAL;
 
-	private int revised_start;
-
-	private int revised_length;
+	private int remaining;
 
 	@Override
 	public DiffPair<F, B> next( )
 			throws EndOfCursorException {
 
-		if ( current == null && kd.hasNext( ) ) {
-			current = kd.next( );
-			switch ( current.getOperation( ) ) {
-				case INSERT:
-					revised_length = current.getTextBack( ).size( );
-					break;
-				case EQUAL:
-					original_length = current.getTextFront( ).size( );
-					revised_length = current.getTextBack( ).size( );
-					break;
-				case DELETE:
-					original_length = current.getTextFront( ).size( );
-					break;
-				default:
-					break;
+		while ( remaining == 0 ) {
+			if ( diffs == null ) {
+				diffs = script.get( );
+				if ( leading > 0 ) {
+					// Skip the part of the first equality that was already read.
+					remaining = diffs.length( current++ ) - leading;
+					continue;
+				}
 			}
-		}
-
-		if ( current != null ) {
-			switch ( current.getOperation( ) ) {
-				case INSERT:
-					tray = DiffPairImpl.nu( null, kc_back.next( ), false, true );
-					revised_length--;
-					if ( revised_length == 0 ) {
-						current = null;
-					}
-					revised_start++;
-					break;
-				case EQUAL:
-					tray = DiffPairImpl.nu( kc_front.next( ), kc_back.next( ), true,
-							true );
-					original_length--;
-					if ( original_length == 0 ) {
-						current = null;
-					}
-					revised_length--;
-					if ( revised_length == 0 ) {
-						current = null;
-					}
-					original_start++;
-					revised_start++;
-					break;
-				case DELETE:
-					tray = DiffPairImpl.nu( kc_front.next( ), null, true, false );
-					original_length--;
-					if ( original_length == 0 ) {
-						current = null;
-					}
-					original_start++;
-					break;
-				default:
-					break;
+			if ( current == diffs.size( ) ) {
+				throw EndOfCursorException.neo( );
 			}
-			return tray;
-
+			kind = diffs.kind( current );
+			remaining = diffs.length( current++ );
+		}
+		remaining--;
+		switch ( kind ) {
+			case EditScript.INSERT:
+				return DiffPairImpl.nu( null, kc_back.next( ), false, true );
+			case EditScript.DELETE:
+				return DiffPairImpl.nu( kc_front.next( ), null, true, false );
+			default:
+				return DiffPairImpl.nu( kc_front.next( ), kc_back.next( ), true,
+						true );
 		}
-		throw EndOfCursorException.neo( );
 	}
 }
@@ -0,0 +1,309 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ *
+ * <h1>DiffOptions</h1>
+ *
+ * <p>
+ * A {@code DiffOptions} tells
+ * {@link org.github.evenjn.diff.DiffingTuple#diff(org.github.evenjn.yarn.Tuple, org.github.evenjn.lang.Equivalencer, DiffOptions)
+ * diff} how to compute an alignment. Options that change the alignment say
+ * so. The others only change the way the alignment is computed.
+ * </p>
+ *
+ * <p>
+ * A {@code DiffOptions} is immutable. Methods that configure an option return
+ * a new {@code DiffOptions}, leaving the original untouched.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @since 1.0
+ */
+public final class DiffOptions {
+
+	/**
+	 * The algorithms that compute alignments.
+	 */
+	enum Algorithm {
+		MYERS, PATIENCE, HISTOGRAM
+	}
+
+	private static final DiffOptions serial =
+			new DiffOptions( null, 0, Algorithm.MYERS, 64, -1 );
+
+	/**
+	 * <p>
+	 * {@code nu} returns the default options: the alignment is computed
+	 * serially, in the invoking thread.
+	 * </p>
+	 *
+	 * @return The default options.
+	 * @since 1.0
+	 */
+	public static DiffOptions nu( ) {
+		return serial;
+	}
+
+	final ForkJoinPool pool;
+
+	final int parallel_threshold;
+
+	final Algorithm algorithm;
+
+	final int max_chain_length;
+
+	final long timeout;
+
+	private DiffOptions(ForkJoinPool pool, int parallel_threshold,
+			Algorithm algorithm, int max_chain_length, long timeout) {
+		this.pool = pool;
+		this.parallel_threshold = parallel_threshold;
+		this.algorithm = algorithm;
+		this.max_chain_length = max_chain_length;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * <p>
+	 * {@code parallel} returns options that compute alignments in the argument
+	 * {@link java.util.concurrent.ForkJoinPool ForkJoinPool}.
+	 * </p>
+	 *
+	 * <p>
+	 * The alignment algorithm splits the problem in two halves, recursively.
+	 * When the sum of the sizes of the tuples in a sub-problem is at least
+	 * {@code threshold}, the two halves are aligned concurrently. Smaller
+	 * sub-problems are aligned serially. The result is identical to the result
+	 * of a serial computation.
+	 * </p>
+	 *
+	 * <p>
+	 * Likewise, the distances between one tuple and many others are split in
+	 * two halves of the other tuples, recursively, as long as the sum of the
+	 * sizes of the tuples compared in a half is at least {@code threshold}.
+	 * </p>
+	 *
+	 * <p>
+	 * The equivalencer used to compare elements may be invoked concurrently by
+	 * several threads.
+	 * </p>
+	 *
+	 * @param pool
+	 *          The pool that runs the computation.
+	 * @param threshold
+	 *          The minimum size of a sub-problem whose halves are aligned
+	 *          concurrently. It must be positive.
+	 * @return Options that compute alignments in parallel.
+	 * @throws IllegalArgumentException
+	 *           when {@code pool} is {@code null}, or when {@code threshold} is
+	 *           not positive.
+	 * @since 1.0
+	 */
+	public DiffOptions parallel( ForkJoinPool pool, int threshold ) {
+		if ( pool == null || threshold <= 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		return new DiffOptions( pool, threshold, algorithm, max_chain_length,
+				timeout );
+	}
+
+	/**
+	 * <p>
+	 * {@code patience} returns options that compute alignments with the
+	 * patience diff algorithm.
+	 * </p>
+	 * 
+	 * <p>
+	 * The algorithm anchors the alignment on the elements that occur exactly
+	 * once in each tuple, choosing the longest sequence of such elements that
+	 * appear in the same order in both tuples. It then aligns the gaps between
+	 * anchors recursively, and aligns gaps without anchors with the default
+	 * algorithm. On sequences where a few elements are very frequent, such as
+	 * blank lines or braces in lines of source code, this is typically faster
+	 * and the result is easier to read.
+	 * </p>
+	 * 
+	 * <p>
+	 * This option changes the alignment: the elements that are paired are not
+	 * necessarily one of the longest common subtuples. Elements are told apart
+	 * by their integer symbols, so the option applies when the equivalencer is
+	 * a {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, and
+	 * when aligning arrays of integers. With other equivalencers, the default
+	 * algorithm is used.
+	 * </p>
+	 * 
+	 * @return Options that compute alignments with the patience diff algorithm.
+	 * @since 1.0
+	 */
+	public DiffOptions patience( ) {
+		return new DiffOptions( pool, parallel_threshold, Algorithm.PATIENCE,
+				max_chain_length, timeout );
+	}
+
+	/**
+	 * <p>
+	 * {@code histogram} returns options that compute alignments with the
+	 * histogram diff algorithm, falling back to the default algorithm on
+	 * elements that occur more than 64 times.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes {@link DiffOptions#histogram(int) histogram(int)} with
+	 * argument 64.
+	 * </p>
+	 * 
+	 * @return Options that compute alignments with the histogram diff
+	 *         algorithm.
+	 * @since 1.0
+	 */
+	public DiffOptions histogram( ) {
+		return histogram( 64 );
+	}
+
+	/**
+	 * <p>
+	 * {@code histogram} returns options that compute alignments with the
+	 * histogram diff algorithm.
+	 * </p>
+	 * 
+	 * <p>
+	 * The algorithm counts the occurrences of each element of the front tuple.
+	 * It anchors the alignment on the longest common run of elements, among
+	 * the runs whose rarest element is as rare as possible, and aligns the
+	 * parts before and after the anchor recursively. On sequences where many
+	 * elements repeat, such as lines of configuration files or CSV records,
+	 * this is typically faster than the default algorithm and the result is
+	 * easier to read.
+	 * </p>
+	 * 
+	 * <p>
+	 * When a part of the front tuple contains an element more than
+	 * {@code max_chain_length} times, or when the common elements of a part
+	 * are all that frequent, that part is aligned with the default algorithm.
+	 * </p>
+	 * 
+	 * <p>
+	 * This option changes the alignment: the elements that are paired are not
+	 * necessarily one of the longest common subtuples. Like
+	 * {@link DiffOptions#patience() patience}, the option applies when elements
+	 * can be told apart by their integer symbols; with other equivalencers, the
+	 * default algorithm is used.
+	 * </p>
+	 * 
+	 * @param max_chain_length
+	 *          The maximum number of occurrences of an element that the
+	 *          algorithm tracks. It must be positive.
+	 * @return Options that compute alignments with the histogram diff
+	 *         algorithm.
+	 * @throws IllegalArgumentException
+	 *           when {@code max_chain_length} is not positive.
+	 * @since 1.0
+	 */
+	public DiffOptions histogram( int max_chain_length ) {
+		if ( max_chain_length <= 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		return new DiffOptions( pool, parallel_threshold, Algorithm.HISTOGRAM,
+				max_chain_length, timeout );
+	}
+
+	/**
+	 * <p>
+	 * {@code timeout} returns options that give the computation of each
+	 * alignment a time budget.
+	 * </p>
+	 * 
+	 * <p>
+	 * With a time budget, when two large tuples share a run of elements that is
+	 * at least half as long as the longer tuple, the problem is split in two
+	 * smaller problems around that run. When the budget runs out, the parts
+	 * that are still being aligned are aligned by pairing no elements at all.
+	 * </p>
+	 * 
+	 * <p>
+	 * This option changes the alignment: the elements that are paired are not
+	 * necessarily one of the longest common subtuples. The result is still a
+	 * valid alignment.
+	 * </p>
+	 * 
+	 * @param milliseconds
+	 *          The time budget, in milliseconds. It must be positive.
+	 * @return Options that give the computation of each alignment a time
+	 *         budget.
+	 * @throws IllegalArgumentException
+	 *           when {@code milliseconds} is not positive.
+	 * @since 1.0
+	 */
+	public DiffOptions timeout( long milliseconds ) {
+		if ( milliseconds <= 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		return new DiffOptions( pool, parallel_threshold, algorithm,
+				max_chain_length, milliseconds );
+	}
+
+	/**
+	 * Returns the time by which a computation that starts now shall be
+	 * complete, or -1 when there is no time budget.
+	 */
+	long deadline( ) {
+		if ( timeout < 0 ) {
+			return -1;
+		}
+		return System.currentTimeMillis( ) + timeout;
+	}
+
+	/**
+	 * Returns true when a problem of the argument size shall be split in two
+	 * concurrent tasks.
+	 */
+	boolean fork( int size ) {
+		return pool != null
+				&& size >= parallel_threshold
+				&& ForkJoinTask.inForkJoinPool( );
+	}
+
+	/**
+	 * Runs the argument computation in the pool, if any, or in the invoking
+	 * thread.
+	 */
+	<T> T run( Callable<T> computation ) {
+		if ( pool == null ) {
+			try {
+				return computation.call( );
+			}
+			catch ( RuntimeException e ) {
+				throw e;
+			}
+			catch ( Exception e ) {
+				throw new IllegalStateException( e );
+			}
+		}
+		return pool.invoke( ForkJoinTask.adapt( computation ) );
+	}
+}
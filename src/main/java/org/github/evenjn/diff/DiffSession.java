@@ -0,0 +1,369 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>DiffSession</h1>
+ *
+ * <p>
+ * A {@code DiffSession} keeps the alignment of two tuples, the front and the
+ * back, up to date while either of them is edited.
+ * </p>
+ *
+ * <p>
+ * The session holds its own copies of the tuples. An edit replaces a range of
+ * elements of one of them, and only the region of the alignment affected by
+ * the edit is recomputed: the region extends from the last equality that
+ * starts before the edit to the first equality that ends after it, and it is
+ * aligned as by {@link DiffingTuple#diff(Tuple, Equivalencer, DiffOptions)}.
+ * The alignment of the region is spliced between the unchanged parts of the
+ * previous alignment. An equality on the border of the region is split at the
+ * edit, so that an edit within a long equality costs time proportional to the
+ * size of the edit, and not to the size of the tuples.
+ * </p>
+ *
+ * <p>
+ * When the region covers more than half of the elements of the tuples, the
+ * whole alignment is recomputed instead. A spliced alignment is always valid,
+ * but it may differ from the alignment of the whole tuples, because a diff
+ * never moves the borders of the region.
+ * </p>
+ *
+ * <p>
+ * A session may not be used concurrently by several threads.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <F>
+ *          The type of elements in the front tuple.
+ * @param <B>
+ *          The type of elements in the back tuple.
+ * @since 1.0
+ */
+public final class DiffSession<F, B> {
+
+	/**
+	 * <p>
+	 * {@code nu} returns a session with the alignment of the argument tuples,
+	 * that tells whether elements are equivalent using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} and
+	 * computes alignments with the default options.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param front
+	 *          The front tuple.
+	 * @param back
+	 *          The back tuple.
+	 * @return A session with the alignment of the argument tuples.
+	 * @throws IllegalArgumentException
+	 *           when {@code front} or {@code back} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <K> DiffSession<K, K> nu( Tuple<K> front, Tuple<K> back ) {
+		return nu( front, back, new BasicEquivalencer<K, K>( ),
+				DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code nu} returns a session with the alignment of the argument tuples,
+	 * that tells whether elements are equivalent using the argument
+	 * {@code equivalencer} and computes alignments as specified by the argument
+	 * {@code options}.
+	 * </p>
+	 *
+	 * <p>
+	 * The session copies the argument tuples, which may be modified
+	 * afterwards.
+	 * </p>
+	 *
+	 * @param <F>
+	 *          The type of elements in the front tuple.
+	 * @param <B>
+	 *          The type of elements in the back tuple.
+	 * @param front
+	 *          The front tuple.
+	 * @param back
+	 *          The back tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute the alignments.
+	 * @return A session with the alignment of the argument tuples.
+	 * @throws IllegalArgumentException
+	 *           when {@code front}, {@code back}, {@code equivalencer} or
+	 *           {@code options} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <F, B> DiffSession<F, B> nu( Tuple<F> front, Tuple<B> back,
+			Equivalencer<F, B> equivalencer, DiffOptions options ) {
+		if ( front == null || back == null || equivalencer == null
+				|| options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		DiffSession<F, B> result =
+				new DiffSession<F, B>( copy( front ), copy( back ), equivalencer,
+						options );
+		result.diffs = result.compute( 0, result.front.size( ), 0,
+				result.back.size( ) );
+		return result;
+	}
+
+	private static <K> ArrayList<K> copy( Tuple<K> tuple ) {
+		return KnittingTuple.wrap( tuple ).collect( new ArrayList<>( ) );
+	}
+
+	private final ArrayList<F> front;
+
+	private final ArrayList<B> back;
+
+	private final Equivalencer<F, B> equivalencer;
+
+	private final DiffOptions options;
+
+	private EditScript diffs;
+
+	private DiffSession(ArrayList<F> front, ArrayList<B> back,
+			Equivalencer<F, B> equivalencer, DiffOptions options) {
+		this.front = front;
+		this.back = back;
+		this.equivalencer = equivalencer;
+		this.options = options;
+	}
+
+	/**
+	 * <p>
+	 * {@code front} returns a view of the front tuple of this session.
+	 * </p>
+	 *
+	 * @return A view of the front tuple.
+	 * @since 1.0
+	 */
+	public Tuple<F> front( ) {
+		return KnittingTuple.wrap( front );
+	}
+
+	/**
+	 * <p>
+	 * {@code back} returns a view of the back tuple of this session.
+	 * </p>
+	 *
+	 * @return A view of the back tuple.
+	 * @since 1.0
+	 */
+	public Tuple<B> back( ) {
+		return KnittingTuple.wrap( back );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff} returns the alignment of the front tuple with the back
+	 * tuple of this session.
+	 * </p>
+	 *
+	 * <p>
+	 * The returned alignment is a view of this session, and may not be used
+	 * after the next edit.
+	 * </p>
+	 *
+	 * @return An alignment of the front tuple with the back tuple.
+	 * @since 1.0
+	 */
+	public Iterable<DiffPair<F, B>> diff( ) {
+		EditScript result = diffs;
+		return new DiffIterable<F, B>( front( ), back( ), ( ) -> 0,
+				( ) -> result );
+	}
+
+	/**
+	 * <p>
+	 * {@code replaceFront} replaces the elements of the front tuple from the
+	 * argument {@code start} included to the argument {@code end} excluded with
+	 * the elements of the argument {@code replacement}, and updates the
+	 * alignment.
+	 * </p>
+	 *
+	 * <p>
+	 * An insertion is a replacement where {@code start} equals {@code end}, a
+	 * deletion is a replacement with an empty tuple.
+	 * </p>
+	 *
+	 * @param start
+	 *          The index of the first element to replace.
+	 * @param end
+	 *          The index after the last element to replace.
+	 * @param replacement
+	 *          The elements to insert in place of the replaced ones.
+	 * @throws IllegalArgumentException
+	 *           when {@code replacement} is {@code null}, when {@code start}
+	 *           is negative, when {@code end} is smaller than {@code start} or
+	 *           larger than the size of the front tuple.
+	 * @since 1.0
+	 */
+	public void replaceFront( int start, int end, Tuple<F> replacement ) {
+		replace( true, front, start, end, replacement );
+	}
+
+	/**
+	 * <p>
+	 * {@code replaceBack} replaces the elements of the back tuple from the
+	 * argument {@code start} included to the argument {@code end} excluded with
+	 * the elements of the argument {@code replacement}, and updates the
+	 * alignment.
+	 * </p>
+	 *
+	 * <p>
+	 * An insertion is a replacement where {@code start} equals {@code end}, a
+	 * deletion is a replacement with an empty tuple.
+	 * </p>
+	 *
+	 * @param start
+	 *          The index of the first element to replace.
+	 * @param end
+	 *          The index after the last element to replace.
+	 * @param replacement
+	 *          The elements to insert in place of the replaced ones.
+	 * @throws IllegalArgumentException
+	 *           when {@code replacement} is {@code null}, when {@code start}
+	 *           is negative, when {@code end} is smaller than {@code start} or
+	 *           larger than the size of the back tuple.
+	 * @since 1.0
+	 */
+	public void replaceBack( int start, int end, Tuple<B> replacement ) {
+		replace( false, back, start, end, replacement );
+	}
+
+	private <K> void replace( boolean is_front, List<K> text, int start,
+			int end, Tuple<K> replacement ) {
+		if ( replacement == null || start < 0 || end < start
+				|| end > text.size( ) ) {
+			throw new IllegalArgumentException( );
+		}
+		// Find the borders of the region: the positions in both tuples, and the
+		// operations they fall in, with their offsets.
+		int start_op = 0;
+		int start_offset = 0;
+		int start_front = 0;
+		int start_back = 0;
+		int end_op = diffs.size( );
+		int end_offset = 0;
+		int end_front = front.size( );
+		int end_back = back.size( );
+		int f = 0;
+		int b = 0;
+		for ( int d = 0; d < diffs.size( ); d++ ) {
+			int from = is_front ? f : b;
+			int to = from + ( is_front ? diffs.frontLength( d )
+					: diffs.backLength( d ) );
+			if ( diffs.kind( d ) == EditScript.EQUAL ) {
+				if ( from < start ) {
+					int offset = Math.min( start, to ) - from;
+					start_op = d;
+					start_offset = offset;
+					start_front = f + offset;
+					start_back = b + offset;
+				}
+				if ( to > end ) {
+					int offset = Math.max( end, from ) - from;
+					end_op = d;
+					end_offset = offset;
+					end_front = f + offset;
+					end_back = b + offset;
+					break;
+				}
+			}
+			f += diffs.frontLength( d );
+			b += diffs.backLength( d );
+		}
+		int removed = end - start;
+		text.subList( start, end ).clear( );
+		text.addAll( start, copy( replacement ) );
+		int delta = replacement.size( ) - removed;
+		if ( is_front ) {
+			end_front += delta;
+		}
+		else {
+			end_back += delta;
+		}
+		int region = end_front - start_front + end_back - start_back;
+		if ( 2 * region > front.size( ) + back.size( ) ) {
+			diffs = compute( 0, front.size( ), 0, back.size( ) );
+			return;
+		}
+		EditScript middle = compute( start_front, end_front, start_back,
+				end_back );
+		EditScript result = new EditScript( diffs.size( ) + middle.size( ) );
+		for ( int d = 0; d < start_op; d++ ) {
+			add( result, diffs.kind( d ), diffs.length( d ) );
+		}
+		add( result, EditScript.EQUAL, start_offset );
+		for ( int d = 0; d < middle.size( ); d++ ) {
+			add( result, middle.kind( d ), middle.length( d ) );
+		}
+		if ( end_op < diffs.size( ) ) {
+			add( result, EditScript.EQUAL, diffs.length( end_op ) - end_offset );
+			for ( int d = end_op + 1; d < diffs.size( ); d++ ) {
+				add( result, diffs.kind( d ), diffs.length( d ) );
+			}
+		}
+		diffs = result;
+	}
+
+	/**
+	 * Appends an operation, merging it with the last one when they are of the
+	 * same kind.
+	 */
+	private static void add( EditScript diffs, int kind, int length ) {
+		if ( length == 0 ) {
+			return;
+		}
+		int last = diffs.size( ) - 1;
+		if ( last >= 0 && diffs.kind( last ) == kind ) {
+			diffs.set( last, kind, diffs.length( last ) + length );
+		}
+		else {
+			diffs.add( kind, length );
+		}
+	}
+
+	/**
+	 * Returns the alignment of the front elements from {@code start1} included
+	 * to {@code end1} excluded with the back elements from {@code start2}
+	 * included to {@code end2} excluded.
+	 */
+	private EditScript compute( int start1, int end1, int start2, int end2 ) {
+		Tuple<F> text1 = KnittingTuple.wrap( front.subList( start1, end1 ) );
+		Tuple<B> text2 = KnittingTuple.wrap( back.subList( start2, end2 ) );
+		return options.run( ( ) -> Diff.adiff_main( text1, text2, equivalencer,
+				options, options.deadline( ) ) );
+	}
+}
@@ -18,6 +18,8 @@
 package org.github.evenjn.diff;
 
 import java.util.ArrayList;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
 
 import org.github.evenjn.knit.KnittingCursor;
 import org.github.evenjn.knit.KnittingTuple;
@@ -67,19 +69,42 @@ import org.github.evenjn.yarn.Tuple;
  * 
  * <ul>
  * <li>{@link #diff(Tuple)}</li>
+ * <li>{@link #diff(Tuple, DiffOptions)}</li>
  * <li>{@link #diff(Tuple, Equivalencer)}</li>
+ * <li>{@link #diff(Tuple, Equivalencer, DiffOptions)}</li>
+ * <li>{@link #diff(int[], int[])}</li>
+ * <li>{@link #diff(int[], int[], DiffOptions)}</li>
+ * <li>{@link #diff_levenshtein(Tuple)}</li>
+ * <li>{@link #diff_levenshtein(Tuple, Equivalencer)}</li>
+ * <li>{@link #diff3(Tuple, Tuple)}</li>
+ * <li>{@link #diff3(Tuple, Tuple, Equivalencer)}</li>
+ * <li>{@link #diff3(Tuple, Tuple, Equivalencer, DiffOptions)}</li>
  * <li>{@link #distance_lcs(Tuple)}</li>
+ * <li>{@link #distance_lcs(Tuple, int)}</li>
  * <li>{@link #distance_lcs(Tuple, Equivalencer)}</li>
+ * <li>{@link #distance_lcs(Tuple, Equivalencer, int)}</li>
+ * <li>{@link #distance_lcs_all(Cursor)}</li>
+ * <li>{@link #distance_lcs_all(Cursor, Equivalencer)}</li>
+ * <li>{@link #distance_lcs_all(Cursor, Equivalencer, DiffOptions)}</li>
  * <li>{@link #distance_levenshtein(Tuple)}</li>
+ * <li>{@link #distance_levenshtein(Tuple, int)}</li>
  * <li>{@link #distance_levenshtein(Tuple, Equivalencer)}</li>
+ * <li>{@link #distance_levenshtein(Tuple, Equivalencer, int)}</li>
+ * <li>{@link #distance_levenshtein_all(Cursor)}</li>
+ * <li>{@link #distance_levenshtein_all(Cursor, Equivalencer)}</li>
+ * <li>{@link #distance_levenshtein_all(Cursor, Equivalencer, DiffOptions)}</li>
  * <li>{@link #longestCommonPrefix(Tuple)}</li>
  * <li>{@link #longestCommonPrefix(Tuple, Equivalencer)}</li>
  * <li>{@link #longestCommonSubtuple(Tuple)}</li>
  * <li>{@link #longestCommonSubtuple(Tuple, Equivalencer)}</li>
  * <li>{@link #longestCommonSubtupleIntersection(Cursor)}</li>
  * <li>{@link #longestCommonSubtupleIntersection(Cursor, Equivalencer)}</li>
+ * <li>{@link #longestCommonSubtupleIntersection(Cursor, Equivalencer,
+ * DiffOptions)}</li>
  * <li>{@link #longestCommonSubtupleUnion(Cursor)}</li>
  * <li>{@link #longestCommonSubtupleUnion(Cursor, Equivalencer)}</li>
+ * <li>{@link #longestCommonSubtupleUnion(Cursor, Equivalencer, DiffOptions)}
+ * </li>
  * <li>{@link #longestCommonSuffix(Tuple)}</li>
  * <li>{@link #longestCommonSuffix(Tuple, Equivalencer)}</li>
  * </ul>
@@ -211,19 +236,403 @@ public class DiffingTuple<I> implements
 	 * <a href="https://neil.fraser.name/" >Neil Fraser's work</a>.
 	 * </p>
 	 * 
+	 * <p>
+	 * When the argument {@code equivalencer} is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, each
+	 * element is mapped to an integer symbol once, and the alignment is
+	 * computed on symbols. Otherwise, the equivalencer is invoked each time two
+	 * elements are compared.
+	 * </p>
+	 * 
+	 * <p>
+	 * The alignment is computed when the returned iterable is iterated over for
+	 * the first time, and it is reused by later iterations. When the common
+	 * prefix of the two tuples is certain to open the alignment, an iterator
+	 * returns the pairs of that prefix before the alignment is computed, and it
+	 * computes the alignment only when the first mismatching pair is requested.
+	 * Neither tuple may be modified while the returned alignment is in use.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return An alignment of this tuple with the argument tuple.
+	 * @since 1.0
+	 */
+	public <Y> Iterable<DiffPair<I, Y>> diff(
+			Tuple<Y> other,
+			Equivalencer<I, Y> equivalencer ) {
+		return diff( other, equivalencer, DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff} returns an alignment of this tuple with the argument tuple,
+	 * computed as specified by the argument {@code options}.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#diff(Tuple,Equivalencer,DiffOptions) diff(Tuple,
+	 * Equivalencer, DiffOptions)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @param options
+	 *          Options that specify how to compute the alignment.
+	 * @return An alignment of this tuple with the argument tuple.
+	 * @since 1.0
+	 */
+	public <Y> Iterable<DiffPair<I, Y>> diff(
+			Tuple<Y> other,
+			DiffOptions options ) {
+		return diff( other, private_equivalencer( ), options );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff} returns an alignment of this tuple with the argument tuple,
+	 * computed as specified by the argument {@code options}.
+	 * </p>
+	 * 
+	 * <p>
+	 * The alignment is the same that
+	 * {@link DiffingTuple#diff(Tuple,Equivalencer) diff(Tuple, Equivalencer)}
+	 * returns, unless the argument {@code options} select an algorithm that
+	 * computes a different alignment, such as
+	 * {@link org.github.evenjn.diff.DiffOptions#patience() patience}.
+	 * </p>
+	 * 
 	 * @param <Y>
 	 *          The type of elements in the argument tuple.
 	 * @param other
 	 *          Another tuple.
 	 * @param equivalencer
 	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute the alignment.
 	 * @return An alignment of this tuple with the argument tuple.
+	 * @throws IllegalArgumentException
+	 *           when {@code other}, {@code equivalencer} or {@code options} is
+	 *           {@code null}.
 	 * @since 1.0
 	 */
 	public <Y> Iterable<DiffPair<I, Y>> diff(
 			Tuple<Y> other,
+			Equivalencer<I, Y> equivalencer,
+			DiffOptions options ) {
+		if ( other == null || equivalencer == null || options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new DiffIterable<I, Y>( this, other,
+				( ) -> Diff.adiff_leadingEqual(
+						Diff.texts( this, other, equivalencer ), size( ), other.size( ) ),
+				( ) -> options.run( ( ) -> Diff.adiff_main( this, other,
+						equivalencer, options, options.deadline( ) ) ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff} returns an alignment of the argument arrays of integers.
+	 * </p>
+	 * 
+	 * <p>
+	 * The alignment is the same that {@link DiffingTuple#diff(Tuple) diff(Tuple)}
+	 * returns when comparing tuples of the same integers, but it is computed
+	 * directly on the arrays, without boxing integers or invoking an
+	 * {@link org.github.evenjn.lang.Equivalencer Equivalencer}. Integers are
+	 * boxed only when pairs are read.
+	 * </p>
+	 * 
+	 * <p>
+	 * The arguments must not be modified while the returned alignment is in
+	 * use.
+	 * </p>
+	 * 
+	 * @param front
+	 *          An array of integers, the content of the front slots.
+	 * @param back
+	 *          An array of integers, the content of the back slots.
+	 * @return An alignment of the argument arrays.
+	 * @throws IllegalArgumentException
+	 *           when {@code front} or {@code back} is {@code null}.
+	 * @since 1.0
+	 */
+	public static Iterable<DiffPair<Integer, Integer>> diff(
+			int[] front,
+			int[] back ) {
+		return diff( front, back, DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff} returns an alignment of the argument arrays of integers,
+	 * computed as specified by the argument {@code options}.
+	 * </p>
+	 * 
+	 * <p>
+	 * The alignment is the same that {@link DiffingTuple#diff(int[],int[])
+	 * diff(int[], int[])} returns, unless the argument {@code options} select an
+	 * algorithm that computes a different alignment.
+	 * </p>
+	 * 
+	 * @param front
+	 *          An array of integers, the content of the front slots.
+	 * @param back
+	 *          An array of integers, the content of the back slots.
+	 * @param options
+	 *          Options that specify how to compute the alignment.
+	 * @return An alignment of the argument arrays.
+	 * @throws IllegalArgumentException
+	 *           when {@code front}, {@code back} or {@code options} is
+	 *           {@code null}.
+	 * @since 1.0
+	 */
+	public static Iterable<DiffPair<Integer, Integer>> diff(
+			int[] front,
+			int[] back,
+			DiffOptions options ) {
+		if ( front == null || back == null || options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new DiffIterable<Integer, Integer>(
+				DiffIterable.tuple( front ),
+				DiffIterable.tuple( back ),
+				( ) -> Diff.adiff_leadingEqual(
+						IntDiff.texts( front, back ), front.length, back.length ),
+				( ) -> options.run( ( ) -> Diff.adiff_main( front, back,
+						options, options.deadline( ) ) ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff_levenshtein} returns an alignment of this tuple with the
+	 * argument tuple that allows substitutions.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#diff_levenshtein(Tuple,Equivalencer)
+	 * diff_levenshtein(Tuple, Equivalencer)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @return An alignment of this tuple with the argument tuple.
+	 * @since 1.0
+	 */
+	public <Y> Iterable<DiffPair<I, Y>> diff_levenshtein( Tuple<Y> other ) {
+		return diff_levenshtein( other, private_equivalencer( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff_levenshtein} returns an alignment of this tuple with the
+	 * argument tuple that allows substitutions, represented as a list of
+	 * {@link org.github.evenjn.diff.DiffPair pairs}.
+	 * </p>
+	 * 
+	 * <p>
+	 * The list is such that the front slots and the back slots collect this
+	 * tuple and the argument tuple, as in {@link #diff(Tuple, Equivalencer)}.
+	 * Unlike in that alignment, when both slots of a pair
+	 * {@linkplain org.github.evenjn.diff.DiffPair#hasBoth( ) are filled in},
+	 * their content may be equivalent or not: a pair of elements that are not
+	 * equivalent is a substitution.
+	 * </p>
+	 * 
+	 * <p>
+	 * The list is such that the number of pairs that have only one slot filled
+	 * in, plus the number of substitutions, is the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance" >Levenshtein
+	 * distance</a> between this tuple and the argument tuple, as computed by
+	 * {@link #distance_levenshtein(Tuple, Equivalencer)}.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method's implementation is Hirschberg's divide and conquer algorithm.
+	 * It takes time proportional to the product of the sizes of the two tuples,
+	 * but memory proportional to their sum, so it can align tuples of millions of
+	 * elements.
+	 * </p>
+	 * 
+	 * <p>
+	 * When the argument {@code equivalencer} is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, each
+	 * element is mapped to an integer symbol once, and the alignment is
+	 * computed on symbols. Otherwise, the equivalencer is invoked each time two
+	 * elements are compared.
+	 * </p>
+	 * 
+	 * <p>
+	 * The alignment is computed when the returned iterable is iterated over for
+	 * the first time, and it is reused by later iterations. Neither tuple may be
+	 * modified while the returned alignment is in use.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return An alignment of this tuple with the argument tuple.
+	 * @throws IllegalArgumentException
+	 *           when {@code other} or {@code equivalencer} is {@code null}.
+	 * @since 1.0
+	 */
+	public <Y> Iterable<DiffPair<I, Y>> diff_levenshtein(
+			Tuple<Y> other,
+			Equivalencer<I, Y> equivalencer ) {
+		if ( other == null || equivalencer == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new DiffIterable<I, Y>( this, other,
+				( ) -> longestCommonPrefix( other, equivalencer ),
+				( ) -> Hirschberg.hdiff_main( size( ), other.size( ),
+						matcher( other, equivalencer ) ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff3} returns a three-way merge of the argument tuples, ours and
+	 * theirs, that derive from this tuple.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#diff3(Tuple,Tuple,Equivalencer) diff3(Tuple, Tuple,
+	 * Equivalencer)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param ours
+	 *          A tuple that derives from this tuple.
+	 * @param theirs
+	 *          Another tuple that derives from this tuple.
+	 * @return The chunks of a three-way merge of the argument tuples.
+	 * @since 1.0
+	 */
+	public <Y> Iterable<MergeChunk<I, Y>> diff3( Tuple<Y> ours,
+			Tuple<Y> theirs ) {
+		return diff3( ours, theirs, private_equivalencer( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff3} returns a three-way merge of the argument tuples, ours and
+	 * theirs, that derive from this tuple, using the argument
+	 * {@code equivalencer}.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#diff3(Tuple,Tuple,Equivalencer,DiffOptions)
+	 * diff3(Tuple, Tuple, Equivalencer, DiffOptions)} using the default
+	 * options.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param ours
+	 *          A tuple that derives from this tuple.
+	 * @param theirs
+	 *          Another tuple that derives from this tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return The chunks of a three-way merge of the argument tuples.
+	 * @since 1.0
+	 */
+	public <Y> Iterable<MergeChunk<I, Y>> diff3(
+			Tuple<Y> ours,
+			Tuple<Y> theirs,
 			Equivalencer<I, Y> equivalencer ) {
-		return new DiffIterable<I, Y>( this, other, equivalencer );
+		return diff3( ours, theirs, equivalencer, DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code diff3} returns a three-way merge of the argument tuples, ours and
+	 * theirs, that derive from this tuple, using the argument
+	 * {@code equivalencer} and computed as specified by the argument
+	 * {@code options}.
+	 * </p>
+	 * 
+	 * <p>
+	 * Ours and theirs are each aligned with this tuple, as by
+	 * {@link DiffingTuple#diff(Tuple,Equivalencer,DiffOptions) diff(Tuple,
+	 * Equivalencer, DiffOptions)}. The merge is the sequence of
+	 * {@link MergeChunk chunks} that the two alignments agree on: a chunk
+	 * that neither changes is a run of elements of this tuple that both
+	 * alignments pair with equivalent elements, and every other chunk extends
+	 * up to the next element of this tuple that both alignments pair. The
+	 * merged tuple is the concatenation of the merged elements of the chunks,
+	 * when no chunk is a conflict.
+	 * </p>
+	 * 
+	 * <p>
+	 * The alignments are computed when the merge is iterated over for the first
+	 * time, concurrently when the argument options are
+	 * {@link DiffOptions#parallel( java.util.concurrent.ForkJoinPool, int)
+	 * parallel}, and memoized. Chunks are produced one at a time, in a single
+	 * pass over the two alignments, and their elements are views of the
+	 * tuples.
+	 * </p>
+	 * 
+	 * <p>
+	 * When the equivalencer is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, a
+	 * chunk where ours and theirs replace the elements of this tuple with
+	 * equivalent elements is stable. Since other equivalencers compare
+	 * elements of this tuple with elements of the argument tuples only, with
+	 * them such a chunk is a conflict, unless both delete its elements.
+	 * </p>
+	 * 
+	 * <p>
+	 * The tuples may not be modified while the merge is in use.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param ours
+	 *          A tuple that derives from this tuple.
+	 * @param theirs
+	 *          Another tuple that derives from this tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute the alignments.
+	 * @return The chunks of a three-way merge of the argument tuples.
+	 * @throws IllegalArgumentException
+	 *           when {@code ours}, {@code theirs}, {@code equivalencer} or
+	 *           {@code options} is {@code null}.
+	 * @since 1.0
+	 */
+	public <Y> Iterable<MergeChunk<I, Y>> diff3(
+			Tuple<Y> ours,
+			Tuple<Y> theirs,
+			Equivalencer<I, Y> equivalencer,
+			DiffOptions options ) {
+		if ( ours == null || theirs == null || equivalencer == null
+				|| options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new Diff3<I, Y>( this, ours, theirs, equivalencer, options );
 	}
 
 	/**
@@ -264,6 +673,12 @@ public class DiffingTuple<I> implements
 	 * element of this tuple is equal to an element of the argument tuple.
 	 * </p>
 	 * 
+	 * <p>
+	 * This method takes time proportional to the sum of the sizes of the two
+	 * tuples multiplied by their distance, so tuples that differ by a few
+	 * elements are compared in nearly linear time.
+	 * </p>
+	 * 
 	 * @param <Y>
 	 *          The type of elements in the argument tuple.
 	 * @param other
@@ -275,7 +690,188 @@ public class DiffingTuple<I> implements
 	 */
 	public <Y> int distance_lcs( Tuple<Y> other,
 			Equivalencer<I, Y> equivalencer ) {
-		return distance( other, equivalencer, false );
+		return Distance.lcs( size( ), other.size( ),
+				matcher( other, equivalencer ), Integer.MAX_VALUE );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_lcs} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+	 * >Longest Common Subsequence distance</a> between this tuple and the
+	 * argument tuple, when it is not larger than the argument
+	 * {@code max_distance}. Otherwise, it returns -1.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#distance_lcs(Tuple,Equivalencer,int)
+	 * distance_lcs(Tuple, Equivalencer, int)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @return The distance between this tuple and the argument tuple, or -1
+	 *         when it is larger than {@code max_distance}.
+	 * @throws IllegalArgumentException
+	 *           when {@code max_distance} is negative.
+	 * @since 1.0
+	 */
+	public <Y> int distance_lcs( Tuple<Y> other, int max_distance ) {
+		return distance_lcs( other, private_equivalencer( ), max_distance );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_lcs} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+	 * >Longest Common Subsequence distance</a> between this tuple and the
+	 * argument tuple, when it is not larger than the argument
+	 * {@code max_distance}. Otherwise, it returns -1.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method uses the argument {@code equivalencer} to decide whether an
+	 * element of this tuple is equal to an element of the argument tuple.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method stops as soon as the distance is certain to exceed
+	 * {@code max_distance}. It takes time proportional to the sum of the sizes of
+	 * the two tuples multiplied by the smaller of the distance and
+	 * {@code max_distance}.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @return The distance between this tuple and the argument tuple, or -1
+	 *         when it is larger than {@code max_distance}.
+	 * @throws IllegalArgumentException
+	 *           when {@code max_distance} is negative.
+	 * @since 1.0
+	 */
+	public <Y> int distance_lcs( Tuple<Y> other,
+			Equivalencer<I, Y> equivalencer, int max_distance ) {
+		if ( max_distance < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		return Distance.lcs( size( ), other.size( ),
+				matcher( other, equivalencer ), max_distance );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_lcs_all} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+	 * >Longest Common Subsequence distance</a> between this tuple and each tuple
+	 * in the argument cursor.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#distance_lcs_all(Cursor,Equivalencer,DiffOptions)
+	 * distance_lcs_all(Cursor, Equivalencer, DiffOptions)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} and
+	 * the default options.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param others
+	 *          A cursor of tuples.
+	 * @return The distances between this tuple and each tuple in the argument
+	 *         cursor, in the order of the cursor.
+	 * @since 1.0
+	 */
+	public <Y> int[] distance_lcs_all( Cursor<? extends Tuple<Y>> others ) {
+		return distance_lcs_all( others, private_equivalencer( ),
+				DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_lcs_all} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+	 * >Longest Common Subsequence distance</a> between this tuple and each tuple
+	 * in the argument cursor.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#distance_lcs_all(Cursor,Equivalencer,DiffOptions)
+	 * distance_lcs_all(Cursor, Equivalencer, DiffOptions)} using the default
+	 * options.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param others
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return The distances between this tuple and each tuple in the argument
+	 *         cursor, in the order of the cursor.
+	 * @since 1.0
+	 */
+	public <Y> int[] distance_lcs_all( Cursor<? extends Tuple<Y>> others,
+			Equivalencer<I, Y> equivalencer ) {
+		return distance_lcs_all( others, equivalencer, DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_lcs_all} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+	 * >Longest Common Subsequence distance</a> between this tuple and each tuple
+	 * in the argument cursor.
+	 * </p>
+	 * 
+	 * <p>
+	 * The result is the same as invoking
+	 * {@link DiffingTuple#distance_lcs(Tuple,Equivalencer) distance_lcs(Tuple,
+	 * Equivalencer)} on each tuple in the cursor, but the work that depends
+	 * only on this tuple is done once, and the memory used to compute each
+	 * distance is reused for the next one.
+	 * </p>
+	 * 
+	 * <p>
+	 * When the argument options are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, distances are computed
+	 * concurrently in the pool of the options, and the equivalencer may be
+	 * invoked concurrently by several threads. The cursor is consumed by the
+	 * invoking thread before any distance is computed. Other options are
+	 * ignored.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param others
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that tell how to compute the distances.
+	 * @return The distances between this tuple and each tuple in the argument
+	 *         cursor, in the order of the cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code others}, {@code equivalencer} or {@code options}
+	 *           is {@code null}.
+	 * @since 1.0
+	 */
+	public <Y> int[] distance_lcs_all( Cursor<? extends Tuple<Y>> others,
+			Equivalencer<I, Y> equivalencer, DiffOptions options ) {
+		return distances( others, equivalencer, false, options );
 	}
 
 	/**
@@ -315,6 +911,16 @@ public class DiffingTuple<I> implements
 	 * element of this tuple is equal to an element of the argument tuple.
 	 * </p>
 	 * 
+	 * <p>
+	 * When the argument {@code equivalencer} is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, each
+	 * element is mapped to an integer symbol once, and the distance is computed
+	 * on symbols with a bit-parallel algorithm, 64 elements of the shorter tuple
+	 * at a time. Otherwise, the equivalencer is invoked for each pair of
+	 * elements.
+	 * </p>
+	 * 
 	 * @param <Y>
 	 *          The type of elements in the argument tuple.
 	 * @param other
@@ -326,7 +932,197 @@ public class DiffingTuple<I> implements
 	 */
 	public <Y> int distance_levenshtein( Tuple<Y> other,
 			Equivalencer<I, Y> equivalencer ) {
-		return distance( other, equivalencer, true );
+		return distance( other, equivalencer );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_levenshtein} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance" >Levenshtein
+	 * distance</a> between this tuple and the argument tuple, when it is not
+	 * larger than the argument {@code max_distance}. Otherwise, it returns -1.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#distance_levenshtein(Tuple,Equivalencer,int)
+	 * distance_levenshtein(Tuple, Equivalencer, int)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @return The distance between this tuple and the argument tuple, or -1
+	 *         when it is larger than {@code max_distance}.
+	 * @throws IllegalArgumentException
+	 *           when {@code max_distance} is negative.
+	 * @since 1.0
+	 */
+	public <Y> int distance_levenshtein( Tuple<Y> other, int max_distance ) {
+		return distance_levenshtein( other, private_equivalencer( ),
+				max_distance );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_levenshtein} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance" >Levenshtein
+	 * distance</a> between this tuple and the argument tuple, when it is not
+	 * larger than the argument {@code max_distance}. Otherwise, it returns -1.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method uses the argument {@code equivalencer} to decide whether an
+	 * element of this tuple is equal to an element of the argument tuple.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method compares only the pairs of elements whose positions differ by
+	 * at most {@code max_distance}, and it stops as soon as the distance is
+	 * certain to exceed {@code max_distance}. It takes time proportional to
+	 * {@code max_distance} multiplied by the size of the longer tuple, so it is
+	 * much faster than {@link #distance_levenshtein(Tuple, Equivalencer)} when
+	 * {@code max_distance} is small.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuple.
+	 * @param other
+	 *          Another tuple.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @return The distance between this tuple and the argument tuple, or -1
+	 *         when it is larger than {@code max_distance}.
+	 * @throws IllegalArgumentException
+	 *           when {@code max_distance} is negative.
+	 * @since 1.0
+	 */
+	public <Y> int distance_levenshtein( Tuple<Y> other,
+			Equivalencer<I, Y> equivalencer, int max_distance ) {
+		if ( max_distance < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		Interner<I, Y> interner = Interner.of( equivalencer );
+		if ( interner == null ) {
+			return Distance.levenshtein( size( ), other.size( ),
+					matcher( other, equivalencer ), max_distance );
+		}
+		int[] front = interner.front( this );
+		int[] back = interner.back( other );
+		return Distance.levenshtein( front, back, interner.size( ),
+				max_distance );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_levenshtein_all} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance"
+	 * >Levenshtein distance</a> between this tuple and each tuple in the argument
+	 * cursor.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#distance_levenshtein_all(Cursor,Equivalencer,DiffOptions)
+	 * distance_levenshtein_all(Cursor, Equivalencer, DiffOptions)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} and
+	 * the default options.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param others
+	 *          A cursor of tuples.
+	 * @return The distances between this tuple and each tuple in the argument
+	 *         cursor, in the order of the cursor.
+	 * @since 1.0
+	 */
+	public <Y> int[] distance_levenshtein_all(
+			Cursor<? extends Tuple<Y>> others ) {
+		return distance_levenshtein_all( others, private_equivalencer( ),
+				DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_levenshtein_all} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance"
+	 * >Levenshtein distance</a> between this tuple and each tuple in the argument
+	 * cursor.
+	 * </p>
+	 * 
+	 * <p>
+	 * This method invokes
+	 * {@link DiffingTuple#distance_levenshtein_all(Cursor,Equivalencer,DiffOptions)
+	 * distance_levenshtein_all(Cursor, Equivalencer, DiffOptions)} using the
+	 * default options.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param others
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return The distances between this tuple and each tuple in the argument
+	 *         cursor, in the order of the cursor.
+	 * @since 1.0
+	 */
+	public <Y> int[] distance_levenshtein_all(
+			Cursor<? extends Tuple<Y>> others, Equivalencer<I, Y> equivalencer ) {
+		return distance_levenshtein_all( others, equivalencer, DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code distance_levenshtein_all} returns the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance"
+	 * >Levenshtein distance</a> between this tuple and each tuple in the argument
+	 * cursor.
+	 * </p>
+	 * 
+	 * <p>
+	 * The result is the same as invoking
+	 * {@link DiffingTuple#distance_levenshtein(Tuple,Equivalencer)
+	 * distance_levenshtein(Tuple, Equivalencer)} on each tuple in the cursor, but
+	 * the work that depends only on this tuple is done once, and the memory used
+	 * to compute each distance is reused for the next one.
+	 * </p>
+	 * 
+	 * <p>
+	 * When the argument options are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, distances are computed
+	 * concurrently in the pool of the options, and the equivalencer may be
+	 * invoked concurrently by several threads. The cursor is consumed by the
+	 * invoking thread before any distance is computed. Other options are
+	 * ignored.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the argument tuples.
+	 * @param others
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that tell how to compute the distances.
+	 * @return The distances between this tuple and each tuple in the argument
+	 *         cursor, in the order of the cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code others}, {@code equivalencer} or {@code options}
+	 *           is {@code null}.
+	 * @since 1.0
+	 */
+	public <Y> int[] distance_levenshtein_all(
+			Cursor<? extends Tuple<Y>> others, Equivalencer<I, Y> equivalencer,
+			DiffOptions options ) {
+		return distances( others, equivalencer, true, options );
 	}
 
 	/**
@@ -527,34 +1323,54 @@ public class DiffingTuple<I> implements
 	public <Y> Tuple<I> longestCommonSubtupleIntersection(
 			Cursor<? extends Tuple<Y>> masks,
 			Equivalencer<I, Y> equivalencer ) {
+		return longestCommonSubtupleIntersection( masks, equivalencer,
+				DiffOptions.nu( ) );
+	}
 
-		ArrayList<Boolean> keeps = new ArrayList<>( );
-		for ( int i = 0; i < size( ); i++ ) {
-			keeps.add( true );
-		}
-
-		for ( Tuple<Y> single_mask : KnittingCursor.wrap( masks ).once( ) ) {
-
-			int j = 0;
-			for ( DiffPair<I, Y> bi : diff( single_mask, equivalencer ) ) {
-				if ( bi.hasFront( ) ) {
-					if ( !bi.hasBoth( ) ) {
-						keeps.set( j, false );
-					}
-					j++;
-				}
-			}
-		}
-
-		ArrayList<I> result = new ArrayList<>( );
-		int j = 0;
-		for ( Boolean keep : keeps ) {
-			if ( keep ) {
-				result.add( get( j ) );
-			}
-			j++;
-		}
-		return KnittingTuple.wrap( result );
+	/**
+	 * <p>
+	 * {@code longestCommonSubtupleIntersection} returns the intersection of some
+	 * of the longest common subsequences between this tuple and each tuple in the
+	 * argument cursor, computed as specified by the argument {@code options}.
+	 * Elements are drawn from this tuple.
+	 * </p>
+	 * 
+	 * <p>
+	 * Each longest common subsequence is the one drawn from the alignment that
+	 * {@link DiffingTuple#diff(Tuple,Equivalencer,DiffOptions) diff(Tuple,
+	 * Equivalencer, DiffOptions)} computes with the same options.
+	 * </p>
+	 * 
+	 * <p>
+	 * When the argument options are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, the tuples in the cursor
+	 * are aligned with this tuple concurrently, in the pool of the options, and
+	 * the equivalencer may be invoked concurrently by several threads. The
+	 * cursor is read by the invoking thread, as by
+	 * {@link Consensus#addAll(Cursor)}. The result does not depend on the order
+	 * in which alignments are completed.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the mask tuples.
+	 * @param masks
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute the alignments.
+	 * @return the intersection of some longest common subsequences between this
+	 *         tuple and each tuple in the argument cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code masks}, {@code equivalencer} or {@code options} is
+	 *           {@code null}.
+	 * @since 1.0
+	 */
+	public <Y> Tuple<I> longestCommonSubtupleIntersection(
+			Cursor<? extends Tuple<Y>> masks,
+			Equivalencer<I, Y> equivalencer,
+			DiffOptions options ) {
+		return longestCommonSubtupleCount( masks, equivalencer, options, true );
 	}
 
 	/**
@@ -619,34 +1435,54 @@ public class DiffingTuple<I> implements
 	public <Y> Tuple<I> longestCommonSubtupleUnion(
 			Cursor<? extends Tuple<Y>> masks,
 			Equivalencer<I, Y> equivalencer ) {
+		return longestCommonSubtupleUnion( masks, equivalencer,
+				DiffOptions.nu( ) );
+	}
 
-		ArrayList<Boolean> keeps = new ArrayList<>( );
-		for ( int i = 0; i < size( ); i++ ) {
-			keeps.add( false );
-		}
-
-		for ( Tuple<Y> single_mask : KnittingCursor.wrap( masks ).once( ) ) {
-
-			int j = 0;
-			for ( DiffPair<I, Y> bi : diff( single_mask, equivalencer ) ) {
-				if ( bi.hasFront( ) ) {
-					if ( !bi.hasBoth( ) ) {
-						keeps.set( j, false );
-					}
-					j++;
-				}
-			}
-		}
-
-		ArrayList<I> result = new ArrayList<>( );
-		int j = 0;
-		for ( Boolean keep : keeps ) {
-			if ( keep ) {
-				result.add( get( j ) );
-			}
-			j++;
-		}
-		return KnittingTuple.wrap( result );
+	/**
+	 * <p>
+	 * {@code longestCommonSubtupleUnion} returns the union of some of the longest
+	 * common subsequences between this tuple and each tuple in the argument
+	 * cursor, computed as specified by the argument {@code options}. Elements
+	 * are drawn from this tuple.
+	 * </p>
+	 * 
+	 * <p>
+	 * Each longest common subsequence is the one drawn from the alignment that
+	 * {@link DiffingTuple#diff(Tuple,Equivalencer,DiffOptions) diff(Tuple,
+	 * Equivalencer, DiffOptions)} computes with the same options.
+	 * </p>
+	 * 
+	 * <p>
+	 * When the argument options are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, the tuples in the cursor
+	 * are aligned with this tuple concurrently, in the pool of the options, and
+	 * the equivalencer may be invoked concurrently by several threads. The
+	 * cursor is read by the invoking thread, as by
+	 * {@link Consensus#addAll(Cursor)}. The result does not depend on the order
+	 * in which alignments are completed.
+	 * </p>
+	 * 
+	 * @param <Y>
+	 *          The type of elements in the mask tuples.
+	 * @param masks
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute the alignments.
+	 * @return the union of some longest common subsequences between this tuple
+	 *         and each tuple in the argument cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code masks}, {@code equivalencer} or {@code options} is
+	 *           {@code null}.
+	 * @since 1.0
+	 */
+	public <Y> Tuple<I> longestCommonSubtupleUnion(
+			Cursor<? extends Tuple<Y>> masks,
+			Equivalencer<I, Y> equivalencer,
+			DiffOptions options ) {
+		return longestCommonSubtupleCount( masks, equivalencer, options, false );
 	}
 
 	/**
@@ -720,67 +1556,94 @@ public class DiffingTuple<I> implements
 		this.wrapped = tuple;
 	}
 
-	private <Y> int distance( Tuple<Y> other,
-			Equivalencer<I, Y> equivalencer, boolean allow_substitution ) {
-		Tuple<I> s = this;
-		Tuple<Y> t = other;
-
-		int n = s.size( );
-		int m = t.size( );
-
-		if ( n == 0 ) {
-			return m;
+	private <Y> int[] distances( Cursor<? extends Tuple<Y>> others,
+			Equivalencer<I, Y> equivalencer, boolean allow_substitution,
+			DiffOptions options ) {
+		if ( others == null || equivalencer == null || options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		ArrayList<Tuple<Y>> targets = new ArrayList<>( );
+		for ( Tuple<Y> target : KnittingCursor.wrap( others ).once( ) ) {
+			targets.add( target );
+		}
+		int[] sizes = new int[targets.size( )];
+		for ( int t = 0; t < sizes.length; t++ ) {
+			sizes[t] = targets.get( t ).size( );
+		}
+		int n = size( );
+		Interner<I, Y> interner = Interner.of( equivalencer );
+		IntUnaryOperator distance;
+		if ( interner == null ) {
+			distance = t -> {
+				Tuple<Y> target = targets.get( t );
+				Distance.Matcher matcher =
+						( i, j ) -> equivalencer.equivalent( get( i ), target.get( j ) );
+				return allow_substitution
+						? Distance.levenshtein( n, sizes[t], matcher, Integer.MAX_VALUE )
+						: Distance.lcs( n, sizes[t], matcher, Integer.MAX_VALUE );
+			};
 		}
-		else
-			if ( m == 0 ) {
-				return n;
+		else {
+			// The symbols of this tuple are assigned before any concurrent lookup.
+			int[] front = interner.front( this );
+			if ( allow_substitution ) {
+				ToIntFunction<int[]> levenshtein =
+						Distance.levenshtein( front, interner.size( ) );
+				distance = t -> levenshtein
+						.applyAsInt( interner.known( targets.get( t ) ) );
+			}
+			else {
+				distance = t -> {
+					int[] back = interner.known( targets.get( t ) );
+					return Distance.lcs( n, back.length,
+							( i, j ) -> front[i] == back[j], Integer.MAX_VALUE );
+				};
 			}
-
-		if ( n > m ) {
-			// swap the input strings to consume less memory
-			return DiffingTuple.wrap( other ).distance( this,
-					equivalencer.swap( ), allow_substitution );
 		}
+		return Distance.all( n, sizes, distance, options );
+	}
 
-		final int p[] = new int[n + 1];
-		// indexes into strings s and t
-		int i; // iterates through s
-		int j; // iterates through t
-		int upper_left;
-		int upper;
-
-		Y t_j; // jth character of t
-		int cost_sub;
-		int cost_base;
-
-		for ( i = 0; i <= n; i++ ) {
-			p[i] = i;
+	/**
+	 * Returns the elements of this tuple that are aligned with an equivalent
+	 * element in every mask, when {@code intersection} is true, or in at least
+	 * one mask, otherwise.
+	 */
+	private <Y> Tuple<I> longestCommonSubtupleCount(
+			Cursor<? extends Tuple<Y>> masks, Equivalencer<I, Y> equivalencer,
+			DiffOptions options, boolean intersection ) {
+		if ( masks == null ) {
+			throw new IllegalArgumentException( );
 		}
+		Consensus<I, Y> consensus = Consensus.nu( this, equivalencer, options );
+		consensus.addAll( masks );
+		return consensus.supported( intersection ? consensus.masks( ) : 1 );
+	}
 
-		for ( j = 1; j <= m; j++ ) {
-			upper_left = p[0];
-			t_j = t.get( j - 1 );
-			p[0] = j;
-
-			for ( i = 1; i <= n; i++ ) {
-				upper = p[i];
-
-				// minimum of cell to the left+1, to the top+1, diagonally left and up
-				// +cost
-				cost_base = Math.min( p[i - 1] + 1, p[i] + 1 );
-				if ( allow_substitution ) {
-					cost_sub = equivalencer.equivalent( s.get( i - 1 ), t_j ) ? 0 : 1;
-					p[i] = Math.min( cost_base, upper_left + cost_sub );
-				}
-				else {
-					p[i] = cost_base;
-				}
-				upper_left = upper;
-			}
+	/**
+	 * Returns a matcher that compares the elements of this tuple with those of
+	 * the argument tuple, on symbols when the equivalencer allows it.
+	 */
+	private <Y> Distance.Matcher matcher( Tuple<Y> other,
+			Equivalencer<I, Y> equivalencer ) {
+		Interner<I, Y> interner = Interner.of( equivalencer );
+		if ( interner == null ) {
+			return ( i, j ) -> equivalencer.equivalent( get( i ), other.get( j ) );
 		}
+		int[] front = interner.front( this );
+		int[] back = interner.back( other );
+		return ( i, j ) -> front[i] == back[j];
+	}
 
-		return p[n];
-
+	private <Y> int distance( Tuple<Y> other,
+			Equivalencer<I, Y> equivalencer ) {
+		Interner<I, Y> interner = Interner.of( equivalencer );
+		if ( interner != null ) {
+			int[] front = interner.front( this );
+			int[] back = interner.back( other );
+			return Distance.levenshtein( front, back, interner.size( ) );
+		}
+		return Distance.levenshtein( size( ), other.size( ),
+				( i, j ) -> equivalencer.equivalent( get( i ), other.get( j ) ) );
 	}
 
 }
@@ -0,0 +1,399 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ * Edit distances between sequences of dense integer symbols, computed with
+ * bit-parallel algorithms.
+ *
+ * The shorter text is the pattern. Its positions are split into blocks of 64,
+ * one bit per position, and each column of the dynamic programming matrix is
+ * encoded by the vertical differences between adjacent cells, so that a column
+ * is computed from the previous one with a few word operations per block.
+ */
+class Distance {
+
+	/**
+	 * Tells whether element {@code i} of text1 matches element {@code j} of
+	 * text2.
+	 */
+	interface Matcher {
+
+		boolean matches( int i, int j );
+	}
+
+	/**
+	 * For each symbol, the positions where it occurs in the pattern, as a
+	 * bit-vector per block. Negative symbols match nothing. Only the non-zero
+	 * blocks are stored: those of symbol {@code s} are at the indexes from
+	 * {@code offsets[s]} included to {@code offsets[s + 1]} excluded, in
+	 * increasing order of block.
+	 */
+	private static final class Peq {
+
+		private final int[] offsets;
+
+		private final int[] blocks;
+
+		private final long[] words;
+
+		/**
+		 * The length of the pattern.
+		 */
+		private final int length;
+
+		private Peq(int[] pattern, int symbols) {
+			length = pattern.length;
+			offsets = new int[symbols + 1];
+			// The last block where each symbol was seen, plus one.
+			int[] seen = new int[symbols];
+			for ( int i = 0; i < pattern.length; i++ ) {
+				int symbol = pattern[i];
+				int block = i >>> 6;
+				if ( symbol >= 0 && seen[symbol] != block + 1 ) {
+					seen[symbol] = block + 1;
+					offsets[symbol + 1]++;
+				}
+			}
+			for ( int s = 0; s < symbols; s++ ) {
+				offsets[s + 1] += offsets[s];
+			}
+			blocks = new int[offsets[symbols]];
+			words = new long[offsets[symbols]];
+			int[] fill = new int[symbols];
+			for ( int i = 0; i < pattern.length; i++ ) {
+				int symbol = pattern[i];
+				if ( symbol < 0 ) {
+					continue;
+				}
+				int block = i >>> 6;
+				int entry = offsets[symbol] + fill[symbol];
+				if ( fill[symbol] == 0 || blocks[entry - 1] != block ) {
+					blocks[entry] = block;
+					fill[symbol]++;
+				}
+				else {
+					entry--;
+				}
+				words[entry] |= 1L << ( i & 63 );
+			}
+		}
+	}
+
+	/**
+	 * Returns the Levenshtein distance between the argument texts, whose
+	 * elements are symbols lower than {@code symbols}. Negative symbols match
+	 * nothing.
+	 *
+	 * This is the block-based algorithm by Myers and Hyyro. It takes time
+	 * proportional to the length of the longer text multiplied by the length of
+	 * the shorter text divided by 64.
+	 */
+	static int levenshtein( int[] text1, int[] text2, int symbols ) {
+		if ( text1.length > text2.length ) {
+			int[] swap = text1;
+			text1 = text2;
+			text2 = swap;
+		}
+		return levenshtein( new Peq( text1, symbols ), text2 );
+	}
+
+	/**
+	 * Returns the Levenshtein distance between the argument texts, like
+	 * {@link #levenshtein(int[], int[], int)}, when it is not larger than
+	 * {@code max}, or -1.
+	 */
+	static int levenshtein( int[] text1, int[] text2, int symbols, int max ) {
+		int blocks = ( Math.min( text1.length, text2.length ) + 63 ) >>> 6;
+		if ( 2 * (long) max + 1 > 16 * (long) blocks ) {
+			/*
+			 * The band is so wide that the bit-parallel algorithm, which computes
+			 * 64 cells of a row at a time, is faster.
+			 */
+			int distance = levenshtein( text1, text2, symbols );
+			return distance <= max ? distance : -1;
+		}
+		return levenshtein( text1.length, text2.length,
+				( i, j ) -> text1[i] == text2[j] && text1[i] >= 0, max );
+	}
+
+	/**
+	 * Returns a function that computes the Levenshtein distance between the
+	 * argument pattern and a text, like {@link #levenshtein(int[], int[], int)}.
+	 * The pattern is preprocessed once, and the function may be applied
+	 * concurrently. Symbols of the text that are not smaller than
+	 * {@code symbols} match nothing.
+	 */
+	static ToIntFunction<int[]> levenshtein( int[] pattern, int symbols ) {
+		Peq peq = new Peq( pattern, symbols );
+		return text -> levenshtein( peq, text );
+	}
+
+	private static int levenshtein( Peq peq, int[] text ) {
+		int n = peq.length;
+		if ( n == 0 ) {
+			return text.length;
+		}
+		int[] offsets = peq.offsets;
+		int[] blocks = peq.blocks;
+		long[] words = peq.words;
+		int symbols = offsets.length - 1;
+
+		int count = ( n + 63 ) >>> 6;
+		long last = 1L << ( ( n - 1 ) & 63 );
+		// The positive vertical differences at [0, count), the negative ones at
+		// [count, 2 * count).
+		long[] v = DiffContext.current( ).words( 2 * count );
+		for ( int b = 0; b < count; b++ ) {
+			v[b] = ~0L;
+			v[count + b] = 0;
+		}
+		int score = n;
+		for ( int symbol : text ) {
+			int entry = 0;
+			int end = 0;
+			if ( symbol >= 0 && symbol < symbols ) {
+				entry = offsets[symbol];
+				end = offsets[symbol + 1];
+			}
+			// The distance grows by one along the first row.
+			long hp_carry = 1;
+			long hn_carry = 0;
+			for ( int b = 0; b < count; b++ ) {
+				long eq = 0;
+				if ( entry < end && blocks[entry] == b ) {
+					eq = words[entry++];
+				}
+				long pv = v[b];
+				long nv = v[count + b];
+				long x = eq | hn_carry;
+				long d0 = ( ( ( x & pv ) + pv ) ^ pv ) | x | nv;
+				long hp = nv | ~( d0 | pv );
+				long hn = d0 & pv;
+				long hp_in = hp_carry;
+				long hn_in = hn_carry;
+				if ( b < count - 1 ) {
+					hp_carry = hp >>> 63;
+					hn_carry = hn >>> 63;
+				}
+				else {
+					hp_carry = ( hp & last ) != 0 ? 1 : 0;
+					hn_carry = ( hn & last ) != 0 ? 1 : 0;
+				}
+				hp = ( hp << 1 ) | hp_in;
+				hn = ( hn << 1 ) | hn_in;
+				v[b] = hn | ~( d0 | hp );
+				v[count + b] = hp & d0;
+			}
+			score += hp_carry - hn_carry;
+		}
+		return score;
+	}
+
+	/**
+	 * Returns the Levenshtein distance between a text1 of length {@code n} and a
+	 * text2 of length {@code m} when it is not larger than {@code max}, or -1.
+	 *
+	 * This is Ukkonen's algorithm: only the cells of the dynamic programming
+	 * matrix within {@code max} diagonals of the main one can hold a distance
+	 * not larger than {@code max}, and the computation stops as soon as every
+	 * cell of a row exceeds {@code max}. It takes time proportional to
+	 * {@code max} multiplied by the length of the longer text, and it allocates
+	 * nothing beyond the scratch memory of the calling thread.
+	 */
+	static int levenshtein( int n, int m, Matcher matcher, int max ) {
+		if ( n > m ) {
+			return levenshtein( m, n, ( i, j ) -> matcher.matches( j, i ), max );
+		}
+		if ( m - n > max ) {
+			return -1;
+		}
+		max = Math.min( max, m );
+		// Any distance larger than max.
+		final int infinity = max + 1;
+		int[] p = DiffContext.current( ).row( n + 1 );
+		for ( int i = 0; i <= n; i++ ) {
+			p[i] = i <= max ? i : infinity;
+		}
+		for ( int j = 1; j <= m; j++ ) {
+			int low = Math.max( 1, j - max );
+			int high = Math.min( n, j + max );
+			int upper_left = p[low - 1];
+			p[low - 1] = low == 1 && j <= max ? j : infinity;
+			int row_min = p[low - 1];
+			for ( int i = low; i <= high; i++ ) {
+				int upper = p[i];
+				int cost = Math.min( p[i - 1], upper ) + 1;
+				cost = Math.min( cost,
+						upper_left + ( matcher.matches( i - 1, j - 1 ) ? 0 : 1 ) );
+				p[i] = Math.min( cost, infinity );
+				row_min = Math.min( row_min, p[i] );
+				upper_left = upper;
+			}
+			if ( row_min > max ) {
+				return -1;
+			}
+		}
+		return p[n] <= max ? p[n] : -1;
+	}
+
+	/**
+	 * Returns the Levenshtein distance between a text1 of length {@code n} and a
+	 * text2 of length {@code m}, computed with {@link #row(int, int, Matcher,
+	 * int[])} on a row as long as the shorter text.
+	 */
+	static int levenshtein( int n, int m, Matcher matcher ) {
+		if ( n > m ) {
+			return levenshtein( m, n, ( i, j ) -> matcher.matches( j, i ) );
+		}
+		int[] p = DiffContext.current( ).row( n + 1 );
+		row( n, m, matcher, p );
+		return p[n];
+	}
+
+	/**
+	 * Stores in the first {@code n + 1} cells of {@code p} the last row of the
+	 * dynamic programming matrix of the Levenshtein distance between a text1 of
+	 * length {@code n} and a text2 of length {@code m}: cell {@code i} holds the
+	 * distance between the first {@code i} elements of text1 and the whole of
+	 * text2.
+	 *
+	 * The matrix is computed one row at a time, one row per element of text2,
+	 * overwriting the previous row, so it takes time proportional to {@code n}
+	 * multiplied by {@code m} and no memory beyond {@code p}.
+	 */
+	static void row( int n, int m, Matcher matcher, int[] p ) {
+		for ( int i = 0; i <= n; i++ ) {
+			p[i] = i;
+		}
+		for ( int j = 1; j <= m; j++ ) {
+			int upper_left = p[0];
+			p[0] = j;
+			for ( int i = 1; i <= n; i++ ) {
+				int upper = p[i];
+				int cost = Math.min( p[i - 1], upper ) + 1;
+				p[i] = Math.min( cost,
+						upper_left + ( matcher.matches( i - 1, j - 1 ) ? 0 : 1 ) );
+				upper_left = upper;
+			}
+		}
+	}
+
+	/**
+	 * Returns the LCS distance, that is the number of deletions and insertions
+	 * that turn a text1 of length {@code n} into a text2 of length {@code m},
+	 * when it is not larger than {@code max}, or -1.
+	 *
+	 * This is the forward pass of Myers' algorithm, the one
+	 * {@link Diff#adiff_bisect} runs from both ends: for each number of edits
+	 * d, it finds the furthest reaching path on each diagonal, until a path
+	 * reaches the end of both texts. It takes time proportional to the sum of
+	 * the lengths multiplied by the distance, and it allocates nothing beyond
+	 * the scratch memory of the calling thread.
+	 */
+	static int lcs( int n, int m, Matcher matcher, int max ) {
+		if ( Math.abs( n - m ) > max ) {
+			return -1;
+		}
+		max = Math.min( max, n + m );
+		int v_offset = max + 1;
+		int[] v = DiffContext.current( ).forward( 2 * max + 3 );
+		v[v_offset + 1] = 0;
+		// Offsets for start and end of k loop.
+		// Prevents mapping of space beyond the grid.
+		int kstart = 0;
+		int kend = 0;
+		for ( int d = 0; d <= max; d++ ) {
+			for ( int k = -d + kstart; k <= d - kend; k += 2 ) {
+				int k_offset = v_offset + k;
+				int x;
+				if ( k == -d || ( k != d && v[k_offset - 1] < v[k_offset + 1] ) ) {
+					x = v[k_offset + 1];
+				}
+				else {
+					x = v[k_offset - 1] + 1;
+				}
+				int y = x - k;
+				while ( x < n && y < m && matcher.matches( x, y ) ) {
+					x++;
+					y++;
+				}
+				v[k_offset] = x;
+				if ( x > n ) {
+					// Ran off the right of the graph.
+					kend += 2;
+				}
+				else
+					if ( y > m ) {
+						// Ran off the bottom of the graph.
+						kstart += 2;
+					}
+					else
+						if ( x == n && y == m ) {
+							return d;
+						}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the distances from a query text to each of some target texts,
+	 * where {@code sizes} holds the lengths of the targets, and
+	 * {@code distance} computes the distance to the target with the argument
+	 * index. The latter is invoked concurrently when the options are parallel:
+	 * ranges of targets are split in two halves, like alignments, as long as the
+	 * sum of the lengths of the texts compared in a range is at least the
+	 * threshold of the options.
+	 */
+	static int[] all( int query, int[] sizes, IntUnaryOperator distance,
+			DiffOptions options ) {
+		long[] cumulative = new long[sizes.length + 1];
+		for ( int t = 0; t < sizes.length; t++ ) {
+			cumulative[t + 1] = cumulative[t] + query + sizes[t];
+		}
+		int[] result = new int[sizes.length];
+		options.run( ( ) -> {
+			all( 0, sizes.length, cumulative, distance, options, result );
+			return result;
+		} );
+		return result;
+	}
+
+	private static void all( int from, int to, long[] cumulative,
+			IntUnaryOperator distance, DiffOptions options, int[] result ) {
+		long size = cumulative[to] - cumulative[from];
+		if ( to - from > 1
+				&& options.fork( (int) Math.min( size, Integer.MAX_VALUE ) ) ) {
+			// Compute both halves concurrently.
+			int middle = ( from + to ) >>> 1;
+			ForkJoinTask<?> task = ForkJoinTask.adapt( ( ) -> all( middle, to,
+					cumulative, distance, options, result ) ).fork( );
+			all( from, middle, cumulative, distance, options, result );
+			task.join( );
+			return;
+		}
+		for ( int t = from; t < to; t++ ) {
+			result[t] = distance.applyAsInt( t );
+		}
+	}
+}
@@ -0,0 +1,461 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ToIntFunction;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Cursor;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>DistanceMatrix</h1>
+ *
+ * <p>
+ * A {@code DistanceMatrix} holds the distances between each pair of tuples in
+ * a list.
+ * </p>
+ *
+ * <p>
+ * Distances are symmetric, so only the distances between the tuple at
+ * position {@code i} and the tuple at position {@code j}, with {@code i < j},
+ * are stored, in a single array of integers.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @since 1.0
+ */
+public final class DistanceMatrix {
+
+	/**
+	 * The number of tuples on each side of a tile. The distances in a tile are
+	 * computed together, so that the tuples of the tile stay in the cache.
+	 */
+	private static final int tile = 64;
+
+	/**
+	 * <p>
+	 * {@code levenshtein} returns the matrix of the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance" >Levenshtein
+	 * distances</a> between each pair of tuples in the argument cursor.
+	 * </p>
+	 *
+	 * <p>
+	 * This method invokes
+	 * {@link DistanceMatrix#levenshtein(Cursor,Equivalencer,int,DiffOptions)
+	 * levenshtein(Cursor, Equivalencer, int, DiffOptions)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}, no
+	 * bound on distances and the default options.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param tuples
+	 *          A cursor of tuples.
+	 * @return The matrix of the distances between the tuples in the cursor.
+	 * @since 1.0
+	 */
+	public static <K> DistanceMatrix levenshtein(
+			Cursor<? extends Tuple<K>> tuples ) {
+		return levenshtein( tuples, new BasicEquivalencer<K, K>( ),
+				Integer.MAX_VALUE, DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code levenshtein} returns the matrix of the
+	 * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance" >Levenshtein
+	 * distances</a> between each pair of tuples in the argument cursor, when
+	 * they are not larger than the argument {@code max_distance}. Larger
+	 * distances are recorded as -1.
+	 * </p>
+	 *
+	 * <p>
+	 * This method uses the argument {@code equivalencer} to decide whether two
+	 * elements are equal, like
+	 * {@link DiffingTuple#distance_levenshtein(Tuple, Equivalencer, int)}.
+	 * The distances between tuples whose sizes differ by more than
+	 * {@code max_distance} are not computed at all.
+	 * </p>
+	 *
+	 * <p>
+	 * When the argument options are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, square tiles of the
+	 * matrix are computed concurrently in the pool of the options, and the
+	 * equivalencer may be invoked concurrently by several threads. The cursor
+	 * is consumed by the invoking thread before any distance is computed. Other
+	 * options are ignored.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param tuples
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @param options
+	 *          Options that tell how to compute the distances.
+	 * @return The matrix of the distances between the tuples in the cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code tuples}, {@code equivalencer} or {@code options} is
+	 *           {@code null}, when {@code max_distance} is negative, or when
+	 *           there are too many tuples for the matrix to fit in an array.
+	 * @since 1.0
+	 */
+	public static <K> DistanceMatrix levenshtein(
+			Cursor<? extends Tuple<K>> tuples, Equivalencer<K, K> equivalencer,
+			int max_distance, DiffOptions options ) {
+		return compute( tuples, equivalencer, true, max_distance, options );
+	}
+
+	/**
+	 * <p>
+	 * {@code lcs} returns the matrix of the
+	 * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+	 * >Longest Common Subsequence distances</a> between each pair of tuples in
+	 * the argument cursor.
+	 * </p>
+	 *
+	 * <p>
+	 * This method invokes
+	 * {@link DistanceMatrix#lcs(Cursor,Equivalencer,int,DiffOptions)
+	 * lcs(Cursor, Equivalencer, int, DiffOptions)} using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}, no
+	 * bound on distances and the default options.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param tuples
+	 *          A cursor of tuples.
+	 * @return The matrix of the distances between the tuples in the cursor.
+	 * @since 1.0
+	 */
+	public static <K> DistanceMatrix lcs( Cursor<? extends Tuple<K>> tuples ) {
+		return lcs( tuples, new BasicEquivalencer<K, K>( ), Integer.MAX_VALUE,
+				DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code lcs} returns the matrix of the
+	 * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+	 * >Longest Common Subsequence distances</a> between each pair of tuples in
+	 * the argument cursor, when they are not larger than the argument
+	 * {@code max_distance}. Larger distances are recorded as -1.
+	 * </p>
+	 *
+	 * <p>
+	 * This method works like
+	 * {@link DistanceMatrix#levenshtein(Cursor,Equivalencer,int,DiffOptions)
+	 * levenshtein(Cursor, Equivalencer, int, DiffOptions)}, computing each
+	 * distance like {@link DiffingTuple#distance_lcs(Tuple, Equivalencer, int)}.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param tuples
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @param options
+	 *          Options that tell how to compute the distances.
+	 * @return The matrix of the distances between the tuples in the cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code tuples}, {@code equivalencer} or {@code options} is
+	 *           {@code null}, when {@code max_distance} is negative, or when
+	 *           there are too many tuples for the matrix to fit in an array.
+	 * @since 1.0
+	 */
+	public static <K> DistanceMatrix lcs( Cursor<? extends Tuple<K>> tuples,
+			Equivalencer<K, K> equivalencer, int max_distance,
+			DiffOptions options ) {
+		return compute( tuples, equivalencer, false, max_distance, options );
+	}
+
+	private static <K> DistanceMatrix compute( Cursor<? extends Tuple<K>> tuples,
+			Equivalencer<K, K> equivalencer, boolean allow_substitution,
+			int max_distance, DiffOptions options ) {
+		if ( tuples == null || equivalencer == null || options == null
+				|| max_distance < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		ArrayList<Tuple<K>> list = new ArrayList<>( );
+		for ( Tuple<K> tuple : KnittingCursor.wrap( tuples ).once( ) ) {
+			list.add( tuple );
+		}
+		int size = list.size( );
+		long cells = (long) size * ( size - 1 ) / 2;
+		if ( cells > Integer.MAX_VALUE - 8 ) {
+			throw new IllegalArgumentException( );
+		}
+		DistanceMatrix matrix = new DistanceMatrix( size, new int[(int) cells] );
+		int[] sizes = new int[size];
+		for ( int i = 0; i < size; i++ ) {
+			sizes[i] = list.get( i ).size( );
+		}
+		Interner<K, K> interner = Interner.of( equivalencer );
+		int[][] symbols = null;
+		if ( interner != null ) {
+			symbols = new int[size][];
+			for ( int i = 0; i < size; i++ ) {
+				symbols[i] = interner.back( list.get( i ) );
+			}
+		}
+		Tiles<K> tiles = new Tiles<K>( matrix, list, sizes, symbols,
+				interner == null ? 0 : interner.size( ), equivalencer,
+				allow_substitution, max_distance, options );
+		options.run( ( ) -> {
+			tiles.compute( 0, tiles.count );
+			return matrix;
+		} );
+		return matrix;
+	}
+
+	/**
+	 * The tiles of the upper triangle of a matrix, in row-major order, and the
+	 * means to compute the distances in them.
+	 */
+	private static final class Tiles<K> {
+
+		private final DistanceMatrix matrix;
+
+		private final ArrayList<Tuple<K>> tuples;
+
+		private final int[] sizes;
+
+		/**
+		 * The symbols of the elements of the tuples, or {@code null} when
+		 * elements are compared by the equivalencer.
+		 */
+		private final int[][] symbols;
+
+		private final int symbols_count;
+
+		private final Equivalencer<K, K> equivalencer;
+
+		private final boolean allow_substitution;
+
+		private final int max_distance;
+
+		private final DiffOptions options;
+
+		/**
+		 * The number of tiles on each side of the matrix.
+		 */
+		private final int side;
+
+		private final int count;
+
+		/**
+		 * For each tile, the sum of the sizes of the tuples compared in the tiles
+		 * before it.
+		 */
+		private final long[] cumulative;
+
+		private Tiles(DistanceMatrix matrix, ArrayList<Tuple<K>> tuples,
+				int[] sizes, int[][] symbols, int symbols_count,
+				Equivalencer<K, K> equivalencer, boolean allow_substitution,
+				int max_distance, DiffOptions options) {
+			this.matrix = matrix;
+			this.tuples = tuples;
+			this.sizes = sizes;
+			this.symbols = symbols;
+			this.symbols_count = symbols_count;
+			this.equivalencer = equivalencer;
+			this.allow_substitution = allow_substitution;
+			this.max_distance = max_distance;
+			this.options = options;
+			this.side = ( tuples.size( ) + tile - 1 ) / tile;
+			this.count = side * ( side + 1 ) / 2;
+			long[] totals = new long[side];
+			for ( int i = 0; i < sizes.length; i++ ) {
+				totals[i / tile] += sizes[i];
+			}
+			this.cumulative = new long[count + 1];
+			int t = 0;
+			for ( int row = 0; row < side; row++ ) {
+				for ( int column = row; column < side; column++, t++ ) {
+					cumulative[t + 1] = cumulative[t] + totals[row] + totals[column];
+				}
+			}
+		}
+
+		/**
+		 * Computes the distances in the tiles from {@code from} included to
+		 * {@code to} excluded, splitting them in two halves recursively, like
+		 * alignments.
+		 */
+		private void compute( int from, int to ) {
+			long size = cumulative[to] - cumulative[from];
+			if ( to - from > 1
+					&& options.fork( (int) Math.min( size, Integer.MAX_VALUE ) ) ) {
+				// Compute both halves concurrently.
+				int middle = ( from + to ) >>> 1;
+				ForkJoinTask<?> task =
+						ForkJoinTask.adapt( ( ) -> compute( middle, to ) ).fork( );
+				compute( from, middle );
+				task.join( );
+				return;
+			}
+			// Find the first tile, then walk the tiles in row-major order.
+			int row = 0;
+			int first = 0;
+			while ( first + side - row <= from ) {
+				first += side - row;
+				row++;
+			}
+			int column = row + from - first;
+			for ( int t = from; t < to; t++ ) {
+				computeTile( row, column );
+				if ( ++column == side ) {
+					row++;
+					column = row;
+				}
+			}
+		}
+
+		private void computeTile( int row, int column ) {
+			int n = tuples.size( );
+			int i_end = Math.min( n, ( row + 1 ) * tile );
+			int j_end = Math.min( n, ( column + 1 ) * tile );
+			for ( int i = row * tile; i < i_end; i++ ) {
+				int j_start = Math.max( i + 1, column * tile );
+				if ( j_start >= j_end ) {
+					continue;
+				}
+				/*
+				 * Without a bound, the bit-parallel preprocessing of the tuple of
+				 * this row is shared by the whole row of the tile.
+				 */
+				ToIntFunction<int[]> unbounded = null;
+				if ( symbols != null && allow_substitution
+						&& max_distance == Integer.MAX_VALUE ) {
+					unbounded = Distance.levenshtein( symbols[i], symbols_count );
+				}
+				int index = matrix.index( i, j_start );
+				for ( int j = j_start; j < j_end; j++, index++ ) {
+					if ( Math.abs( sizes[i] - sizes[j] ) > max_distance ) {
+						// The distance is at least the difference of the sizes.
+						matrix.distances[index] = -1;
+					}
+					else
+						if ( unbounded != null ) {
+							matrix.distances[index] = unbounded.applyAsInt( symbols[j] );
+						}
+						else {
+							matrix.distances[index] = distance( i, j );
+						}
+				}
+			}
+		}
+
+		private int distance( int i, int j ) {
+			Distance.Matcher matcher;
+			if ( symbols != null ) {
+				if ( allow_substitution ) {
+					return Distance.levenshtein( symbols[i], symbols[j],
+							symbols_count, max_distance );
+				}
+				int[] front = symbols[i];
+				int[] back = symbols[j];
+				matcher = ( x, y ) -> front[x] == back[y];
+			}
+			else {
+				Tuple<K> front = tuples.get( i );
+				Tuple<K> back = tuples.get( j );
+				matcher =
+						( x, y ) -> equivalencer.equivalent( front.get( x ), back.get( y ) );
+			}
+			return allow_substitution
+					? Distance.levenshtein( sizes[i], sizes[j], matcher, max_distance )
+					: Distance.lcs( sizes[i], sizes[j], matcher, max_distance );
+		}
+	}
+
+	private final int size;
+
+	private final int[] distances;
+
+	private DistanceMatrix(int size, int[] distances) {
+		this.size = size;
+		this.distances = distances;
+	}
+
+	/**
+	 * Returns the index of the distance between the tuples at positions
+	 * {@code i} and {@code j}, with {@code i < j}.
+	 */
+	private int index( int i, int j ) {
+		return (int) ( (long) i * ( 2 * size - i - 1 ) / 2 + j - i - 1 );
+	}
+
+	/**
+	 * <p>
+	 * {@code size} returns the number of tuples compared in this matrix.
+	 * </p>
+	 *
+	 * @return The number of tuples compared in this matrix.
+	 * @since 1.0
+	 */
+	public int size( ) {
+		return size;
+	}
+
+	/**
+	 * <p>
+	 * {@code get} returns the distance between the tuple at position {@code i}
+	 * and the tuple at position {@code j}, or -1 when it is larger than the
+	 * bound given when this matrix was computed.
+	 * </p>
+	 *
+	 * @param i
+	 *          The position of a tuple. It must be non-negative, and smaller
+	 *          than the size of this matrix.
+	 * @param j
+	 *          The position of a tuple. It must be non-negative, and smaller
+	 *          than the size of this matrix.
+	 * @return The distance between the tuples at positions {@code i} and
+	 *         {@code j}.
+	 * @throws IllegalArgumentException
+	 *           when {@code i} or {@code j} is negative, or when it is larger
+	 *           than or equal to the size of this matrix.
+	 * @since 1.0
+	 */
+	public int get( int i, int j ) {
+		if ( i < 0 || j < 0 || i >= size || j >= size ) {
+			throw new IllegalArgumentException( );
+		}
+		if ( i == j ) {
+			return 0;
+		}
+		return i < j ? distances[index( i, j )] : distances[index( j, i )];
+	}
+}
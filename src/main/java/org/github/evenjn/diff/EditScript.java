@@ -0,0 +1,108 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.Arrays;
+
+/**
+ * A compact sequence of diff operations.
+ *
+ * Each operation is a kind and a length. Operations do not carry the elements
+ * they refer to: an operation consumes {@code length} elements of the front
+ * sequence (DELETE), of the back sequence (INSERT), or of both (EQUAL and
+ * REPLACE), starting where the previous operation stopped. REPLACE pairs
+ * elements that are not equivalent, and only Levenshtein alignments use it.
+ */
+class EditScript {
+
+	static final int EQUAL = 0;
+
+	static final int DELETE = 1;
+
+	static final int INSERT = 2;
+
+	static final int REPLACE = 3;
+
+	private int[] kinds;
+
+	private int[] lengths;
+
+	private int size;
+
+	EditScript() {
+		this( 16 );
+	}
+
+	EditScript(int capacity) {
+		kinds = new int[Math.max( capacity, 4 )];
+		lengths = new int[kinds.length];
+	}
+
+	int size( ) {
+		return size;
+	}
+
+	int kind( int index ) {
+		return kinds[index];
+	}
+
+	int length( int index ) {
+		return lengths[index];
+	}
+
+	void add( int kind, int length ) {
+		if ( size == kinds.length ) {
+			kinds = Arrays.copyOf( kinds, size * 2 );
+			lengths = Arrays.copyOf( lengths, size * 2 );
+		}
+		kinds[size] = kind;
+		lengths[size] = length;
+		size++;
+	}
+
+	void set( int index, int kind, int length ) {
+		kinds[index] = kind;
+		lengths[index] = length;
+	}
+
+	void truncate( int size ) {
+		this.size = size;
+	}
+
+	void addAll( EditScript other ) {
+		for ( int i = 0; i < other.size; i++ ) {
+			add( other.kinds[i], other.lengths[i] );
+		}
+	}
+
+	/**
+	 * Returns the number of front elements consumed by the operation at
+	 * {@code index}.
+	 */
+	int frontLength( int index ) {
+		return kinds[index] == INSERT ? 0 : lengths[index];
+	}
+
+	/**
+	 * Returns the number of back elements consumed by the operation at
+	 * {@code index}.
+	 */
+	int backLength( int index ) {
+		return kinds[index] == DELETE ? 0 : lengths[index];
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+/**
+ * Hirschberg's algorithm, computing a Levenshtein alignment in linear space.
+ *
+ * Text2 is split in halves. One row of the dynamic programming matrix is
+ * computed from the start of the texts to the middle of text2, and another one
+ * from the end of the texts back to the middle of text2. An optimal alignment
+ * crosses the middle of text2 where the sum of the two rows is minimal, and the
+ * two parts on either side of that point are aligned recursively. The rows are
+ * computed by {@link Distance#row(int, int, Distance.Matcher, int[])}, so the
+ * algorithm takes about twice the time of the distance alone and memory
+ * proportional to the length of text1.
+ */
+class Hirschberg {
+
+	private final Distance.Matcher matcher;
+
+	/**
+	 * The row computed from the start of the texts.
+	 */
+	private final int[] forward;
+
+	/**
+	 * The row computed from the end of the texts.
+	 */
+	private final int[] reverse;
+
+	private final EditScript diffs = new EditScript( );
+
+	private Hirschberg(Distance.Matcher matcher, int length1) {
+		this.matcher = matcher;
+		this.forward = new int[length1 + 1];
+		this.reverse = new int[length1 + 1];
+	}
+
+	/**
+	 * Returns a Levenshtein alignment of a text1 of length {@code n} with a
+	 * text2 of length {@code m}. Pairs of elements that match are EQUAL, pairs
+	 * that do not match are REPLACE.
+	 */
+	static EditScript hdiff_main( int n, int m, Distance.Matcher matcher ) {
+		// A common prefix and suffix belong to an optimal alignment.
+		int prefix = 0;
+		while ( prefix < n && prefix < m && matcher.matches( prefix, prefix ) ) {
+			prefix++;
+		}
+		int suffix = 0;
+		while ( suffix < n - prefix && suffix < m - prefix
+				&& matcher.matches( n - 1 - suffix, m - 1 - suffix ) ) {
+			suffix++;
+		}
+		Hirschberg hirschberg = new Hirschberg( matcher, n - prefix - suffix );
+		hirschberg.add( EditScript.EQUAL, prefix );
+		hirschberg.align( prefix, n - suffix, prefix, m - suffix );
+		hirschberg.add( EditScript.EQUAL, suffix );
+		return hirschberg.diffs;
+	}
+
+	/**
+	 * Appends an operation, merging it with the last one when they are of the
+	 * same kind.
+	 */
+	private void add( int kind, int length ) {
+		if ( length == 0 ) {
+			return;
+		}
+		int last = diffs.size( ) - 1;
+		if ( last >= 0 && diffs.kind( last ) == kind ) {
+			diffs.set( last, kind, diffs.length( last ) + length );
+		}
+		else {
+			diffs.add( kind, length );
+		}
+	}
+
+	/**
+	 * Aligns the elements of text1 from {@code start1} included to {@code end1}
+	 * excluded with the elements of text2 from {@code start2} included to
+	 * {@code end2} excluded.
+	 */
+	private void align( int start1, int end1, int start2, int end2 ) {
+		int n = end1 - start1;
+		int m = end2 - start2;
+		if ( n == 0 || m == 0 ) {
+			add( EditScript.DELETE, n );
+			add( EditScript.INSERT, m );
+			return;
+		}
+		if ( n == 1 ) {
+			// Match the element of text1 with the first equal element of text2.
+			int j = start2;
+			while ( j < end2 && !matcher.matches( start1, j ) ) {
+				j++;
+			}
+			if ( j == end2 ) {
+				add( EditScript.REPLACE, 1 );
+				add( EditScript.INSERT, m - 1 );
+			}
+			else {
+				add( EditScript.INSERT, j - start2 );
+				add( EditScript.EQUAL, 1 );
+				add( EditScript.INSERT, end2 - j - 1 );
+			}
+			return;
+		}
+		if ( m == 1 ) {
+			int i = start1;
+			while ( i < end1 && !matcher.matches( i, start2 ) ) {
+				i++;
+			}
+			if ( i == end1 ) {
+				add( EditScript.REPLACE, 1 );
+				add( EditScript.DELETE, n - 1 );
+			}
+			else {
+				add( EditScript.DELETE, i - start1 );
+				add( EditScript.EQUAL, 1 );
+				add( EditScript.DELETE, end1 - i - 1 );
+			}
+			return;
+		}
+		int middle = start2 + m / 2;
+		Distance.row( n, middle - start2,
+				( i, j ) -> matcher.matches( start1 + i, start2 + j ), forward );
+		Distance.row( n, end2 - middle,
+				( i, j ) -> matcher.matches( end1 - 1 - i, end2 - 1 - j ), reverse );
+		int split = 0;
+		int best = Integer.MAX_VALUE;
+		for ( int i = 0; i <= n; i++ ) {
+			int cost = forward[i] + reverse[n - i];
+			if ( cost < best ) {
+				best = cost;
+				split = i;
+			}
+		}
+		align( start1, start1 + split, start2, middle );
+		align( start1 + split, end1, middle, end2 );
+	}
+}
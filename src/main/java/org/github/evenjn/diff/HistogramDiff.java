@@ -0,0 +1,254 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import org.github.evenjn.lang.BasicEquivalencer;
+
+/**
+ * The histogram diff algorithm, on sequences of integer symbols, as
+ * implemented in JGit.
+ *
+ * The occurrences of each symbol in the current range of text1 are indexed.
+ * Among the common runs of symbols, the algorithm picks the one whose rarest
+ * symbol occurs the fewest times in text1, preferring longer runs, and aligns
+ * the ranges before and after that run recursively. Ranges where a symbol
+ * occurs too many times in text1 are aligned by {@link IntDiff}.
+ */
+class HistogramDiff {
+
+	/**
+	 * Per symbol, the number of occurrences in the current range of text1.
+	 */
+	private final int[] count;
+
+	/**
+	 * Per symbol, the position of its first occurrence in the current range of
+	 * text1.
+	 */
+	private final int[] head;
+
+	/**
+	 * Per position in text1, the position of the next occurrence of the same
+	 * symbol in the current range, or -1.
+	 */
+	private final int[] next;
+
+	private final int[] text1;
+
+	private final int[] text2;
+
+	private final DiffOptions options;
+
+	private final long deadline;
+
+	/*
+	 * The best common run found so far, and the number of occurrences in text1
+	 * of its rarest symbol.
+	 */
+	private int lcs_start1;
+
+	private int lcs_end1;
+
+	private int lcs_start2;
+
+	private int lcs_count;
+
+	/*
+	 * Whether the ranges being searched have at least one symbol in common.
+	 */
+	private boolean has_common;
+
+	private HistogramDiff(int[] text1, int[] text2, int symbols,
+			DiffOptions options, long deadline) {
+		this.text1 = text1;
+		this.text2 = text2;
+		this.options = options;
+		this.deadline = deadline;
+		this.count = new int[symbols];
+		this.head = new int[symbols];
+		this.next = new int[text1.length];
+	}
+
+	static EditScript hdiff_main( int[] text1, int[] text2,
+			DiffOptions options, long deadline ) {
+		if ( text1 == null || text2 == null ) {
+			throw new IllegalArgumentException( "Null inputs. (hdiff_main)" );
+		}
+		int symbols = Interner.symbols( text1, text2 );
+		if ( symbols < 0 ) {
+			// Map sparse symbols to dense ones, so they can index arrays.
+			Interner<Integer, Integer> interner =
+					Interner.of( new BasicEquivalencer<Integer, Integer>( ) );
+			text1 = interner.front( DiffIterable.tuple( text1 ) );
+			text2 = interner.back( DiffIterable.tuple( text2 ) );
+			symbols = interner.size( );
+		}
+		HistogramDiff histogram =
+				new HistogramDiff( text1, text2, symbols, options, deadline );
+		EditScript diffs = new EditScript( );
+		histogram.diff( 0, text1.length, 0, text2.length, diffs );
+		Diff.adiff_cleanupMerge( IntDiff.texts( text1, text2 ), 0, 0, diffs, 0 );
+		return diffs;
+	}
+
+	private void diff( int start1, int end1, int start2, int end2,
+			EditScript diffs ) {
+		// The range after the anchor is aligned by this loop, not by recursion.
+		int suffixes = 0;
+		for ( ;; ) {
+			// Trim off common prefix and suffix.
+			int prefix =
+					IntDiff.commonPrefix( text1, start1, end1, text2, start2, end2 );
+			int suffix = IntDiff.commonSuffix( text1, start1 + prefix, end1, text2,
+					start2 + prefix, end2 );
+			if ( prefix != 0 ) {
+				diffs.add( EditScript.EQUAL, prefix );
+			}
+			start1 += prefix;
+			start2 += prefix;
+			end1 -= suffix;
+			end2 -= suffix;
+			suffixes += suffix;
+
+			if ( start1 == end1 || start2 == end2 ) {
+				if ( start1 != end1 ) {
+					diffs.add( EditScript.DELETE, end1 - start1 );
+				}
+				if ( start2 != end2 ) {
+					diffs.add( EditScript.INSERT, end2 - start2 );
+				}
+				break;
+			}
+			if ( !search( start1, end1, start2, end2 ) ) {
+				IntDiff.idiff_main_nc( text1, start1, end1, text2, start2, end2,
+						options, deadline, diffs );
+				break;
+			}
+			if ( !has_common ) {
+				diffs.add( EditScript.DELETE, end1 - start1 );
+				diffs.add( EditScript.INSERT, end2 - start2 );
+				break;
+			}
+			int anchor1 = lcs_start1;
+			int anchor2 = lcs_start2;
+			int length = lcs_end1 - lcs_start1;
+			diff( start1, anchor1, start2, anchor2, diffs );
+			diffs.add( EditScript.EQUAL, length );
+			start1 = anchor1 + length;
+			start2 = anchor2 + length;
+		}
+		if ( suffixes != 0 ) {
+			diffs.add( EditScript.EQUAL, suffixes );
+		}
+	}
+
+	/**
+	 * Searches the longest common run with the rarest symbols. Returns false
+	 * when the argument ranges must be aligned by the fallback algorithm.
+	 */
+	private boolean search( int start1, int end1, int start2, int end2 ) {
+		int max_chain_length = options.max_chain_length;
+		boolean indexed = true;
+		for ( int i = end1 - 1; i >= start1; i-- ) {
+			int symbol = text1[i];
+			if ( count[symbol] == max_chain_length ) {
+				indexed = false;
+				break;
+			}
+			next[i] = count[symbol] == 0 ? -1 : head[symbol];
+			head[symbol] = i;
+			count[symbol]++;
+		}
+		if ( indexed ) {
+			lcs_start1 = 0;
+			lcs_end1 = 0;
+			lcs_start2 = 0;
+			lcs_count = max_chain_length + 1;
+			has_common = false;
+			for ( int i = start2; i < end2; ) {
+				i = search( i, start1, end1, start2, end2 );
+			}
+			indexed = !has_common || lcs_count <= max_chain_length;
+		}
+		for ( int i = start1; i < end1; i++ ) {
+			count[text1[i]] = 0;
+		}
+		return indexed;
+	}
+
+	/**
+	 * Tries the common runs that include position {@code position2} of text2.
+	 * Returns the next position of text2 to try.
+	 */
+	private int search( int position2, int start1, int end1, int start2,
+			int end2 ) {
+		int result = position2 + 1;
+		int symbol = text2[position2];
+		int occurrences = count[symbol];
+		if ( occurrences == 0 ) {
+			return result;
+		}
+		has_common = true;
+		if ( occurrences > lcs_count ) {
+			// There is a rarer run already.
+			return result;
+		}
+		int run_start1 = head[symbol];
+		for ( ;; ) {
+			int occurrence = next[run_start1];
+			int run_start2 = position2;
+			int run_end1 = run_start1 + 1;
+			int run_end2 = run_start2 + 1;
+			int rarest = occurrences;
+			while ( start1 < run_start1 && start2 < run_start2
+					&& text1[run_start1 - 1] == text2[run_start2 - 1] ) {
+				run_start1--;
+				run_start2--;
+				if ( rarest > 1 ) {
+					rarest = Math.min( rarest, count[text1[run_start1]] );
+				}
+			}
+			while ( run_end1 < end1 && run_end2 < end2
+					&& text1[run_end1] == text2[run_end2] ) {
+				if ( rarest > 1 ) {
+					rarest = Math.min( rarest, count[text1[run_end1]] );
+				}
+				run_end1++;
+				run_end2++;
+			}
+			if ( result < run_end2 ) {
+				result = run_end2;
+			}
+			if ( lcs_end1 - lcs_start1 < run_end1 - run_start1
+					|| rarest < lcs_count ) {
+				lcs_start1 = run_start1;
+				lcs_end1 = run_end1;
+				lcs_start2 = run_start2;
+				lcs_count = rarest;
+			}
+			// Skip the occurrences within the run just tried.
+			while ( occurrence >= 0 && occurrence < run_end1 ) {
+				occurrence = next[occurrence];
+			}
+			if ( occurrence < 0 ) {
+				return result;
+			}
+			run_start1 = occurrence;
+		}
+	}
+}
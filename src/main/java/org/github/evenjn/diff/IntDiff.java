@@ -0,0 +1,396 @@
+/*
+ * Diff
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Adaptation of work by Neil Fraser at Google Inc.
+ *
+ * Copyright 2006 Google Inc.
+ * http://code.google.com/p/google-diff-match-patch/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.github.evenjn.diff;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A specialization of {@link Diff} for sequences of primitive integers.
+ *
+ * The algorithm is the same, step by step, so the resulting alignment is the
+ * same that {@link Diff} computes on the boxed sequences. Texts are ranges of
+ * arrays, and results are appended to an {@link EditScript}.
+ */
+class IntDiff {
+
+  static EditScript idiff_main(int[] text1, int[] text2,
+      DiffOptions options, long deadline) {
+    // Check for null inputs.
+    if (text1 == null || text2 == null) {
+      throw new IllegalArgumentException("Null inputs. (idiff_main)");
+    }
+    EditScript diffs = new EditScript();
+    idiff_main_nc(text1, 0, text1.length, text2, 0, text2.length,
+        options, deadline, diffs);
+    return diffs;
+  }
+
+  static void idiff_main_nc(
+      int[] text1, int start1, int end1,
+      int[] text2, int start2, int end2,
+      DiffOptions options,
+      long deadline,
+      EditScript diffs) {
+    int from = diffs.size();
+    int text1_length = end1 - start1;
+    int text2_length = end2 - start2;
+
+    // Trim off common prefix (speedup).
+    int commonlength_p = commonPrefix(text1, start1, end1, text2, start2, end2);
+
+    // Check for equality (speedup).
+    if (text1_length == text2_length && commonlength_p == text1_length) {
+      if (text1_length != 0) {
+        diffs.add(EditScript.EQUAL, text1_length);
+      }
+      return;
+    }
+
+    // Trim off common suffix (speedup).
+    int commonlength_s = commonSuffix(
+        text1, start1 + commonlength_p, end1,
+        text2, start2 + commonlength_p, end2);
+
+    // Compute the diff on the middle block, restoring the prefix and suffix.
+    if (commonlength_p != 0) {
+      diffs.add(EditScript.EQUAL, commonlength_p);
+    }
+    idiff_compute_nc(
+        text1, start1 + commonlength_p, end1 - commonlength_s,
+        text2, start2 + commonlength_p, end2 - commonlength_s,
+        options, deadline, diffs);
+    if (commonlength_s != 0) {
+      diffs.add(EditScript.EQUAL, commonlength_s);
+    }
+
+    Diff.adiff_cleanupMerge(texts(text1, text2), start1, start2, diffs, from);
+  }
+
+  static void idiff_compute_nc(
+      int[] text1, int start1, int end1,
+      int[] text2, int start2, int end2,
+      DiffOptions options,
+      long deadline,
+      EditScript diffs) {
+    int text1_length = end1 - start1;
+    int text2_length = end2 - start2;
+
+    if (text1_length == 0) {
+      // Just add some text (speedup).
+      diffs.add(EditScript.INSERT, text2_length);
+      return;
+    }
+
+    if (text2_length == 0) {
+      // Just delete some text (speedup).
+      diffs.add(EditScript.DELETE, text1_length);
+      return;
+    }
+
+    if (text1_length > text2_length) {
+      int i = indexOf(text1, start1, end1, text2, start2, end2);
+      if (i != -1) {
+        // Shorter text is inside the longer text (speedup).
+        diffs.add(EditScript.DELETE, i);
+        diffs.add(EditScript.EQUAL, text2_length);
+        diffs.add(EditScript.DELETE, text1_length - i - text2_length);
+        return;
+      }
+
+      if (text2_length == 1) {
+        // Single character string.
+        // After the previous speedup, the character can't be an equality.
+        diffs.add(EditScript.DELETE, text1_length);
+        diffs.add(EditScript.INSERT, text2_length);
+        return;
+      }
+    }
+    else {
+      int i = indexOf(text2, start2, end2, text1, start1, end1);
+      if (i != -1) {
+        // Shorter text is inside the longer text (speedup).
+        diffs.add(EditScript.INSERT, i);
+        diffs.add(EditScript.EQUAL, text1_length);
+        diffs.add(EditScript.INSERT, text2_length - i - text1_length);
+        return;
+      }
+
+      if (text1_length == 1) {
+        // Single character string.
+        // After the previous speedup, the character can't be an equality.
+        diffs.add(EditScript.DELETE, text1_length);
+        diffs.add(EditScript.INSERT, text2_length);
+        return;
+      }
+    }
+
+    if (deadline >= 0) {
+      // Check to see if the problem can be split in two.
+      int[] hm = Diff.adiff_halfMatch(texts(text1, text2),
+          start1, end1, start2, end2);
+      if (hm != null) {
+        // A half-match was found.
+        int common1 = hm[0];
+        int common2 = hm[1];
+        int common_length = hm[2];
+        // Send both pairs off for separate processing.
+        idiff_main_nc(text1, start1, common1, text2, start2, common2,
+            options, deadline, diffs);
+        diffs.add(EditScript.EQUAL, common_length);
+        idiff_main_nc(
+            text1, common1 + common_length, end1,
+            text2, common2 + common_length, end2,
+            options, deadline, diffs);
+        return;
+      }
+    }
+
+    idiff_bisect(text1, start1, end1, text2, start2, end2, options, deadline,
+        diffs);
+  }
+
+  static void idiff_bisect(
+      int[] text1, int start1, int end1,
+      int[] text2, int start2, int end2,
+      DiffOptions options,
+      long deadline,
+      EditScript diffs) {
+    // Cache the text lengths to prevent multiple calls.
+    int text1_length = end1 - start1;
+    int text2_length = end2 - start2;
+    int max_d = (text1_length + text2_length + 1) / 2;
+    int v_offset = max_d;
+    int v_length = 2 * max_d;
+    DiffContext context = DiffContext.current();
+    int[] v1 = context.forward(v_length);
+    int[] v2 = context.reverse(v_length);
+    v1[v_offset + 1] = 0;
+    v2[v_offset + 1] = 0;
+    int delta = text1_length - text2_length;
+    // If the total number of characters is odd, then the front path will
+    // collide with the reverse path.
+    boolean front = (delta % 2 != 0);
+    // Offsets for start and end of k loop.
+    // Prevents mapping of space beyond the grid.
+    int k1start = 0;
+    int k1end = 0;
+    int k2start = 0;
+    int k2end = 0;
+    for (int d = 0; d < max_d; d++) {
+      // Bail out if deadline is reached.
+      if (deadline >= 0 && System.currentTimeMillis() > deadline) {
+        break;
+      }
+
+      // Walk the front path one step.
+      for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+        int k1_offset = v_offset + k1;
+        int x1;
+        if (k1 == -d || (k1 != d && v1[k1_offset - 1] < v1[k1_offset + 1])) {
+          x1 = v1[k1_offset + 1];
+        } else {
+          x1 = v1[k1_offset - 1] + 1;
+        }
+        int y1 = x1 - k1;
+        while (x1 < text1_length && y1 < text2_length
+               && text1[start1 + x1] == text2[start2 + y1]) {
+          x1++;
+          y1++;
+        }
+        v1[k1_offset] = x1;
+        if (x1 > text1_length) {
+          // Ran off the right of the graph.
+          k1end += 2;
+        } else if (y1 > text2_length) {
+          // Ran off the bottom of the graph.
+          k1start += 2;
+        } else if (front) {
+          int k2_offset = v_offset + delta - k1;
+          if (k2_offset >= 0 && k2_offset < v_length && v2[k2_offset] != -1) {
+            // Mirror x2 onto top-left coordinate system.
+            int x2 = text1_length - v2[k2_offset];
+            if (x1 >= x2) {
+              // Overlap detected.
+              idiff_bisectSplit(text1, start1, end1, text2, start2, end2,
+                  x1, y1, options, deadline, diffs);
+              return;
+            }
+          }
+        }
+      }
+
+      // Walk the reverse path one step.
+      for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+        int k2_offset = v_offset + k2;
+        int x2;
+        if (k2 == -d || (k2 != d && v2[k2_offset - 1] < v2[k2_offset + 1])) {
+          x2 = v2[k2_offset + 1];
+        } else {
+          x2 = v2[k2_offset - 1] + 1;
+        }
+        int y2 = x2 - k2;
+        while (x2 < text1_length && y2 < text2_length
+               && text1[end1 - x2 - 1] == text2[end2 - y2 - 1]) {
+          x2++;
+          y2++;
+        }
+        v2[k2_offset] = x2;
+        if (x2 > text1_length) {
+          // Ran off the left of the graph.
+          k2end += 2;
+        } else if (y2 > text2_length) {
+          // Ran off the top of the graph.
+          k2start += 2;
+        } else if (!front) {
+          int k1_offset = v_offset + delta - k2;
+          if (k1_offset >= 0 && k1_offset < v_length && v1[k1_offset] != -1) {
+            int x1 = v1[k1_offset];
+            int y1 = v_offset + x1 - k1_offset;
+            // Mirror x2 onto top-left coordinate system.
+            x2 = text1_length - x2;
+            if (x1 >= x2) {
+              // Overlap detected.
+              idiff_bisectSplit(text1, start1, end1, text2, start2, end2,
+                  x1, y1, options, deadline, diffs);
+              return;
+            }
+          }
+        }
+      }
+    }
+    // Diff took too long and hit the deadline or
+    // number of diffs equals number of characters, no commonality at all.
+    diffs.add(EditScript.DELETE, text1_length);
+    diffs.add(EditScript.INSERT, text2_length);
+  }
+
+  private static void idiff_bisectSplit(
+      int[] text1, int start1, int end1,
+      int[] text2, int start2, int end2,
+      int x,
+      int y,
+      DiffOptions options,
+      long deadline,
+      EditScript diffs) {
+    if (options.fork(end1 - start1 + end2 - start2)) {
+      // Compute both diffs concurrently.
+      ForkJoinTask<EditScript> taskb = ForkJoinTask.adapt(() -> {
+        EditScript diffsb = new EditScript();
+        idiff_main_nc(text1, start1 + x, end1, text2, start2 + y, end2,
+            options, deadline, diffsb);
+        return diffsb;
+      }).fork();
+      idiff_main_nc(text1, start1, start1 + x, text2, start2, start2 + y,
+          options, deadline, diffs);
+      diffs.addAll(taskb.join());
+    }
+    else {
+      // Compute both diffs serially.
+      idiff_main_nc(text1, start1, start1 + x, text2, start2, start2 + y,
+          options, deadline, diffs);
+      idiff_main_nc(text1, start1 + x, end1, text2, start2 + y, end2,
+          options, deadline, diffs);
+    }
+  }
+
+  static Diff.Texts texts(int[] text1, int[] text2) {
+    return new Diff.Texts() {
+
+      @Override
+      public int commonPrefix(int start1, int end1, int start2, int end2) {
+        return IntDiff.commonPrefix(text1, start1, end1, text2, start2, end2);
+      }
+
+      @Override
+      public int commonSuffix(int start1, int end1, int start2, int end2) {
+        return IntDiff.commonSuffix(text1, start1, end1, text2, start2, end2);
+      }
+
+      @Override
+      public boolean equals1(int i, int j) {
+        return text1[i] == text1[j];
+      }
+
+      @Override
+      public boolean equals2(int i, int j) {
+        return text2[i] == text2[j];
+      }
+
+      @Override
+      public int indexOf(int start1, int end1, int start2, int end2) {
+        return IntDiff.indexOf(text2, start2, end2, text1, start1, end1);
+      }
+
+      @Override
+      public Diff.Texts swap() {
+        return texts(text2, text1);
+      }
+    };
+  }
+
+  static int commonPrefix(
+      int[] text1, int start1, int end1,
+      int[] text2, int start2, int end2) {
+    int n = Math.min(end1 - start1, end2 - start2);
+    for (int i = 0; i < n; i++) {
+      if (text1[start1 + i] != text2[start2 + i]) {
+        return i;
+      }
+    }
+    return n;
+  }
+
+  static int commonSuffix(
+      int[] text1, int start1, int end1,
+      int[] text2, int start2, int end2) {
+    int n = Math.min(end1 - start1, end2 - start2);
+    for (int i = 1; i <= n; i++) {
+      if (text1[end1 - i] != text2[end2 - i]) {
+        return i - 1;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Returns the offset of the first occurrence of the second range within the
+   * first range, or -1.
+   */
+  static int indexOf(
+      int[] text1, int start1, int end1,
+      int[] text2, int start2, int end2) {
+    int length = end2 - start2;
+    int last = end1 - length;
+    outer:
+    for (int i = start1; i <= last; i++) {
+      for (int j = 0; j < length; j++) {
+        if (text1[i + j] != text2[start2 + j]) {
+          continue outer;
+        }
+      }
+      return i - start1;
+    }
+    return -1;
+  }
+}
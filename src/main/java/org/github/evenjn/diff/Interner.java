@@ -0,0 +1,133 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.HashMap;
+
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ * Maps elements to dense integer symbols, so that two elements have the same
+ * symbol if and only if they are equivalent.
+ *
+ * This is possible only for equivalencers that compare canonical keys: a
+ * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}, whose
+ * keys are the elements themselves, and a {@link KeyedEquivalencer}.
+ * Symbols are assigned in order of first appearance, starting from zero.
+ */
+class Interner<F, B> {
+
+	/**
+	 * Returns an interner for the argument equivalencer, or {@code null} when
+	 * the equivalencer does not compare canonical keys.
+	 */
+	@SuppressWarnings("unchecked")
+	static <F, B> Interner<F, B> of( Equivalencer<F, B> equivalencer ) {
+		if ( equivalencer instanceof KeyedEquivalencer ) {
+			return new Interner<F, B>( (KeyedEquivalencer<F, B>) equivalencer );
+		}
+		if ( equivalencer != null
+				&& equivalencer.getClass( ) == BasicEquivalencer.class ) {
+			return new Interner<F, B>( null );
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of symbols when the argument arrays are already made
+	 * of dense symbols, between 0 and a bound not larger than their total
+	 * length. Returns -1 otherwise.
+	 */
+	static int symbols( int[] front, int[] back ) {
+		int bound = front.length + back.length;
+		int max = -1;
+		for ( int[] array : new int[][] { front, back } ) {
+			for ( int symbol : array ) {
+				if ( symbol < 0 || symbol >= bound ) {
+					return -1;
+				}
+				max = Math.max( max, symbol );
+			}
+		}
+		return max + 1;
+	}
+
+	private final HashMap<Object, Integer> symbols = new HashMap<>( );
+
+	private final KeyedEquivalencer<F, B> keys;
+
+	private Interner(KeyedEquivalencer<F, B> keys) {
+		this.keys = keys;
+	}
+
+	/**
+	 * Returns the number of distinct symbols assigned so far.
+	 */
+	int size( ) {
+		return symbols.size( );
+	}
+
+	int[] front( Tuple<? extends F> tuple ) {
+		int size = tuple.size( );
+		int[] result = new int[size];
+		for ( int i = 0; i < size; i++ ) {
+			F element = tuple.get( i );
+			result[i] = intern( keys == null ? element : keys.frontKey( element ) );
+		}
+		return result;
+	}
+
+	int[] back( Tuple<? extends B> tuple ) {
+		int size = tuple.size( );
+		int[] result = new int[size];
+		for ( int i = 0; i < size; i++ ) {
+			B element = tuple.get( i );
+			result[i] = intern( keys == null ? element : keys.backKey( element ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the symbols of the elements of the argument tuple, or -1 for the
+	 * elements that were not assigned a symbol yet. Unlike
+	 * {@link #back(Tuple)}, this method assigns no symbols, so it may be
+	 * invoked concurrently.
+	 */
+	int[] known( Tuple<? extends B> tuple ) {
+		int size = tuple.size( );
+		int[] result = new int[size];
+		for ( int i = 0; i < size; i++ ) {
+			B element = tuple.get( i );
+			Integer symbol =
+					symbols.get( keys == null ? element : keys.backKey( element ) );
+			result[i] = symbol == null ? -1 : symbol;
+		}
+		return result;
+	}
+
+	private int intern( Object key ) {
+		Integer symbol = symbols.get( key );
+		if ( symbol == null ) {
+			symbol = symbols.size( );
+			symbols.put( key, symbol );
+		}
+		return symbol;
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.github.evenjn.lang.Equivalencer;
+
+/**
+ *
+ * <h1>KeyedEquivalencer</h1>
+ *
+ * <p>
+ * A {@code KeyedEquivalencer} is an
+ * {@link org.github.evenjn.lang.Equivalencer Equivalencer} that maps each
+ * object to a key, and tells that two objects are equivalent when their keys
+ * are equal (as specified by {@link java.lang.Object#equals(Object) equals}
+ * and {@link java.lang.Object#hashCode() hashCode}). {@code null} keys are
+ * equal to each other.
+ * </p>
+ *
+ * <p>
+ * Comparison methods of {@link org.github.evenjn.diff.DiffingTuple
+ * DiffingTuple} recognize {@code KeyedEquivalencer}s: they compute the key of
+ * each element once, and then compare cheap integer symbols instead of
+ * invoking the equivalencer repeatedly on the same elements.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <F>
+ *          The type of objects on the front.
+ * @param <B>
+ *          The type of objects on the back.
+ * @since 1.0
+ */
+public final class KeyedEquivalencer<F, B> implements
+		Equivalencer<F, B> {
+
+	/**
+	 * <p>
+	 * {@code nu} returns an equivalencer that compares the keys computed by the
+	 * argument functions.
+	 * </p>
+	 *
+	 * @param <F>
+	 *          The type of objects on the front.
+	 * @param <B>
+	 *          The type of objects on the back.
+	 * @param front_key
+	 *          A function that computes the key of objects on the front.
+	 * @param back_key
+	 *          A function that computes the key of objects on the back.
+	 * @return An equivalencer that compares keys.
+	 * @since 1.0
+	 */
+	public static <F, B> KeyedEquivalencer<F, B> nu(
+			Function<? super F, ?> front_key,
+			Function<? super B, ?> back_key ) {
+		if ( front_key == null || back_key == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new KeyedEquivalencer<F, B>( front_key, back_key );
+	}
+
+	/**
+	 * <p>
+	 * {@code nu} returns an equivalencer that compares the keys computed by the
+	 * argument function.
+	 * </p>
+	 *
+	 * @param <T>
+	 *          The type of objects to compare.
+	 * @param key
+	 *          A function that computes the key of objects.
+	 * @return An equivalencer that compares keys.
+	 * @since 1.0
+	 */
+	public static <T> KeyedEquivalencer<T, T> nu(
+			Function<? super T, ?> key ) {
+		return nu( key, key );
+	}
+
+	private final Function<? super F, ?> front_key;
+
+	private final Function<? super B, ?> back_key;
+
+	private KeyedEquivalencer(Function<? super F, ?> front_key,
+			Function<? super B, ?> back_key) {
+		this.front_key = front_key;
+		this.back_key = back_key;
+	}
+
+	@Override
+	public boolean equivalent( F front, B back ) {
+		return Objects.equals( front_key.apply( front ), back_key.apply( back ) );
+	}
+
+	@Override
+	public KeyedEquivalencer<B, F> swap( ) {
+		return new KeyedEquivalencer<B, F>( back_key, front_key );
+	}
+
+	Object frontKey( F front ) {
+		return front_key.apply( front );
+	}
+
+	Object backKey( B back ) {
+		return back_key.apply( back );
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>MergeChunk</h1>
+ *
+ * <p>
+ * A {@code MergeChunk} is a part of a three-way merge of two tuples, ours and
+ * theirs, that derive from a common base tuple. It holds consecutive elements
+ * of each of the three tuples.
+ * </p>
+ *
+ * <p>
+ * A chunk is stable when at most one of ours and theirs changes its base
+ * elements, or when both delete them, or when both replace them with the same
+ * elements. Otherwise, the chunk is a conflict.
+ * Client software must verify that a chunk is not a conflict before invoking
+ * {@link MergeChunk#merged() merged()}.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <I>
+ *          The type of elements in the base tuple.
+ * @param <Y>
+ *          The type of elements in ours and theirs.
+ * @see DiffingTuple#diff3(Tuple, Tuple, org.github.evenjn.lang.Equivalencer,
+ *      DiffOptions)
+ * @since 1.0
+ */
+public interface MergeChunk<I, Y> {
+
+	/**
+	 * @return The elements of the base tuple in this chunk.
+	 * @since 1.0
+	 */
+	Tuple<I> base( );
+
+	/**
+	 * @return The elements of our tuple in this chunk.
+	 * @since 1.0
+	 */
+	Tuple<Y> ours( );
+
+	/**
+	 * @return The elements of their tuple in this chunk.
+	 * @since 1.0
+	 */
+	Tuple<Y> theirs( );
+
+	/**
+	 * @return {@code true} when our tuple changes the base elements in this
+	 *         chunk. {@code false} otherwise.
+	 * @since 1.0
+	 */
+	boolean changedOurs( );
+
+	/**
+	 * @return {@code true} when their tuple changes the base elements in this
+	 *         chunk. {@code false} otherwise.
+	 * @since 1.0
+	 */
+	boolean changedTheirs( );
+
+	/**
+	 * @return {@code true} when both our tuple and their tuple change the base
+	 *         elements in this chunk, and not by deleting them both nor by
+	 *         replacing them with the same elements. {@code false} otherwise.
+	 * @since 1.0
+	 */
+	boolean isConflict( );
+
+	/**
+	 * @return The elements of the merged tuple in this chunk: their elements
+	 *         when only their tuple changes the base elements, our elements
+	 *         otherwise.
+	 * @throws IllegalStateException
+	 *           when this chunk is a conflict.
+	 * @since 1.0
+	 */
+	Tuple<Y> merged( );
+}
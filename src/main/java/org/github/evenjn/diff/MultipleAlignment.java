@@ -0,0 +1,631 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinTask;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Cursor;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>MultipleAlignment</h1>
+ *
+ * <p>
+ * A {@code MultipleAlignment} is an alignment of several tuples, called rows,
+ * in a grid of columns. Each element of a row is placed in a column, the
+ * elements of a row are placed in increasing columns, and each column holds
+ * at least one element. A row has a gap in the columns where it has no
+ * element.
+ * </p>
+ *
+ * <p>
+ * The alignment is computed progressively. A guide tree is built from the
+ * <a href= "https://en.wikipedia.org/wiki/Longest_common_subsequence_problem"
+ * >Longest Common Subsequence distances</a> between the tuples, by
+ * <a href= "https://en.wikipedia.org/wiki/UPGMA" >UPGMA</a> clustering. Then,
+ * following the tree from the leaves to the root, the alignments of two
+ * subtrees are aligned with each other. Two alignments are aligned by
+ * diffing the tuples of their column representatives, as by
+ * {@link DiffingTuple#diff(Tuple, Equivalencer, DiffOptions)}: the
+ * representative of a column is its element from the row that comes first in
+ * the cursor.
+ * Columns paired by the diff are merged, the others are kept with a gap in
+ * the rows of the other alignment.
+ * </p>
+ *
+ * <p>
+ * The columns of each row are stored as an array of integers, one per
+ * element, so an alignment takes memory proportional to the total size of
+ * the tuples.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <K>
+ *          The type of elements in the tuples.
+ * @since 1.0
+ */
+public final class MultipleAlignment<K> {
+
+	/**
+	 * An alignment of some of the rows.
+	 */
+	private static final class Profile {
+
+		private final int[] rows;
+
+		/**
+		 * For each row, the column of each element.
+		 */
+		private final int[][] columns;
+
+		/**
+		 * For each column, the row and the index of its representative element.
+		 */
+		private final int[] representative_row;
+
+		private final int[] representative_index;
+
+		private Profile(int[] rows, int[][] columns, int[] representative_row,
+				int[] representative_index) {
+			this.rows = rows;
+			this.columns = columns;
+			this.representative_row = representative_row;
+			this.representative_index = representative_index;
+		}
+
+		private int width( ) {
+			return representative_row.length;
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code progressive} returns a progressive multiple alignment of the
+	 * tuples in the argument cursor, that tells whether elements are
+	 * equivalent using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param tuples
+	 *          A cursor of tuples.
+	 * @return A multiple alignment of the tuples, in the order of the cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code tuples} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <K> MultipleAlignment<K> progressive(
+			Cursor<? extends Tuple<K>> tuples ) {
+		return progressive( tuples, new BasicEquivalencer<K, K>( ),
+				DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code progressive} returns a progressive multiple alignment of the
+	 * tuples in the argument cursor, that tells whether elements are
+	 * equivalent using the argument {@code equivalencer}, computed as specified
+	 * by the argument {@code options}.
+	 * </p>
+	 *
+	 * <p>
+	 * When the argument {@code equivalencer} is a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}, each
+	 * element is mapped to an integer symbol once, and the alignments are
+	 * computed on the symbols. Otherwise, the equivalencer is invoked on the
+	 * representatives of the columns.
+	 * </p>
+	 *
+	 * <p>
+	 * When the argument options are {@link DiffOptions#parallel(
+	 * java.util.concurrent.ForkJoinPool, int) parallel}, the distances are
+	 * computed as by {@link DistanceMatrix#lcs(Cursor, Equivalencer, int,
+	 * DiffOptions)}, and the two subtrees of a node of the guide tree are
+	 * aligned concurrently when both hold tuples whose sizes sum to at least
+	 * the threshold of the options. The result is identical to the result of a
+	 * serial computation. The equivalencer may be invoked concurrently by
+	 * several threads.
+	 * </p>
+	 *
+	 * <p>
+	 * The tuples may not be modified while the alignment is in use.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param tuples
+	 *          A cursor of tuples.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute the alignments.
+	 * @return A multiple alignment of the tuples, in the order of the cursor.
+	 * @throws IllegalArgumentException
+	 *           when {@code tuples}, {@code equivalencer} or {@code options} is
+	 *           {@code null}.
+	 * @since 1.0
+	 */
+	public static <K> MultipleAlignment<K> progressive(
+			Cursor<? extends Tuple<K>> tuples, Equivalencer<K, K> equivalencer,
+			DiffOptions options ) {
+		if ( tuples == null || equivalencer == null || options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		ArrayList<Tuple<K>> rows = new ArrayList<>( );
+		for ( Tuple<K> tuple : KnittingCursor.wrap( tuples ).once( ) ) {
+			rows.add( tuple );
+		}
+		MultipleAlignment<K> result =
+				new MultipleAlignment<K>( rows, equivalencer, options );
+		result.align( );
+		return result;
+	}
+
+	private final ArrayList<Tuple<K>> rows;
+
+	private final Equivalencer<K, K> equivalencer;
+
+	private final DiffOptions options;
+
+	/**
+	 * The symbols of the elements of each row, or {@code null} when elements
+	 * are compared by the equivalencer.
+	 */
+	private final int[][] symbols;
+
+	/**
+	 * For each row, the column of each element.
+	 */
+	private final int[][] columns;
+
+	private int width;
+
+	/**
+	 * The children of the internal nodes of the guide tree. Nodes from 0 to
+	 * the number of rows excluded are leaves, one per row. The following
+	 * nodes are internal, numbered in order of creation, so children are
+	 * numbered before their parents.
+	 */
+	private int[] left;
+
+	private int[] right;
+
+	/**
+	 * For each node, the sum of the sizes of the rows below it.
+	 */
+	private long[] weight;
+
+	private MultipleAlignment(ArrayList<Tuple<K>> rows,
+			Equivalencer<K, K> equivalencer, DiffOptions options) {
+		this.rows = rows;
+		this.equivalencer = equivalencer;
+		this.options = options;
+		this.columns = new int[rows.size( )][];
+		Interner<K, K> interner = Interner.of( equivalencer );
+		if ( interner == null ) {
+			symbols = null;
+		}
+		else {
+			symbols = new int[rows.size( )][];
+			for ( int r = 0; r < symbols.length; r++ ) {
+				symbols[r] = interner.front( rows.get( r ) );
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code rows} returns the number of rows of this alignment.
+	 * </p>
+	 *
+	 * @return The number of rows of this alignment.
+	 * @since 1.0
+	 */
+	public int rows( ) {
+		return rows.size( );
+	}
+
+	/**
+	 * <p>
+	 * {@code columns} returns the number of columns of this alignment.
+	 * </p>
+	 *
+	 * @return The number of columns of this alignment.
+	 * @since 1.0
+	 */
+	public int columns( ) {
+		return width;
+	}
+
+	/**
+	 * <p>
+	 * {@code tuple} returns the tuple at the argument {@code row}.
+	 * </p>
+	 *
+	 * @param row
+	 *          The index of a row.
+	 * @return The tuple at {@code row}.
+	 * @throws IllegalArgumentException
+	 *           when {@code row} is negative, or when it is larger than or
+	 *           equal to the number of rows.
+	 * @since 1.0
+	 */
+	public Tuple<K> tuple( int row ) {
+		if ( row < 0 || row >= rows.size( ) ) {
+			throw new IllegalArgumentException( );
+		}
+		return rows.get( row );
+	}
+
+	/**
+	 * <p>
+	 * {@code column} returns the column of the element at the argument
+	 * {@code index} of the tuple at the argument {@code row}.
+	 * </p>
+	 *
+	 * @param row
+	 *          The index of a row.
+	 * @param index
+	 *          The index of an element of the tuple at {@code row}.
+	 * @return The column of the element.
+	 * @throws IllegalArgumentException
+	 *           when {@code row} is not the index of a row, or when
+	 *           {@code index} is not the index of an element of its tuple.
+	 * @since 1.0
+	 */
+	public int column( int row, int index ) {
+		if ( row < 0 || row >= rows.size( ) || index < 0
+				|| index >= columns[row].length ) {
+			throw new IllegalArgumentException( );
+		}
+		return columns[row][index];
+	}
+
+	/**
+	 * <p>
+	 * {@code has} returns {@code true} when the tuple at the argument
+	 * {@code row} has an element in the argument {@code column}, and
+	 * {@code false} when it has a gap.
+	 * </p>
+	 *
+	 * @param row
+	 *          The index of a row.
+	 * @param column
+	 *          The index of a column.
+	 * @return {@code true} when the row has an element in the column.
+	 * @throws IllegalArgumentException
+	 *           when {@code row} is not the index of a row, or when
+	 *           {@code column} is not the index of a column.
+	 * @since 1.0
+	 */
+	public boolean has( int row, int column ) {
+		return index( row, column ) >= 0;
+	}
+
+	/**
+	 * <p>
+	 * {@code get} returns the element of the tuple at the argument {@code row}
+	 * in the argument {@code column}.
+	 * </p>
+	 *
+	 * @param row
+	 *          The index of a row.
+	 * @param column
+	 *          The index of a column.
+	 * @return The element of the row in the column.
+	 * @throws IllegalArgumentException
+	 *           when {@code row} is not the index of a row, when
+	 *           {@code column} is not the index of a column, or when the row
+	 *           has a gap in the column.
+	 * @since 1.0
+	 */
+	public K get( int row, int column ) {
+		int index = index( row, column );
+		if ( index < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		return rows.get( row ).get( index );
+	}
+
+	/**
+	 * Returns the index of the element of a row in a column, or a negative
+	 * number when the row has a gap in the column.
+	 */
+	private int index( int row, int column ) {
+		if ( row < 0 || row >= rows.size( ) || column < 0 || column >= width ) {
+			throw new IllegalArgumentException( );
+		}
+		return Arrays.binarySearch( columns[row], column );
+	}
+
+	private void align( ) {
+		int n = rows.size( );
+		if ( n == 0 ) {
+			return;
+		}
+		guide( );
+		int root = 2 * n - 2;
+		Profile profile = options.run( ( ) -> profile( root ) );
+		for ( int r = 0; r < profile.rows.length; r++ ) {
+			columns[profile.rows[r]] = profile.columns[r];
+		}
+		width = profile.width( );
+	}
+
+	/**
+	 * Builds the guide tree by UPGMA, with the nearest neighbor chain
+	 * algorithm: it takes time proportional to the square of the number of
+	 * rows, and memory for the distances between pairs of rows.
+	 */
+	private void guide( ) {
+		int n = rows.size( );
+		left = new int[n - 1];
+		right = new int[n - 1];
+		weight = new long[2 * n - 1];
+		for ( int r = 0; r < n; r++ ) {
+			weight[r] = rows.get( r ).size( );
+		}
+		DistanceMatrix matrix = DistanceMatrix.lcs(
+				KnittingCursor.wrap( rows.iterator( ) ), equivalencer,
+				Integer.MAX_VALUE, options );
+		// The upper triangle, packed by rows; cluster i takes slot i.
+		float[] distances = new float[(int) ( (long) n * ( n - 1 ) / 2 )];
+		for ( int i = 0; i < n; i++ ) {
+			for ( int j = i + 1; j < n; j++ ) {
+				distances[slot( i, j, n )] = matrix.get( i, j );
+			}
+		}
+		// The node and the number of rows of the cluster in each slot.
+		int[] node = new int[n];
+		int[] members = new int[n];
+		boolean[] active = new boolean[n];
+		for ( int i = 0; i < n; i++ ) {
+			node[i] = i;
+			members[i] = 1;
+			active[i] = true;
+		}
+		int[] chain = new int[n];
+		int length = 0;
+		for ( int created = 0; created < n - 1; ) {
+			if ( length == 0 ) {
+				int first = 0;
+				while ( !active[first] ) {
+					first++;
+				}
+				chain[length++] = first;
+			}
+			int a = chain[length - 1];
+			int previous = length > 1 ? chain[length - 2] : -1;
+			// The nearest cluster, preferring the previous one in the chain.
+			int b = previous;
+			float best = previous < 0 ? Float.POSITIVE_INFINITY
+					: distances[slot( a, previous, n )];
+			for ( int c = 0; c < n; c++ ) {
+				if ( active[c] && c != a && distances[slot( a, c, n )] < best ) {
+					best = distances[slot( a, c, n )];
+					b = c;
+				}
+			}
+			if ( b != previous ) {
+				chain[length++] = b;
+				continue;
+			}
+			// a and b are reciprocal nearest neighbors: merge b into slot a.
+			length -= 2;
+			for ( int c = 0; c < n; c++ ) {
+				if ( active[c] && c != a && c != b ) {
+					distances[slot( a, c, n )] =
+							( members[a] * distances[slot( a, c, n )]
+									+ members[b] * distances[slot( b, c, n )] )
+									/ ( members[a] + members[b] );
+				}
+			}
+			int parent = n + created;
+			left[created] = Math.min( node[a], node[b] );
+			right[created] = Math.max( node[a], node[b] );
+			weight[parent] = weight[node[a]] + weight[node[b]];
+			node[a] = parent;
+			members[a] += members[b];
+			active[b] = false;
+			created++;
+		}
+	}
+
+	private static int slot( int i, int j, int n ) {
+		if ( i > j ) {
+			int swap = i;
+			i = j;
+			j = swap;
+		}
+		return (int) ( (long) i * ( 2 * n - i - 1 ) / 2 + j - i - 1 );
+	}
+
+	/**
+	 * Returns the alignment of the rows below the argument node. The subtrees
+	 * of a node are aligned concurrently when both are large enough, and
+	 * serially, from the leaves up, otherwise.
+	 */
+	private Profile profile( int node ) {
+		int n = rows.size( );
+		if ( node < n ) {
+			return leaf( node );
+		}
+		int l = left[node - n];
+		int r = right[node - n];
+		long size = Math.min( weight[l], weight[r] );
+		if ( options.fork( (int) Math.min( size, Integer.MAX_VALUE ) ) ) {
+			ForkJoinTask<Profile> task =
+					ForkJoinTask.adapt( ( ) -> profile( r ) ).fork( );
+			Profile front = profile( l );
+			return merge( front, task.join( ) );
+		}
+		// The internal nodes of the subtree, in order of creation.
+		ArrayList<Integer> internal = new ArrayList<>( );
+		ArrayDeque<Integer> stack = new ArrayDeque<>( );
+		stack.push( node );
+		while ( !stack.isEmpty( ) ) {
+			int current = stack.pop( );
+			if ( current >= n ) {
+				internal.add( current );
+				stack.push( left[current - n] );
+				stack.push( right[current - n] );
+			}
+		}
+		internal.sort( null );
+		Profile[] profiles = new Profile[internal.size( )];
+		Profile result = null;
+		for ( int i = 0; i < profiles.length; i++ ) {
+			int current = internal.get( i ) - n;
+			result = merge( child( left[current], internal, profiles ),
+					child( right[current], internal, profiles ) );
+			profiles[i] = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the alignment of a child in a serial computation, taking it from
+	 * the alignments of the internal nodes computed so far, and releasing it.
+	 */
+	private Profile child( int node, ArrayList<Integer> internal,
+			Profile[] profiles ) {
+		if ( node < rows.size( ) ) {
+			return leaf( node );
+		}
+		int i = Collections.binarySearch( internal, node );
+		Profile result = profiles[i];
+		profiles[i] = null;
+		return result;
+	}
+
+	private Profile leaf( int row ) {
+		int size = rows.get( row ).size( );
+		int[] columns = new int[size];
+		int[] representative_row = new int[size];
+		for ( int i = 0; i < size; i++ ) {
+			columns[i] = i;
+			representative_row[i] = row;
+		}
+		return new Profile( new int[] { row }, new int[][] { columns },
+				representative_row, columns.clone( ) );
+	}
+
+	/**
+	 * Returns the alignment of the rows of the two argument alignments, where
+	 * the columns paired by a diff of their representatives are merged. The
+	 * argument alignments are reused, and may not be used afterwards.
+	 */
+	private Profile merge( Profile front, Profile back ) {
+		EditScript diffs = symbols != null
+				? Diff.adiff_main( representatives( front ),
+						representatives( back ), options, options.deadline( ) )
+				: Diff.adiff_main( tuple( front ), tuple( back ), equivalencer,
+						options, options.deadline( ) );
+		int[] front_map = new int[front.width( )];
+		int[] back_map = new int[back.width( )];
+		int width = 0;
+		for ( int d = 0; d < diffs.size( ); d++ ) {
+			width += diffs.length( d );
+		}
+		int[] representative_row = new int[width];
+		int[] representative_index = new int[width];
+		int f = 0;
+		int b = 0;
+		int c = 0;
+		for ( int d = 0; d < diffs.size( ); d++ ) {
+			for ( int k = 0; k < diffs.length( d ); k++ ) {
+				// A merged column is represented by the element of the first row.
+				Profile source = diffs.kind( d ) == EditScript.INSERT
+						|| diffs.kind( d ) == EditScript.EQUAL
+								&& back.representative_row[b] < front.representative_row[f]
+										? back : front;
+				int column = source == front ? f : b;
+				representative_row[c] = source.representative_row[column];
+				representative_index[c] = source.representative_index[column];
+				if ( diffs.kind( d ) != EditScript.INSERT ) {
+					front_map[f++] = c;
+				}
+				if ( diffs.kind( d ) != EditScript.DELETE ) {
+					back_map[b++] = c;
+				}
+				c++;
+			}
+		}
+		int count = front.rows.length + back.rows.length;
+		int[] rows = Arrays.copyOf( front.rows, count );
+		System.arraycopy( back.rows, 0, rows, front.rows.length,
+				back.rows.length );
+		int[][] columns = Arrays.copyOf( front.columns, count );
+		System.arraycopy( back.columns, 0, columns, front.rows.length,
+				back.rows.length );
+		for ( int r = 0; r < count; r++ ) {
+			int[] map = r < front.rows.length ? front_map : back_map;
+			int[] row = columns[r];
+			for ( int i = 0; i < row.length; i++ ) {
+				row[i] = map[row[i]];
+			}
+		}
+		return new Profile( rows, columns, representative_row,
+				representative_index );
+	}
+
+	/**
+	 * Returns the symbols of the representatives of the columns of the argument
+	 * alignment.
+	 */
+	private int[] representatives( Profile profile ) {
+		int[] result = new int[profile.width( )];
+		for ( int c = 0; c < result.length; c++ ) {
+			result[c] = symbols[profile.representative_row[c]][profile
+					.representative_index[c]];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the representatives of the columns of the argument alignment.
+	 */
+	private Tuple<K> tuple( Profile profile ) {
+		return new Tuple<K>( ) {
+
+			@Override
+			public K get( int c ) {
+				return rows.get( profile.representative_row[c] )
+						.get( profile.representative_index[c] );
+			}
+
+			@Override
+			public int size( ) {
+				return profile.width( );
+			}
+		};
+	}
+}
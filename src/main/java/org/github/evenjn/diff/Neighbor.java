@@ -0,0 +1,52 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>Neighbor</h1>
+ *
+ * <p>
+ * A {@code Neighbor} is a tuple found by a search in a {@link BkTree} or in a
+ * {@link QGramIndex}, together with its distance from the tuple searched for.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <K>
+ *          The type of elements in the tuple.
+ * @since 1.0
+ */
+public interface Neighbor<K> {
+
+	/**
+	 * @return The tuple found.
+	 * @since 1.0
+	 */
+	Tuple<K> tuple( );
+
+	/**
+	 * @return The distance between the tuple found and the tuple searched for.
+	 * @since 1.0
+	 */
+	int distance( );
+}
@@ -0,0 +1,695 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>Patch</h1>
+ *
+ * <p>
+ * A {@code Patch} is a list of the changes that turn a front tuple into a back
+ * tuple, that can be applied to other tuples similar to the front tuple.
+ * </p>
+ *
+ * <p>
+ * A patch is made of hunks. Each hunk holds a run of changes, together with up
+ * to four unchanged elements of context on either side: the elements it
+ * expects to find in the front tuple, and the elements that replace them in
+ * the back tuple. Changes separated by at most eight unchanged elements belong
+ * to the same hunk. A patch holds no other element of the tuples, so it takes
+ * memory proportional to the size of the changes.
+ * </p>
+ *
+ * <p>
+ * A patch is applied by locating each hunk in the target tuple. A hunk is
+ * first looked for where it would be if the target were the front tuple,
+ * shifted as much as the previous hunk was. When the hunk is not found there,
+ * it is looked for within 1000 elements of that position, allowing up to half
+ * as many mismatches as it has elements. The hunk is placed where it has the
+ * fewest mismatches, and, among those, nearest to the expected position.
+ * Hunks longer than 32 elements are located by their first 32 elements and
+ * then by their last 32 elements, so that locating a hunk takes time
+ * proportional to the distance searched, whatever the size of the hunk.
+ * </p>
+ *
+ * <p>
+ * A patch can be written to a stream and read back. Each hunk is written as
+ * its position, its front elements, and the {@link Delta delta} of its
+ * alignment, so only the elements of the front tuple in the hunks and the
+ * elements the hunks insert are written, by a {@link DeltaSerializer}.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <K>
+ *          The type of elements in the tuples.
+ * @since 1.0
+ */
+public final class Patch<K> {
+
+	/**
+	 * The number of unchanged elements kept on each side of a hunk.
+	 */
+	private static final int context = 4;
+
+	/**
+	 * The distance from the expected position within which hunks are looked
+	 * for.
+	 */
+	private static final int distance = 1000;
+
+	/**
+	 * The largest number of elements of a hunk that are matched approximately
+	 * at once.
+	 */
+	private static final int bits = 32;
+
+	/**
+	 * A run of changes, with context.
+	 */
+	private static final class Hunk<K> {
+
+		/**
+		 * The position of the hunk in the front tuple.
+		 */
+		private final int start;
+
+		private final Tuple<K> front;
+
+		private final Tuple<K> back;
+
+		/**
+		 * The alignment of the front elements with the back elements.
+		 */
+		private final EditScript diffs;
+
+		private Hunk(int start, Tuple<K> front, Tuple<K> back,
+				EditScript diffs) {
+			this.start = start;
+			this.front = front;
+			this.back = back;
+			this.diffs = diffs;
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code make} returns a patch that turns the argument {@code front} tuple
+	 * into the argument {@code back} tuple, telling whether elements are
+	 * equivalent using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param front
+	 *          The tuple before the changes.
+	 * @param back
+	 *          The tuple after the changes.
+	 * @return A patch that turns {@code front} into {@code back}.
+	 * @throws IllegalArgumentException
+	 *           when {@code front} or {@code back} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <K> Patch<K> make( Tuple<K> front, Tuple<K> back ) {
+		return make( front, back, new BasicEquivalencer<K, K>( ),
+				DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code make} returns a patch that turns the argument {@code front} tuple
+	 * into the argument {@code back} tuple, telling whether elements are
+	 * equivalent using the argument {@code equivalencer}.
+	 * </p>
+	 *
+	 * <p>
+	 * The changes are those of the alignment that
+	 * {@link DiffingTuple#diff(Tuple, Equivalencer, DiffOptions)} computes with
+	 * the argument options. The patch uses the same equivalencer and options
+	 * when it is applied.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param front
+	 *          The tuple before the changes.
+	 * @param back
+	 *          The tuple after the changes.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute alignments.
+	 * @return A patch that turns {@code front} into {@code back}.
+	 * @throws IllegalArgumentException
+	 *           when {@code front}, {@code back}, {@code equivalencer} or
+	 *           {@code options} is {@code null}.
+	 * @since 1.0
+	 */
+	public static <K> Patch<K> make( Tuple<K> front, Tuple<K> back,
+			Equivalencer<K, K> equivalencer, DiffOptions options ) {
+		if ( front == null || back == null || equivalencer == null
+				|| options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		EditScript diffs = options.run( ( ) -> Diff.adiff_main( front, back,
+				equivalencer, options, options.deadline( ) ) );
+		Patch<K> result = new Patch<K>( equivalencer, options );
+		int f = 0;
+		int b = 0;
+		int d = 0;
+		while ( d < diffs.size( ) ) {
+			if ( diffs.kind( d ) == EditScript.EQUAL ) {
+				f += diffs.length( d );
+				b += diffs.length( d );
+				d++;
+				continue;
+			}
+			// A hunk starts with the context before the first change.
+			int leading = d > 0 ? Math.min( context, diffs.length( d - 1 ) ) : 0;
+			int front_start = f - leading;
+			int back_start = b - leading;
+			EditScript script = new EditScript( );
+			if ( leading > 0 ) {
+				script.add( EditScript.EQUAL, leading );
+			}
+			while ( d < diffs.size( ) ) {
+				if ( diffs.kind( d ) == EditScript.EQUAL ) {
+					if ( d == diffs.size( ) - 1
+							|| diffs.length( d ) > 2 * context ) {
+						break;
+					}
+				}
+				script.add( diffs.kind( d ), diffs.length( d ) );
+				f += diffs.frontLength( d );
+				b += diffs.backLength( d );
+				d++;
+			}
+			int trailing = d < diffs.size( ) ? Math.min( context,
+					diffs.length( d ) ) : 0;
+			if ( trailing > 0 ) {
+				script.add( EditScript.EQUAL, trailing );
+			}
+			result.hunks.add( new Hunk<K>( front_start,
+					copy( front, front_start, f + trailing ),
+					copy( back, back_start, b + trailing ), script ) );
+		}
+		return result;
+	}
+
+	private static <K> Tuple<K> copy( Tuple<K> tuple, int start, int end ) {
+		ArrayList<K> result = new ArrayList<>( end - start );
+		for ( int i = start; i < end; i++ ) {
+			result.add( tuple.get( i ) );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	private final Equivalencer<K, K> equivalencer;
+
+	private final DiffOptions options;
+
+	private final ArrayList<Hunk<K>> hunks = new ArrayList<>( );
+
+	private Patch(Equivalencer<K, K> equivalencer, DiffOptions options) {
+		this.equivalencer = equivalencer;
+		this.options = options;
+	}
+
+	/**
+	 * <p>
+	 * {@code read} reads a patch from the argument {@code stream}, that was
+	 * written by {@link #write(DeltaSerializer, OutputStream) write}, telling
+	 * whether elements are equivalent using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param serializer
+	 *          A system that reads elements.
+	 * @param stream
+	 *          The stream to read the patch from.
+	 * @return The patch.
+	 * @throws IOException
+	 *           when the stream or the serializer fail, or when the stream
+	 *           ends before the patch.
+	 * @throws IllegalArgumentException
+	 *           when any argument is {@code null}, or when the stream does not
+	 *           hold a patch.
+	 * @since 1.0
+	 */
+	public static <K> Patch<K> read( DeltaSerializer<? extends K> serializer,
+			InputStream stream )
+			throws IOException {
+		return read( serializer, stream, new BasicEquivalencer<K, K>( ),
+				DiffOptions.nu( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code read} reads a patch from the argument {@code stream}, that was
+	 * written by {@link #write(DeltaSerializer, OutputStream) write}, telling
+	 * whether elements are equivalent using the argument {@code equivalencer}.
+	 * </p>
+	 *
+	 * <p>
+	 * Neither the equivalencer nor the options are written with a patch: the
+	 * patch that is read uses the argument ones when it is applied. In the
+	 * back elements of each hunk, the elements that are equivalent to front
+	 * elements are the front elements.
+	 * </p>
+	 *
+	 * <p>
+	 * The patch is read entirely before this method returns, and no byte after
+	 * its end is read.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param serializer
+	 *          A system that reads elements.
+	 * @param stream
+	 *          The stream to read the patch from.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @param options
+	 *          Options that specify how to compute alignments.
+	 * @return The patch.
+	 * @throws IOException
+	 *           when the stream or the serializer fail, or when the stream
+	 *           ends before the patch.
+	 * @throws IllegalArgumentException
+	 *           when any argument is {@code null}, or when the stream does not
+	 *           hold a patch.
+	 * @since 1.0
+	 */
+	public static <K> Patch<K> read( DeltaSerializer<? extends K> serializer,
+			InputStream stream, Equivalencer<K, K> equivalencer,
+			DiffOptions options )
+			throws IOException {
+		if ( serializer == null || stream == null || equivalencer == null
+				|| options == null ) {
+			throw new IllegalArgumentException( );
+		}
+		DataInput input = new DataInputStream( stream );
+		Patch<K> result = new Patch<K>( equivalencer, options );
+		int size = input.readInt( );
+		if ( size < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		for ( int h = 0; h < size; h++ ) {
+			int start = input.readInt( );
+			int length = input.readInt( );
+			if ( start < 0 || length < 0 ) {
+				throw new IllegalArgumentException( );
+			}
+			ArrayList<K> front = new ArrayList<>( );
+			for ( int i = 0; i < length; i++ ) {
+				front.add( serializer.read( input ) );
+			}
+			DiffIterable<K, K> delta =
+					Delta.read( KnittingTuple.wrap( front ), serializer, input );
+			result.hunks.add( new Hunk<K>( start, KnittingTuple.wrap( front ),
+					delta.back( ), delta.script( ) ) );
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * {@code write} writes this patch to the argument {@code stream}, so that
+	 * it can be read back by {@link #read(DeltaSerializer, InputStream) read}.
+	 * </p>
+	 *
+	 * <p>
+	 * The bytes are written one element at a time: for large patches, the
+	 * stream should be buffered.
+	 * </p>
+	 *
+	 * @param serializer
+	 *          A system that writes elements.
+	 * @param stream
+	 *          The stream to write the patch to.
+	 * @throws IOException
+	 *           when the stream or the serializer fail.
+	 * @throws IllegalArgumentException
+	 *           when any argument is {@code null}.
+	 * @since 1.0
+	 */
+	public void write( DeltaSerializer<? super K> serializer,
+			OutputStream stream )
+			throws IOException {
+		if ( serializer == null || stream == null ) {
+			throw new IllegalArgumentException( );
+		}
+		DataOutput output = new DataOutputStream( stream );
+		output.writeInt( hunks.size( ) );
+		for ( Hunk<K> hunk : hunks ) {
+			output.writeInt( hunk.start );
+			output.writeInt( hunk.front.size( ) );
+			for ( int i = 0; i < hunk.front.size( ); i++ ) {
+				serializer.write( hunk.front.get( i ), output );
+			}
+			Delta.write( new DiffIterable<K, K>( hunk.front, hunk.back, ( ) -> 0,
+					( ) -> hunk.diffs ), serializer, output );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code hunks} returns the number of hunks of this patch.
+	 * </p>
+	 *
+	 * @return The number of hunks of this patch.
+	 * @since 1.0
+	 */
+	public int hunks( ) {
+		return hunks.size( );
+	}
+
+	/**
+	 * <p>
+	 * {@code start} returns the position in the front tuple of the first
+	 * element of the argument {@code hunk}.
+	 * </p>
+	 *
+	 * @param hunk
+	 *          The index of a hunk.
+	 * @return The position of the hunk in the front tuple.
+	 * @throws IllegalArgumentException
+	 *           when {@code hunk} is not the index of a hunk.
+	 * @since 1.0
+	 */
+	public int start( int hunk ) {
+		return hunk( hunk ).start;
+	}
+
+	/**
+	 * <p>
+	 * {@code front} returns the elements of the front tuple in the argument
+	 * {@code hunk}, context included.
+	 * </p>
+	 *
+	 * @param hunk
+	 *          The index of a hunk.
+	 * @return The elements of the front tuple in the hunk.
+	 * @throws IllegalArgumentException
+	 *           when {@code hunk} is not the index of a hunk.
+	 * @since 1.0
+	 */
+	public Tuple<K> front( int hunk ) {
+		return hunk( hunk ).front;
+	}
+
+	/**
+	 * <p>
+	 * {@code back} returns the elements of the back tuple in the argument
+	 * {@code hunk}, context included.
+	 * </p>
+	 *
+	 * @param hunk
+	 *          The index of a hunk.
+	 * @return The elements of the back tuple in the hunk.
+	 * @throws IllegalArgumentException
+	 *           when {@code hunk} is not the index of a hunk.
+	 * @since 1.0
+	 */
+	public Tuple<K> back( int hunk ) {
+		return hunk( hunk ).back;
+	}
+
+	private Hunk<K> hunk( int hunk ) {
+		if ( hunk < 0 || hunk >= hunks.size( ) ) {
+			throw new IllegalArgumentException( );
+		}
+		return hunks.get( hunk );
+	}
+
+	/**
+	 * <p>
+	 * {@code apply} returns the tuple obtained by applying this patch to the
+	 * argument {@code target} tuple.
+	 * </p>
+	 *
+	 * <p>
+	 * Applied to the front tuple, the patch returns a tuple equivalent to the
+	 * back tuple. Applied to a tuple that differs from the front tuple, each
+	 * hunk is located as described in the {@link Patch class documentation}.
+	 * Where a hunk is found with mismatches, the hunk is aligned with the
+	 * elements it is found at: elements of the target aligned with elements
+	 * that the hunk deletes are deleted, the elements that the hunk inserts are
+	 * inserted at the aligned positions, and the other elements of the target
+	 * are kept.
+	 * </p>
+	 *
+	 * @param target
+	 *          The tuple to patch.
+	 * @return The patched tuple.
+	 * @throws IllegalArgumentException
+	 *           when {@code target} is {@code null}, or when a hunk cannot be
+	 *           located in it.
+	 * @since 1.0
+	 */
+	public Tuple<K> apply( Tuple<K> target ) {
+		if ( target == null ) {
+			throw new IllegalArgumentException( );
+		}
+		ArrayList<K> result = new ArrayList<>( target.size( ) );
+		int consumed = 0;
+		int drift = 0;
+		for ( Hunk<K> hunk : hunks ) {
+			int expected = Math.max( consumed,
+					Math.min( hunk.start + drift, target.size( ) ) );
+			int[] location = locate( hunk.front, target, consumed, expected );
+			if ( location == null ) {
+				throw new IllegalArgumentException( );
+			}
+			int start = location[0];
+			int end = location[1];
+			for ( int i = consumed; i < start; i++ ) {
+				result.add( target.get( i ) );
+			}
+			if ( location[2] == 0 && end - start == hunk.front.size( ) ) {
+				for ( int i = 0; i < hunk.back.size( ); i++ ) {
+					result.add( hunk.back.get( i ) );
+				}
+			}
+			else {
+				merge( hunk, target, start, end, result );
+			}
+			consumed = end;
+			drift = start - hunk.start;
+		}
+		for ( int i = consumed; i < target.size( ); i++ ) {
+			result.add( target.get( i ) );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	/**
+	 * Returns the start, the end and the number of mismatches of the best
+	 * occurrence of the argument pattern in the target, starting at or after
+	 * {@code from}, or {@code null} when there is none. Patterns longer than
+	 * {@link #bits} elements are located by their first and last {@link #bits}
+	 * elements, and their number of mismatches is zero only when they occur
+	 * exactly.
+	 */
+	private int[] locate( Tuple<K> pattern, Tuple<K> target, int from,
+			int expected ) {
+		int length = pattern.size( );
+		if ( matches( pattern, target, expected ) ) {
+			return new int[] { expected, expected + length, 0 };
+		}
+		if ( length <= bits ) {
+			return search( pattern, target, from, expected );
+		}
+		int[] head = search( copy( pattern, 0, bits ), target, from, expected );
+		if ( head == null ) {
+			return null;
+		}
+		int[] tail = search( copy( pattern, length - bits, length ), target,
+				head[0], head[0] + length - bits );
+		if ( tail == null || tail[1] < head[1] ) {
+			return null;
+		}
+		boolean exact = tail[1] - head[0] == length
+				&& matches( pattern, target, head[0] );
+		return new int[] { head[0], tail[1],
+				exact ? 0 : Math.max( 1, head[2] + tail[2] ) };
+	}
+
+	/**
+	 * Returns the start, the end and the number of mismatches of the best
+	 * approximate occurrence of the argument pattern in the target, starting at
+	 * or after {@code from}, or {@code null} when there is no occurrence with
+	 * at most half as many mismatches as elements in the pattern.
+	 */
+	private int[] search( Tuple<K> pattern, Tuple<K> target, int from,
+			int expected ) {
+		int length = pattern.size( );
+		int max_errors = length / 2;
+		int low = Math.max( from, expected - distance );
+		int high = (int) Math.min( target.size( ),
+				(long) expected + distance + length + max_errors );
+		// Approximate matching: cost[i] is the fewest mismatches between the
+		// first i elements of the pattern and a run of the target that ends at
+		// the current position, and start[i] is where that run starts.
+		int[] cost = new int[length + 1];
+		int[] start = new int[length + 1];
+		for ( int i = 0; i <= length; i++ ) {
+			cost[i] = i;
+			start[i] = low;
+		}
+		int[] best = null;
+		if ( length <= max_errors ) {
+			best = new int[] { low, low, length };
+		}
+		for ( int j = low; j < high; j++ ) {
+			K element = target.get( j );
+			int diagonal_cost = cost[0];
+			int diagonal_start = start[0];
+			cost[0] = 0;
+			start[0] = j + 1;
+			for ( int i = 1; i <= length; i++ ) {
+				int up_cost = cost[i];
+				int up_start = start[i];
+				int c = diagonal_cost
+						+ ( equivalencer.equivalent( pattern.get( i - 1 ), element ) ? 0
+								: 1 );
+				int s = diagonal_start;
+				if ( cost[i - 1] + 1 < c ) {
+					c = cost[i - 1] + 1;
+					s = start[i - 1];
+				}
+				if ( up_cost + 1 < c ) {
+					c = up_cost + 1;
+					s = up_start;
+				}
+				cost[i] = c;
+				start[i] = s;
+				diagonal_cost = up_cost;
+				diagonal_start = up_start;
+			}
+			int errors = cost[length];
+			if ( errors <= max_errors && ( best == null || errors < best[2]
+					|| errors == best[2] && Math.abs( start[length] - expected ) < Math
+							.abs( best[0] - expected ) ) ) {
+				best = new int[] { start[length], j + 1, errors };
+			}
+		}
+		return best;
+	}
+
+	private boolean matches( Tuple<K> pattern, Tuple<K> target, int at ) {
+		if ( at + pattern.size( ) > target.size( ) ) {
+			return false;
+		}
+		for ( int i = 0; i < pattern.size( ); i++ ) {
+			if ( !equivalencer.equivalent( pattern.get( i ),
+					target.get( at + i ) ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends to the result the elements of the target from {@code start}
+	 * included to {@code end} excluded, changed as the hunk changes the
+	 * elements of the front tuple they are aligned with.
+	 */
+	private void merge( Hunk<K> hunk, Tuple<K> target, int start, int end,
+			ArrayList<K> result ) {
+		Tuple<K> region = copy( target, start, end );
+		EditScript alignment = options.run( ( ) -> Diff.adiff_main( hunk.front,
+				region, equivalencer, options, options.deadline( ) ) );
+		// For each front element of the hunk, the aligned region element or -1;
+		// for each boundary between front elements, the region position.
+		int[] aligned = new int[hunk.front.size( )];
+		int[] boundary = new int[hunk.front.size( ) + 1];
+		int f = 0;
+		int r = 0;
+		for ( int d = 0; d < alignment.size( ); d++ ) {
+			int kind = alignment.kind( d );
+			for ( int k = 0; k < alignment.length( d ); k++ ) {
+				if ( kind == EditScript.INSERT ) {
+					r++;
+					continue;
+				}
+				boundary[f] = r;
+				aligned[f++] = kind == EditScript.EQUAL ? r++ : -1;
+			}
+		}
+		boundary[f] = r;
+		boolean[] deleted = new boolean[region.size( )];
+		// For each region position, the elements inserted before it.
+		ArrayList<ArrayList<K>> inserted = new ArrayList<>( );
+		for ( int i = 0; i <= region.size( ); i++ ) {
+			inserted.add( null );
+		}
+		f = 0;
+		int b = 0;
+		for ( int d = 0; d < hunk.diffs.size( ); d++ ) {
+			int kind = hunk.diffs.kind( d );
+			int length = hunk.diffs.length( d );
+			if ( kind == EditScript.INSERT ) {
+				int position = boundary[f];
+				if ( inserted.get( position ) == null ) {
+					inserted.set( position, new ArrayList<>( ) );
+				}
+				for ( int k = 0; k < length; k++ ) {
+					inserted.get( position ).add( hunk.back.get( b++ ) );
+				}
+				continue;
+			}
+			for ( int k = 0; k < length; k++, f++ ) {
+				if ( kind == EditScript.DELETE && aligned[f] >= 0 ) {
+					deleted[aligned[f]] = true;
+				}
+			}
+			if ( kind == EditScript.EQUAL ) {
+				b += length;
+			}
+		}
+		for ( int i = 0; i <= region.size( ); i++ ) {
+			if ( inserted.get( i ) != null ) {
+				result.addAll( inserted.get( i ) );
+			}
+			if ( i < region.size( ) && !deleted[i] ) {
+				result.add( region.get( i ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import org.github.evenjn.lang.BasicEquivalencer;
+
+/**
+ * The patience diff algorithm, on sequences of integer symbols.
+ *
+ * Elements that occur exactly once in both texts are candidate anchors. The
+ * longest sequence of candidates that appear in the same order in both texts
+ * is aligned, and the gaps between anchors are aligned recursively. Gaps
+ * without candidates are aligned by {@link IntDiff}.
+ */
+class PatienceDiff {
+
+	/**
+	 * Per symbol, the number of occurrences in the current range of text1.
+	 */
+	private final int[] count1;
+
+	/**
+	 * Per symbol, the number of occurrences in the current range of text2.
+	 */
+	private final int[] count2;
+
+	/**
+	 * Per symbol, the position of its last occurrence in the current range of
+	 * text2.
+	 */
+	private final int[] position2;
+
+	private final int[] text1;
+
+	private final int[] text2;
+
+	private final DiffOptions options;
+
+	private final long deadline;
+
+	private PatienceDiff(int[] text1, int[] text2, int symbols,
+			DiffOptions options, long deadline) {
+		this.text1 = text1;
+		this.text2 = text2;
+		this.options = options;
+		this.deadline = deadline;
+		this.count1 = new int[symbols];
+		this.count2 = new int[symbols];
+		this.position2 = new int[symbols];
+	}
+
+	static EditScript pdiff_main( int[] text1, int[] text2,
+			DiffOptions options, long deadline ) {
+		if ( text1 == null || text2 == null ) {
+			throw new IllegalArgumentException( "Null inputs. (pdiff_main)" );
+		}
+		int symbols = Interner.symbols( text1, text2 );
+		if ( symbols < 0 ) {
+			// Map sparse symbols to dense ones, so they can index arrays.
+			Interner<Integer, Integer> interner =
+					Interner.of( new BasicEquivalencer<Integer, Integer>( ) );
+			text1 = interner.front( DiffIterable.tuple( text1 ) );
+			text2 = interner.back( DiffIterable.tuple( text2 ) );
+			symbols = interner.size( );
+		}
+		PatienceDiff patience =
+				new PatienceDiff( text1, text2, symbols, options, deadline );
+		EditScript diffs = new EditScript( );
+		patience.diff( 0, text1.length, 0, text2.length, diffs );
+		Diff.adiff_cleanupMerge( IntDiff.texts( text1, text2 ), 0, 0, diffs, 0 );
+		return diffs;
+	}
+
+	private void diff( int start1, int end1, int start2, int end2,
+			EditScript diffs ) {
+		// Trim off common prefix and suffix.
+		int prefix =
+				IntDiff.commonPrefix( text1, start1, end1, text2, start2, end2 );
+		int suffix = IntDiff.commonSuffix( text1, start1 + prefix, end1, text2,
+				start2 + prefix, end2 );
+		if ( prefix != 0 ) {
+			diffs.add( EditScript.EQUAL, prefix );
+		}
+		start1 += prefix;
+		start2 += prefix;
+		end1 -= suffix;
+		end2 -= suffix;
+
+		int[] anchors = anchors( start1, end1, start2, end2 );
+		if ( anchors.length == 0 ) {
+			IntDiff.idiff_main_nc( text1, start1, end1, text2, start2, end2,
+					options, deadline, diffs );
+		}
+		else {
+			for ( int i = 0; i < anchors.length; i += 2 ) {
+				int anchor1 = anchors[i];
+				int anchor2 = anchors[i + 1];
+				diff( start1, anchor1, start2, anchor2, diffs );
+				diffs.add( EditScript.EQUAL, 1 );
+				start1 = anchor1 + 1;
+				start2 = anchor2 + 1;
+			}
+			diff( start1, end1, start2, end2, diffs );
+		}
+
+		if ( suffix != 0 ) {
+			diffs.add( EditScript.EQUAL, suffix );
+		}
+	}
+
+	/**
+	 * Returns the anchors of the argument ranges, in increasing order, as
+	 * pairs: the position in text1 followed by the position in text2.
+	 */
+	private int[] anchors( int start1, int end1, int start2, int end2 ) {
+		for ( int i = start1; i < end1; i++ ) {
+			count1[text1[i]]++;
+		}
+		for ( int i = start2; i < end2; i++ ) {
+			count2[text2[i]]++;
+			position2[text2[i]] = i;
+		}
+
+		/*
+		 * Patience sorting: the positions in text2 of the unique elements, taken
+		 * in the order of text1, are dealt onto piles. The top of each pile is
+		 * smaller than the top of the next one; each card records the top of the
+		 * previous pile when it was dealt. Following those links back from the
+		 * last pile yields a longest increasing subsequence.
+		 */
+		int[] unique = new int[Math.min( end1 - start1, end2 - start2 )];
+		int[] links = new int[unique.length];
+		int[] tops = new int[unique.length];
+		int cards = 0;
+		int piles = 0;
+		for ( int i = start1; i < end1; i++ ) {
+			int symbol = text1[i];
+			if ( count1[symbol] != 1 || count2[symbol] != 1 ) {
+				continue;
+			}
+			int position = position2[symbol];
+			int low = 0;
+			int high = piles;
+			while ( low < high ) {
+				int middle = ( low + high ) >>> 1;
+				if ( position2[text1[unique[tops[middle]]]] < position ) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			unique[cards] = i;
+			links[cards] = low == 0 ? -1 : tops[low - 1];
+			tops[low] = cards;
+			if ( low == piles ) {
+				piles++;
+			}
+			cards++;
+		}
+
+		int[] result = new int[2 * piles];
+		for ( int card = piles == 0 ? -1 : tops[piles - 1], i = piles - 1;
+				card >= 0; card = links[card], i-- ) {
+			result[2 * i] = unique[card];
+			result[2 * i + 1] = position2[text1[unique[card]]];
+		}
+
+		for ( int i = start1; i < end1; i++ ) {
+			count1[text1[i]] = 0;
+		}
+		for ( int i = start2; i < end2; i++ ) {
+			count2[text2[i]] = 0;
+		}
+		return result;
+	}
+}
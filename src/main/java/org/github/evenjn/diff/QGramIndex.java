@@ -0,0 +1,535 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Cursor;
+import org.github.evenjn.yarn.EndOfCursorException;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ *
+ * <h1>QGramIndex</h1>
+ *
+ * <p>
+ * A {@code QGramIndex} is an index of tuples that finds the tuples close to a
+ * given tuple, where closeness is measured by the
+ * <a href= "https://en.wikipedia.org/wiki/Levenshtein_distance" >Levenshtein
+ * distance</a>. It is meant for similarity joins: one collection of tuples is
+ * added to the index, and the tuples of another collection are
+ * {@linkplain #join(Cursor, int) streamed} through it, one at a time.
+ * </p>
+ *
+ * <p>
+ * The index is an inverted index of
+ * <a href= "https://en.wikipedia.org/wiki/N-gram" >q-grams</a>: for each
+ * subtuple of {@code q} consecutive elements, it records the tuples where the
+ * subtuple occurs, and where. A tuple within distance {@code k} of a tuple
+ * searched for must pass three filters, which are applied before any distance
+ * is computed:
+ * </p>
+ *
+ * <ul>
+ * <li>Length filter: the sizes of the two tuples differ by at most
+ * {@code k}.</li>
+ * <li>Position filter: a q-gram of one tuple can only match a q-gram of the
+ * other tuple whose position differs by at most {@code k}.</li>
+ * <li>Count filter: the two tuples share at least as many q-grams as the
+ * longer tuple has, minus {@code k * q}, because each edit operation destroys
+ * at most {@code q} q-grams.</li>
+ * </ul>
+ *
+ * <p>
+ * The tuples that pass the filters are candidates, and their distance from
+ * the tuple searched for is computed with the bound {@code k}. When the count
+ * filter is too weak to exclude any tuple, for example when tuples are shorter
+ * than {@code (k + 1) * q}, all the tuples of a suitable size are candidates.
+ * Smaller values of {@code q} make the count filter effective with larger
+ * distances, larger values make the q-grams more selective.
+ * </p>
+ *
+ * <p>
+ * Searches may run concurrently with each other. Adding a tuple waits for the
+ * running searches to complete, and the searches that start in the meantime
+ * wait for the tuple to be added.
+ * </p>
+ *
+ * <p>
+ * This class is part of package {@link org.github.evenjn.diff Diff}.
+ * </p>
+ *
+ * @param <K>
+ *          The type of elements in the tuples.
+ * @since 1.0
+ */
+public final class QGramIndex<K> {
+
+	private static final class Entry<K> {
+
+		private final Tuple<K> tuple;
+
+		private final int[] symbols;
+
+		/**
+		 * The number of tuples added before this one.
+		 */
+		private final int order;
+
+		private Entry(Tuple<K> tuple, int[] symbols, int order) {
+			this.tuple = tuple;
+			this.symbols = symbols;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * A growable list of pairs of integers.
+	 */
+	private static final class Postings {
+
+		private int[] pairs = new int[4];
+
+		private int size;
+
+		private void add( int first, int second ) {
+			if ( 2 * size == pairs.length ) {
+				pairs = Arrays.copyOf( pairs, 2 * pairs.length );
+			}
+			pairs[2 * size] = first;
+			pairs[2 * size + 1] = second;
+			size++;
+		}
+	}
+
+	private static final class Found<K> implements
+			Neighbor<K> {
+
+		private final Entry<K> entry;
+
+		private final int distance;
+
+		private Found(Entry<K> entry, int distance) {
+			this.entry = entry;
+			this.distance = distance;
+		}
+
+		@Override
+		public Tuple<K> tuple( ) {
+			return entry.tuple;
+		}
+
+		@Override
+		public int distance( ) {
+			return distance;
+		}
+	}
+
+	/**
+	 * Orders neighbors by distance, and then by the order they were added.
+	 */
+	private static final Comparator<Found<?>> closer =
+			Comparator.<Found<?>> comparingInt( found -> found.distance )
+					.thenComparingInt( found -> found.entry.order );
+
+	/**
+	 * <p>
+	 * {@code nu} returns an empty index of q-grams of the argument size, that
+	 * tells whether elements are equivalent using a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param q
+	 *          The number of elements in a q-gram. It must be positive.
+	 * @return An empty index.
+	 * @throws IllegalArgumentException
+	 *           when {@code q} is not positive.
+	 * @since 1.0
+	 */
+	public static <K> QGramIndex<K> nu( int q ) {
+		return nu( q, new BasicEquivalencer<K, K>( ) );
+	}
+
+	/**
+	 * <p>
+	 * {@code nu} returns an empty index of q-grams of the argument size, that
+	 * tells whether elements are equivalent using the argument
+	 * {@code equivalencer}.
+	 * </p>
+	 *
+	 * <p>
+	 * Q-grams are looked up by hashing, so the equivalencer must be a
+	 * {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer} or a
+	 * {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}. Each
+	 * element is mapped to an integer symbol once, when its tuple is added or
+	 * searched for, and distances are computed on symbols.
+	 * </p>
+	 *
+	 * @param <K>
+	 *          The type of elements in the tuples.
+	 * @param q
+	 *          The number of elements in a q-gram. It must be positive.
+	 * @param equivalencer
+	 *          A system that can tell whether two objects are equivalent.
+	 * @return An empty index.
+	 * @throws IllegalArgumentException
+	 *           when {@code q} is not positive, or when {@code equivalencer} is
+	 *           neither a
+	 *           {@link org.github.evenjn.lang.BasicEquivalencer BasicEquivalencer}
+	 *           nor a
+	 *           {@link org.github.evenjn.diff.KeyedEquivalencer KeyedEquivalencer}.
+	 * @since 1.0
+	 */
+	public static <K> QGramIndex<K> nu( int q,
+			Equivalencer<K, K> equivalencer ) {
+		Interner<K, K> interner = Interner.of( equivalencer );
+		if ( q < 1 || interner == null ) {
+			throw new IllegalArgumentException( );
+		}
+		return new QGramIndex<K>( q, interner );
+	}
+
+	private final int q;
+
+	private final Interner<K, K> interner;
+
+	/**
+	 * For each number of elements {@code l} from 2 to {@code q}, at index
+	 * {@code l - 2}, the identifiers of the subtuples of {@code l} elements,
+	 * keyed by the identifier of their first {@code l - 1} elements and the
+	 * symbol of the last one. Subtuples of one element are identified by their
+	 * symbol.
+	 */
+	private final ArrayList<HashMap<Long, Integer>> grams = new ArrayList<>( );
+
+	/**
+	 * For each q-gram, the order of the tuples where it occurs, and its
+	 * position.
+	 */
+	private final ArrayList<Postings> postings = new ArrayList<>( );
+
+	/**
+	 * The tuples, in the order they were added.
+	 */
+	private final ArrayList<Entry<K>> entries = new ArrayList<>( );
+
+	/**
+	 * For each size, the tuples of that size, in the order they were added.
+	 */
+	private final HashMap<Integer, ArrayList<Entry<K>>> by_size =
+			new HashMap<>( );
+
+	/**
+	 * The size of the longest tuple.
+	 */
+	private int longest;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock( );
+
+	private QGramIndex(int q, Interner<K, K> interner) {
+		this.q = q;
+		this.interner = interner;
+		for ( int l = 2; l <= q; l++ ) {
+			grams.add( new HashMap<>( ) );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code add} adds the argument tuple to this index.
+	 * </p>
+	 *
+	 * <p>
+	 * The tuple may not be modified after it is added.
+	 * </p>
+	 *
+	 * @param tuple
+	 *          The tuple to add.
+	 * @throws IllegalArgumentException
+	 *           when {@code tuple} is {@code null}.
+	 * @since 1.0
+	 */
+	public void add( Tuple<K> tuple ) {
+		if ( tuple == null ) {
+			throw new IllegalArgumentException( );
+		}
+		lock.writeLock( ).lock( );
+		try {
+			int[] symbols = interner.back( tuple );
+			Entry<K> entry = new Entry<K>( tuple, symbols, entries.size( ) );
+			entries.add( entry );
+			int[] ids = grams( symbols, true );
+			for ( int position = 0; position < ids.length; position++ ) {
+				while ( postings.size( ) <= ids[position] ) {
+					postings.add( new Postings( ) );
+				}
+				postings.get( ids[position] ).add( entry.order, position );
+			}
+			/*
+			 * The count filter cannot exclude a tuple with fewer than q * k + 1
+			 * q-grams from the results of a search with distance k, and k may be
+			 * arbitrarily large. Tuples are kept by size, so a search can find
+			 * those it cannot exclude.
+			 */
+			by_size.computeIfAbsent( symbols.length, x -> new ArrayList<>( ) )
+					.add( entry );
+			longest = Math.max( longest, symbols.length );
+		}
+		finally {
+			lock.writeLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code size} returns the number of tuples in this index.
+	 * </p>
+	 *
+	 * @return The number of tuples in this index.
+	 * @since 1.0
+	 */
+	public int size( ) {
+		lock.readLock( ).lock( );
+		try {
+			return entries.size( );
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * <p>
+	 * {@code within} returns the tuples in this index whose distance from the
+	 * argument {@code query} is not larger than the argument
+	 * {@code max_distance}.
+	 * </p>
+	 *
+	 * <p>
+	 * Tuples are sorted by increasing distance. Tuples at the same distance are
+	 * sorted in the order they were added.
+	 * </p>
+	 *
+	 * @param query
+	 *          The tuple to search for.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @return The tuples within {@code max_distance} of {@code query}, with
+	 *         their distances.
+	 * @throws IllegalArgumentException
+	 *           when {@code query} is {@code null}, or when
+	 *           {@code max_distance} is negative.
+	 * @since 1.0
+	 */
+	public Tuple<Neighbor<K>> within( Tuple<K> query, int max_distance ) {
+		if ( query == null || max_distance < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		return within( query, max_distance, new int[0][] );
+	}
+
+	/**
+	 * <p>
+	 * {@code join} returns a cursor that, for each tuple in the argument
+	 * cursor, provides the tuples in this index whose distance from it is not
+	 * larger than the argument {@code max_distance}.
+	 * </p>
+	 *
+	 * <p>
+	 * Each tuple in the argument cursor is read and searched for when the
+	 * returned cursor is advanced, so only the results of one search are kept
+	 * in memory at a time, and the memory used to count the q-grams shared by
+	 * the tuples is reused by the next search. The results of each search are
+	 * sorted as by {@link #within(Tuple, int)}.
+	 * </p>
+	 *
+	 * @param queries
+	 *          A cursor of tuples to search for.
+	 * @param max_distance
+	 *          The largest distance of interest. It must be non-negative.
+	 * @return A cursor of the tuples within {@code max_distance} of each tuple
+	 *         in {@code queries}, with their distances, in the order of
+	 *         {@code queries}.
+	 * @throws IllegalArgumentException
+	 *           when {@code queries} is {@code null}, or when
+	 *           {@code max_distance} is negative.
+	 * @since 1.0
+	 */
+	public Cursor<Tuple<Neighbor<K>>> join(
+			Cursor<? extends Tuple<K>> queries, int max_distance ) {
+		if ( queries == null || max_distance < 0 ) {
+			throw new IllegalArgumentException( );
+		}
+		int[][] counts = new int[1][];
+		return new Cursor<Tuple<Neighbor<K>>>( ) {
+
+			@Override
+			public Tuple<Neighbor<K>> next( )
+					throws EndOfCursorException {
+				Tuple<K> query = queries.next( );
+				if ( query == null ) {
+					throw new IllegalArgumentException( );
+				}
+				return within( query, max_distance, counts );
+			}
+		};
+	}
+
+	/**
+	 * Returns the tuples within {@code max_distance} of the argument query. The
+	 * first cell of {@code counts}, if any, holds an array of zeros that is
+	 * used to count the q-grams shared with each tuple, and that is replaced
+	 * when it is too short.
+	 */
+	private Tuple<Neighbor<K>> within( Tuple<K> query, int max_distance,
+			int[][] counts ) {
+		ArrayList<Found<K>> result = new ArrayList<>( );
+		lock.readLock( ).lock( );
+		try {
+			int[] symbols = interner.known( query );
+			int n = symbols.length;
+			int low = Math.max( 0, n - max_distance );
+			int high = (int) Math.min( longest, (long) n + max_distance );
+
+			// Tuples the count filter cannot exclude.
+			for ( int size = low; size <= high
+					&& threshold( size, n, max_distance ) <= 0; size++ ) {
+				verify( symbols, by_size.get( size ), max_distance, result );
+			}
+
+			int[] count = counts.length > 0 ? counts[0] : null;
+			if ( count == null || count.length < entries.size( ) ) {
+				count = new int[entries.size( )];
+				if ( counts.length > 0 ) {
+					counts[0] = count;
+				}
+			}
+			int[] ids = grams( symbols, false );
+			Postings candidates = new Postings( );
+			for ( int position = 0; position < ids.length; position++ ) {
+				if ( ids[position] < 0 || ids[position] >= postings.size( ) ) {
+					continue;
+				}
+				Postings occurrences = postings.get( ids[position] );
+				for ( int o = 0; o < occurrences.size; o++ ) {
+					int order = occurrences.pairs[2 * o];
+					int offset = occurrences.pairs[2 * o + 1] - position;
+					if ( offset < -max_distance || offset > max_distance ) {
+						continue;
+					}
+					int size = entries.get( order ).symbols.length;
+					if ( size < low || size > high
+							|| threshold( size, n, max_distance ) <= 0 ) {
+						continue;
+					}
+					if ( count[order]++ == 0 ) {
+						candidates.add( order, size );
+					}
+				}
+			}
+			for ( int c = 0; c < candidates.size; c++ ) {
+				int order = candidates.pairs[2 * c];
+				int size = candidates.pairs[2 * c + 1];
+				/*
+				 * A q-gram that occurs several times may be counted more than once,
+				 * so the count is an upper bound, and the filter stays safe.
+				 */
+				if ( count[order] >= threshold( size, n, max_distance ) ) {
+					verify( symbols, entries.get( order ), max_distance, result );
+				}
+				count[order] = 0;
+			}
+		}
+		finally {
+			lock.readLock( ).unlock( );
+		}
+		result.sort( closer );
+		return KnittingTuple.wrap( new ArrayList<Neighbor<K>>( result ) );
+	}
+
+	/**
+	 * Returns the number of q-grams that two tuples of sizes {@code size1} and
+	 * {@code size2} share at least, when their distance is not larger than
+	 * {@code max_distance}.
+	 */
+	private long threshold( int size1, int size2, int max_distance ) {
+		return (long) Math.max( size1, size2 ) - q + 1
+				- (long) q * max_distance;
+	}
+
+	private void verify( int[] symbols, ArrayList<Entry<K>> candidates,
+			int max_distance, ArrayList<Found<K>> result ) {
+		if ( candidates != null ) {
+			for ( Entry<K> entry : candidates ) {
+				verify( symbols, entry, max_distance, result );
+			}
+		}
+	}
+
+	private void verify( int[] symbols, Entry<K> entry, int max_distance,
+			ArrayList<Found<K>> result ) {
+		int distance = Distance.levenshtein( symbols, entry.symbols,
+				interner.size( ), max_distance );
+		if ( distance >= 0 ) {
+			result.add( new Found<K>( entry, distance ) );
+		}
+	}
+
+	/**
+	 * Returns the identifiers of the q-grams of the argument symbols, in order of
+	 * position. When {@code assign} is false, q-grams that occur in no tuple of
+	 * this index, and those that contain a negative symbol, are identified by
+	 * -1.
+	 */
+	private int[] grams( int[] symbols, boolean assign ) {
+		int count = symbols.length - q + 1;
+		if ( count <= 0 ) {
+			return new int[0];
+		}
+		// After each step, ids[p] identifies the l elements from position p.
+		int[] ids = symbols.clone( );
+		for ( int l = 2; l <= q; l++ ) {
+			HashMap<Long, Integer> level = grams.get( l - 2 );
+			for ( int p = 0; p + l <= symbols.length; p++ ) {
+				int last = symbols[p + l - 1];
+				if ( ids[p] < 0 || last < 0 ) {
+					ids[p] = -1;
+					continue;
+				}
+				long key = ( (long) ids[p] << 32 ) | last;
+				Integer id = level.get( key );
+				if ( id == null && assign ) {
+					id = level.size( );
+					level.put( key, id );
+				}
+				ids[p] = id == null ? -1 : id;
+			}
+		}
+		return Arrays.copyOf( ids, count );
+	}
+}
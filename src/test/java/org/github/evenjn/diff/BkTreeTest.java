@@ -0,0 +1,103 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.fixtures.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.lang.Equivalencer;
+import org.github.evenjn.yarn.Tuple;
+import org.junit.Test;
+
+public class BkTreeTest {
+
+	private static String print( Tuple<Neighbor<Integer>> neighbors,
+			ArrayList<KnittingTuple<Integer>> catalog ) {
+		StringBuilder sb = new StringBuilder( );
+		for ( int i = 0; i < neighbors.size( ); i++ ) {
+			Neighbor<Integer> neighbor = neighbors.get( i );
+			int position = 0;
+			while ( catalog.get( position ) != neighbor.tuple( ) ) {
+				position++;
+			}
+			sb.append( position );
+			sb.append( "@" );
+			sb.append( neighbor.distance( ) );
+			sb.append( " " );
+		}
+		return sb.toString( );
+	}
+
+	/**
+	 * Returns the tuples in the catalog sorted by distance from the query, as
+	 * printed by {@link #print(Tuple, ArrayList)}, up to {@code count} tuples
+	 * not farther than {@code max_distance}. Ties are sorted in catalog order.
+	 */
+	private static String brute( ArrayList<KnittingTuple<Integer>> catalog,
+			KnittingTuple<Integer> query, int max_distance, int count ) {
+		StringBuilder sb = new StringBuilder( );
+		for ( int distance = 0; distance <= max_distance; distance++ ) {
+			for ( int i = 0; i < catalog.size( ) && count > 0; i++ ) {
+				if ( DiffingTuple.wrap( catalog.get( i ) )
+						.distance_levenshtein( query ) == distance ) {
+					sb.append( i + "@" + distance + " " );
+					count--;
+				}
+			}
+		}
+		return sb.toString( );
+	}
+
+	@Test
+	public void test( ) {
+		Equivalencer<Integer, Integer> custom =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		Random random = new Random( 8 );
+		for ( Equivalencer<Integer, Integer> equivalencer : Arrays.asList(
+				new BasicEquivalencer<Integer, Integer>( ), custom ) ) {
+			BkTree<Integer> index = BkTree.nu( equivalencer );
+			ArrayList<KnittingTuple<Integer>> catalog = new ArrayList<>( );
+			for ( int i = 0; i < 300; i++ ) {
+				KnittingTuple<Integer> tuple =
+						random( random, 5 + random.nextInt( 10 ), 4 );
+				catalog.add( tuple );
+				index.add( tuple );
+			}
+			assertEquals( "size", 300, index.size( ) );
+			for ( int i = 0; i < 50; i++ ) {
+				KnittingTuple<Integer> query =
+						random( random, 5 + random.nextInt( 10 ), 5 );
+				int max_distance = random.nextInt( 6 );
+				assertEquals( "within",
+						brute( catalog, query, max_distance, Integer.MAX_VALUE ),
+						print( index.within( query, max_distance ), catalog ) );
+				int count = random.nextInt( 10 );
+				assertEquals( "nearest",
+						brute( catalog, query, 20, count ),
+						print( index.nearest( query, count ), catalog ) );
+			}
+		}
+	}
+}
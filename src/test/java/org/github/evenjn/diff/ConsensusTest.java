@@ -0,0 +1,128 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.fixtures.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.yarn.Tuple;
+import org.junit.Test;
+
+public class ConsensusTest {
+
+	private static String list( Tuple<Integer> tuple ) {
+		ArrayList<Integer> result = new ArrayList<>( );
+		for ( int i = 0; i < tuple.size( ); i++ ) {
+			result.add( tuple.get( i ) );
+		}
+		return result.toString( );
+	}
+
+	@Test
+	public void testFreshElements( ) {
+		KnittingTuple<Integer> base = KnittingTuple.on( 1, 2, 3, 4, 5 );
+		Consensus<Integer, Integer> consensus = Consensus.nu( base );
+		int interned = consensus.interned( );
+		ArrayList<KnittingTuple<Integer>> masks = new ArrayList<>( );
+		for ( int m = 0; m < 1000; m++ ) {
+			KnittingTuple<Integer> mask =
+					KnittingTuple.on( 1, 100 + 3 * m, 3, 101 + 3 * m, 5, 102 + 3 * m );
+			if ( m % 2 == 0 ) {
+				consensus.add( mask );
+			}
+			else {
+				masks.add( mask );
+			}
+		}
+		consensus.addAll( KnittingCursor.wrap( masks.iterator( ) ) );
+		assertEquals( interned, consensus.interned( ) );
+		assertEquals( 1000, consensus.masks( ) );
+		assertEquals( "[1, 3, 5]", list( consensus.supported( 1000 ) ) );
+		assertEquals( "[1, 3, 5]", list( consensus.supported( 1 ) ) );
+	}
+
+	@Test
+	public void test( ) {
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		DiffOptions parallel = DiffOptions.nu( ).parallel( pool, 8 );
+		Random random = new Random( 13 );
+		for ( int i = 0; i < 20; i++ ) {
+			KnittingTuple<Integer> base = random( random, random.nextInt( 80 ) );
+			DiffingTuple<Integer> front = DiffingTuple.wrap( base );
+			Consensus<Integer, Integer> serial = Consensus.nu( base );
+			Consensus<Integer, Integer> generic = Consensus.nu( base,
+					new BasicEquivalencer<Integer, Integer>( ) {
+					}, parallel );
+			ArrayList<KnittingTuple<Integer>> masks = new ArrayList<>( );
+			int[] support = new int[base.size( )];
+			// Support is checked after each batch of masks.
+			for ( int batch = 0; batch < 3; batch++ ) {
+				ArrayList<KnittingTuple<Integer>> added = new ArrayList<>( );
+				for ( int m = random.nextInt( 100 ); m > 0; m-- ) {
+					KnittingTuple<Integer> mask =
+							random( random, random.nextInt( 80 ) );
+					added.add( mask );
+					serial.add( mask );
+					int j = 0;
+					for ( DiffPair<Integer, Integer> pair : front.diff( mask ) ) {
+						if ( pair.hasFront( ) ) {
+							support[j++] += pair.hasBoth( ) ? 1 : 0;
+						}
+					}
+				}
+				generic.addAll( KnittingCursor.wrap( added.iterator( ) ) );
+				masks.addAll( added );
+				assertEquals( "masks", masks.size( ), serial.masks( ) );
+				assertEquals( "masks", masks.size( ), generic.masks( ) );
+				for ( int j = 0; j < support.length; j++ ) {
+					assertEquals( "support", support[j], serial.support( j ) );
+					assertEquals( "support", support[j], generic.support( j ) );
+				}
+				for ( int min = 0; min <= masks.size( ) + 1; min++ ) {
+					ArrayList<Integer> expected = new ArrayList<>( );
+					for ( int j = 0; j < support.length; j++ ) {
+						if ( support[j] >= min ) {
+							expected.add( base.get( j ) );
+						}
+					}
+					assertEquals( "supported", expected.toString( ),
+							list( serial.supported( min ) ) );
+					assertEquals( "supported", expected.toString( ),
+							list( generic.supported( min ) ) );
+					if ( masks.size( ) > 0 && min <= masks.size( ) ) {
+						double fraction = min / (double) masks.size( );
+						assertEquals( "fraction", expected.toString( ),
+								list( serial.supported_fraction( fraction ) ) );
+					}
+				}
+			}
+			assertEquals( "intersection",
+					list( serial.supported( serial.masks( ) ) ),
+					list( front.longestCommonSubtupleIntersection(
+							KnittingCursor.wrap( masks.iterator( ) ) ) ) );
+		}
+		pool.shutdown( );
+	}
+}
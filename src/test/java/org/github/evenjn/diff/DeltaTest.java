@@ -0,0 +1,133 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.fixtures.random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.yarn.Tuple;
+import org.junit.Test;
+
+public class DeltaTest {
+
+	private static final DeltaSerializer<Integer> integers =
+			new DeltaSerializer<Integer>( ) {
+
+				@Override
+				public void write( Integer element, DataOutput output )
+						throws IOException {
+					output.writeInt( element );
+				}
+
+				@Override
+				public Integer read( DataInput input )
+						throws IOException {
+					return input.readInt( );
+				}
+			};
+
+	/**
+	 * Prints an alignment, with {@code .} for missing elements.
+	 */
+	private static String print( Iterable<DiffPair<Integer, Integer>> pairs ) {
+		StringBuilder result = new StringBuilder( );
+		for ( DiffPair<Integer, Integer> pair : pairs ) {
+			result.append( pair.hasFront( ) ? pair.front( ) : "." )
+					.append( pair.hasBack( ) ? pair.back( ) : "." ).append( " " );
+		}
+		return result.toString( );
+	}
+
+	@Test
+	public void testStream( )
+			throws IOException {
+		Random random = new Random( 5 );
+		ArrayList<KnittingTuple<Integer>> fronts = new ArrayList<>( );
+		ArrayList<String> expected = new ArrayList<>( );
+		ByteArrayOutputStream stream = new ByteArrayOutputStream( );
+		for ( int i = 0; i < 50; i++ ) {
+			KnittingTuple<Integer> front = random( random, random.nextInt( 50 ) );
+			KnittingTuple<Integer> back = random( random, random.nextInt( 50 ) );
+			DiffingTuple<Integer> wrapped = DiffingTuple.wrap( front );
+			Iterable<DiffPair<Integer, Integer>> alignment = i % 3 == 0
+					? wrapped.diff_levenshtein( back )
+					: wrapped.diff( back );
+			if ( i % 3 == 1 ) {
+				// Not computed by DiffingTuple.
+				ArrayList<DiffPair<Integer, Integer>> pairs = new ArrayList<>( );
+				alignment.forEach( pairs::add );
+				alignment = pairs;
+			}
+			fronts.add( front );
+			expected.add( print( alignment ) );
+			Delta.write( alignment, integers, stream );
+		}
+		ByteArrayInputStream input =
+				new ByteArrayInputStream( stream.toByteArray( ) );
+		for ( int i = 0; i < fronts.size( ); i++ ) {
+			assertEquals( expected.get( i ),
+					print( Delta.read( fronts.get( i ), integers, input ) ) );
+		}
+		assertEquals( -1, input.read( ) );
+	}
+
+	@Test
+	public void testBuffer( )
+			throws IOException {
+		ArrayList<Integer> front = new ArrayList<>( );
+		for ( int i = 0; i < 10000; i++ ) {
+			front.add( i );
+		}
+		ArrayList<Integer> back = new ArrayList<>( front );
+		back.remove( 5000 );
+		back.add( 7000, -1 );
+		Tuple<Integer> tuple = KnittingTuple.wrap( front );
+		Iterable<DiffPair<Integer, Integer>> alignment =
+				DiffingTuple.wrap( tuple ).diff( KnittingTuple.wrap( back ) );
+		ByteBuffer buffer = ByteBuffer.allocate( 64 );
+		Delta.write( alignment, integers, buffer );
+		// Five runs and one inserted element.
+		assertTrue( buffer.position( ) <= 16 );
+		buffer.flip( );
+		Iterable<DiffPair<Integer, Integer>> read =
+				Delta.read( tuple, integers, buffer );
+		assertEquals( print( alignment ), print( read ) );
+		assertEquals( 0, buffer.remaining( ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatch( )
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate( 64 );
+		Delta.write( DiffingTuple.wrap( KnittingTuple.on( 1, 2, 3 ) )
+				.diff( KnittingTuple.on( 1, 3 ) ), integers, buffer );
+		buffer.flip( );
+		Delta.read( KnittingTuple.on( 1, 2 ), integers, buffer );
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.fixtures.chars;
+import static org.github.evenjn.diff.fixtures.random;
+import static org.github.evenjn.diff.fixtures.string;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.junit.Test;
+
+public class Diff3Test {
+
+	/**
+	 * Prints stable chunks as their merged elements, and conflicts as
+	 * {@code <ours|base|theirs>}.
+	 */
+	private static <K> String print( Iterable<MergeChunk<K, K>> merge ) {
+		StringBuilder result = new StringBuilder( );
+		for ( MergeChunk<K, K> chunk : merge ) {
+			if ( chunk.isConflict( ) ) {
+				result.append( "<" ).append( string( chunk.ours( ) ) ).append( "|" )
+						.append( string( chunk.base( ) ) ).append( "|" )
+						.append( string( chunk.theirs( ) ) ).append( ">" );
+			}
+			else {
+				result.append( string( chunk.merged( ) ) );
+			}
+		}
+		return result.toString( );
+	}
+
+	private static String merge( String base, String ours, String theirs ) {
+		return print( DiffingTuple.wrap( chars( base ) ).diff3( chars( ours ),
+				chars( theirs ) ) );
+	}
+
+	@Test
+	public void testMerge( ) {
+		assertEquals( "aXcdeYg", merge( "abcdefg", "aXcdefg", "abcdeYg" ) );
+		assertEquals( "a<X|b|Y>cd", merge( "abcd", "aXcd", "aYcd" ) );
+		assertEquals( "ad", merge( "abcd", "ad", "ad" ) );
+		assertEquals( "aXcd", merge( "abcd", "aXcd", "aXcd" ) );
+		assertEquals( "aXYcd", merge( "abcd", "aXYcd", "aXYcd" ) );
+		assertEquals( "abYcXd", merge( "abcd", "abcXd", "abYcd" ) );
+		assertEquals( "<X||Y>abc", merge( "abc", "Xabc", "Yabc" ) );
+		assertEquals( "abc", merge( "abc", "abc", "abc" ) );
+		assertEquals( "", merge( "", "", "" ) );
+	}
+
+	private static KnittingTuple<Integer> edit( Random random,
+			KnittingTuple<Integer> base ) {
+		ArrayList<Integer> result = new ArrayList<>( );
+		for ( int i = 0; i < base.size( ); i++ ) {
+			int dice = random.nextInt( 10 );
+			if ( dice == 0 ) {
+				result.add( random.nextInt( 5 ) );
+			}
+			if ( dice != 1 ) {
+				result.add( base.get( i ) );
+			}
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	private static String describe(
+			Iterable<MergeChunk<Integer, Integer>> merge ) {
+		StringBuilder result = new StringBuilder( );
+		for ( MergeChunk<Integer, Integer> chunk : merge ) {
+			result.append( string( chunk.base( ) ) ).append( "/" )
+					.append( string( chunk.ours( ) ) ).append( "/" )
+					.append( string( chunk.theirs( ) ) ).append( "/" )
+					.append( chunk.changedOurs( ) ).append( chunk.changedTheirs( ) )
+					.append( " " );
+		}
+		return result.toString( );
+	}
+
+	@Test
+	public void testRandom( ) {
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		DiffOptions parallel = DiffOptions.nu( ).parallel( pool, 8 );
+		Random random = new Random( 11 );
+		for ( int i = 0; i < 50; i++ ) {
+			KnittingTuple<Integer> base = random( random, random.nextInt( 100 ) );
+			KnittingTuple<Integer> ours = edit( random, base );
+			KnittingTuple<Integer> theirs = edit( random, base );
+			DiffingTuple<Integer> wrapped = DiffingTuple.wrap( base );
+			Iterable<MergeChunk<Integer, Integer>> merge =
+					wrapped.diff3( ours, theirs );
+			StringBuilder base_string = new StringBuilder( );
+			StringBuilder ours_string = new StringBuilder( );
+			StringBuilder theirs_string = new StringBuilder( );
+			for ( MergeChunk<Integer, Integer> chunk : merge ) {
+				base_string.append( string( chunk.base( ) ) );
+				ours_string.append( string( chunk.ours( ) ) );
+				theirs_string.append( string( chunk.theirs( ) ) );
+				assertTrue( chunk.changedOurs( ) || chunk.changedTheirs( )
+						|| chunk.base( ).size( ) > 0 );
+				if ( !chunk.changedOurs( ) ) {
+					assertEquals( string( chunk.base( ) ), string( chunk.ours( ) ) );
+				}
+				if ( !chunk.changedTheirs( ) ) {
+					assertEquals( string( chunk.base( ) ),
+							string( chunk.theirs( ) ) );
+				}
+			}
+			assertEquals( string( base ), base_string.toString( ) );
+			assertEquals( string( ours ), ours_string.toString( ) );
+			assertEquals( string( theirs ), theirs_string.toString( ) );
+			String expected = describe( merge );
+			assertEquals( expected, describe( wrapped.diff3( ours, theirs,
+					new BasicEquivalencer<Integer, Integer>( ) {
+					}, parallel ) ) );
+			assertEquals( expected, describe( wrapped.diff3( ours, theirs,
+					new BasicEquivalencer<Integer, Integer>( ), parallel ) ) );
+		}
+		pool.shutdown( );
+	}
+}
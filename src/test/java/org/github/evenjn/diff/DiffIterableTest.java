@@ -0,0 +1,79 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.IntDiffTest.print;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.junit.Test;
+
+public class DiffIterableTest {
+
+	private static class CountingEquivalencer extends
+			BasicEquivalencer<Integer, Integer> {
+
+		private int count = 0;
+
+		@Override
+		public boolean equivalent( Integer front, Integer back ) {
+			count++;
+			return super.equivalent( front, back );
+		}
+	}
+
+	@Test
+	public void testLazy( ) {
+		ArrayList<Integer> front = new ArrayList<>( );
+		ArrayList<Integer> back = new ArrayList<>( );
+		for ( int i = 0; i < 200; i++ ) {
+			front.add( i );
+			back.add( i == 150 ? -1 : i );
+		}
+		CountingEquivalencer equivalencer = new CountingEquivalencer( );
+		Iterable<DiffPair<Integer, Integer>> diff =
+				DiffingTuple.wrap( KnittingTuple.wrap( front ) )
+						.diff( KnittingTuple.wrap( back ), equivalencer );
+		assertEquals( "constructed", 0, equivalencer.count );
+
+		Iterator<DiffPair<Integer, Integer>> iterator = diff.iterator( );
+		for ( int i = 0; i < 150; i++ ) {
+			assertTrue( "prefix", iterator.next( ).hasBoth( ) );
+		}
+		assertEquals( "prefix", 151, equivalencer.count );
+
+		String expected = print( diff );
+		int computed = equivalencer.count;
+		assertEquals( "memoized", expected, print( diff ) );
+		assertEquals( "memoized", computed, equivalencer.count );
+	}
+
+	@Test
+	public void testShift( ) {
+		// The insertion is shifted over the common prefix.
+		Iterable<DiffPair<Integer, Integer>> diff =
+				DiffingTuple.diff( new int[] { 1, 3 }, new int[] { 1, 2, 1, 3 } );
+		assertEquals( "shift", "-/1 -/2 1/1 3/3 ", print( diff ) );
+		assertEquals( "shift", "-/1 -/2 1/1 3/3 ", print( diff ) );
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.IntDiffTest.print;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.yarn.Tuple;
+import org.junit.Test;
+
+public class DiffOptionsTest {
+
+	@Test
+	public void testParallel( ) {
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		DiffOptions parallel = DiffOptions.nu( ).parallel( pool, 8 );
+		Random random = new Random( 2 );
+		for ( int i = 0; i < 100; i++ ) {
+			int[] front = new int[random.nextInt( 400 )];
+			int[] back = new int[random.nextInt( 400 )];
+			ArrayList<Integer> front_boxed = new ArrayList<>( );
+			ArrayList<Integer> back_boxed = new ArrayList<>( );
+			for ( int j = 0; j < front.length; j++ ) {
+				front[j] = random.nextInt( 8 );
+				front_boxed.add( front[j] );
+			}
+			for ( int j = 0; j < back.length; j++ ) {
+				back[j] = random.nextInt( 8 );
+				back_boxed.add( back[j] );
+			}
+			String serial = print( DiffingTuple.diff( front, back ) );
+			assertEquals( "int", serial,
+					print( DiffingTuple.diff( front, back, parallel ) ) );
+			assertEquals( "boxed", serial,
+					print( DiffingTuple.wrap( KnittingTuple.wrap( front_boxed ) )
+							.diff( KnittingTuple.wrap( back_boxed ),
+									new BasicEquivalencer<Integer, Integer>( ) {
+									}, parallel ) ) );
+		}
+		pool.shutdown( );
+	}
+
+	@Test
+	public void testMasks( ) {
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		DiffOptions parallel = DiffOptions.nu( ).parallel( pool, 8 );
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		Random random = new Random( 12 );
+		for ( int i = 0; i < 30; i++ ) {
+			ArrayList<Integer> base = new ArrayList<>( );
+			for ( int j = random.nextInt( 100 ); j > 0; j-- ) {
+				base.add( random.nextInt( 6 ) );
+			}
+			DiffingTuple<Integer> front =
+					DiffingTuple.wrap( KnittingTuple.wrap( base ) );
+			ArrayList<KnittingTuple<Integer>> masks = new ArrayList<>( );
+			int[] counts = new int[base.size( )];
+			for ( int m = random.nextInt( 20 ); m > 0; m-- ) {
+				ArrayList<Integer> mask = new ArrayList<>( );
+				for ( int j = random.nextInt( 100 ); j > 0; j-- ) {
+					mask.add( random.nextInt( 6 ) );
+				}
+				masks.add( KnittingTuple.wrap( mask ) );
+				int j = 0;
+				for ( DiffPair<Integer, Integer> pair : front
+						.diff( KnittingTuple.wrap( mask ) ) ) {
+					if ( pair.hasFront( ) ) {
+						counts[j++] += pair.hasBoth( ) ? 1 : 0;
+					}
+				}
+			}
+			ArrayList<Integer> intersection = new ArrayList<>( );
+			ArrayList<Integer> union = new ArrayList<>( );
+			for ( int j = 0; j < counts.length; j++ ) {
+				if ( counts[j] == masks.size( ) ) {
+					intersection.add( base.get( j ) );
+				}
+				if ( counts[j] > 0 ) {
+					union.add( base.get( j ) );
+				}
+			}
+			assertEquals( "intersection", intersection.toString( ),
+					list( front.longestCommonSubtupleIntersection(
+							KnittingCursor.wrap( masks.iterator( ) ) ) ) );
+			assertEquals( "intersection parallel", intersection.toString( ),
+					list( front.longestCommonSubtupleIntersection(
+							KnittingCursor.wrap( masks.iterator( ) ), equivalencer,
+							parallel ) ) );
+			assertEquals( "union", union.toString( ),
+					list( front.longestCommonSubtupleUnion(
+							KnittingCursor.wrap( masks.iterator( ) ) ) ) );
+			assertEquals( "union parallel", union.toString( ),
+					list( front.longestCommonSubtupleUnion(
+							KnittingCursor.wrap( masks.iterator( ) ),
+							KeyedEquivalencer.<Integer> nu( x -> x ), parallel ) ) );
+		}
+		pool.shutdown( );
+	}
+
+	private static String list( Tuple<Integer> tuple ) {
+		ArrayList<Integer> result = new ArrayList<>( );
+		for ( int i = 0; i < tuple.size( ); i++ ) {
+			result.add( tuple.get( i ) );
+		}
+		return result.toString( );
+	}
+
+	@Test
+	public void testPatience( ) {
+		DiffOptions patience = DiffOptions.nu( ).patience( );
+		// 5 and 6 are unique in both tuples, so they are paired.
+		assertEquals( "anchors", "-/0 -/0 5/5 0/- 0/- 6/6 ",
+				print( DiffingTuple.diff( new int[] { 5, 0, 0, 6 },
+						new int[] { 0, 0, 5, 6 }, patience ) ) );
+
+		check( patience );
+	}
+
+	@Test
+	public void testHistogram( ) {
+		// 5 occurs once, so it is preferred over the more frequent 0.
+		assertEquals( "anchors", "0/- 0/- 5/5 0/0 0/0 -/0 -/0 ",
+				print( DiffingTuple.diff( new int[] { 0, 0, 5, 0, 0 },
+						new int[] { 5, 0, 0, 0, 0 }, DiffOptions.nu( ).histogram( ) ) ) );
+		check( DiffOptions.nu( ).histogram( ) );
+		check( DiffOptions.nu( ).histogram( 1 ) );
+		check( DiffOptions.nu( ).histogram( 3 ) );
+	}
+
+	@Test
+	public void testTimeout( ) {
+		// Cases from diff_match_patch's testDiffHalfMatch.
+		int[] front = "1234567890".chars( ).toArray( );
+		int[] back = "a345678z".chars( ).toArray( );
+		assertEquals( "half match", "[2, 1, 6]", Arrays.toString(
+				Diff.adiff_halfMatch( IntDiff.texts( front, back ), 0, front.length,
+						0, back.length ) ) );
+		assertEquals( "half match swapped", "[1, 2, 6]", Arrays.toString(
+				Diff.adiff_halfMatch( IntDiff.texts( back, front ), 0, back.length,
+						0, front.length ) ) );
+		front = "1234567890".chars( ).toArray( );
+		back = "abcdef".chars( ).toArray( );
+		assertEquals( "no half match", null,
+				Diff.adiff_halfMatch( IntDiff.texts( front, back ), 0, front.length,
+						0, back.length ) );
+		check( DiffOptions.nu( ).timeout( 60000 ) );
+	}
+
+	/**
+	 * Checks that the alignments computed with the argument options are valid.
+	 */
+	private static void check( DiffOptions options ) {
+		Random random = new Random( 3 );
+		for ( int i = 0; i < 200; i++ ) {
+			int[] front = new int[random.nextInt( 100 )];
+			int[] back = new int[random.nextInt( 100 )];
+			for ( int j = 0; j < front.length; j++ ) {
+				front[j] = random.nextInt( 2 + i % 40 ) - 1;
+			}
+			for ( int j = 0; j < back.length; j++ ) {
+				back[j] = random.nextInt( 2 + i % 40 ) - 1;
+			}
+			int f = 0;
+			int b = 0;
+			for ( DiffPair<Integer, Integer> pair : DiffingTuple.diff( front, back,
+					options ) ) {
+				if ( pair.hasBoth( ) ) {
+					assertEquals( "pair", pair.front( ), pair.back( ) );
+				}
+				if ( pair.hasFront( ) ) {
+					assertEquals( "front", front[f++], (int) pair.front( ) );
+				}
+				if ( pair.hasBack( ) ) {
+					assertEquals( "back", back[b++], (int) pair.back( ) );
+				}
+			}
+			assertTrue( "complete", f == front.length && b == back.length );
+		}
+	}
+}
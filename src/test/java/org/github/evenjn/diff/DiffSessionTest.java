@@ -0,0 +1,139 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.fixtures.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.github.evenjn.yarn.Tuple;
+import org.junit.Test;
+
+public class DiffSessionTest {
+
+	private static <K> ArrayList<K> list( Tuple<K> tuple ) {
+		ArrayList<K> result = new ArrayList<>( );
+		for ( int i = 0; i < tuple.size( ); i++ ) {
+			result.add( tuple.get( i ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Checks that the alignment of the session covers both tuples in order, and
+	 * pairs only equal elements.
+	 */
+	private static void check( DiffSession<Integer, Integer> session ) {
+		ArrayList<Integer> front = new ArrayList<>( );
+		ArrayList<Integer> back = new ArrayList<>( );
+		for ( DiffPair<Integer, Integer> pair : session.diff( ) ) {
+			if ( pair.hasBoth( ) ) {
+				assertEquals( pair.front( ), pair.back( ) );
+			}
+			if ( pair.hasFront( ) ) {
+				front.add( pair.front( ) );
+			}
+			if ( pair.hasBack( ) ) {
+				back.add( pair.back( ) );
+			}
+		}
+		assertEquals( list( session.front( ) ), front );
+		assertEquals( list( session.back( ) ), back );
+	}
+
+	private static String print( DiffSession<Integer, Integer> session ) {
+		StringBuilder result = new StringBuilder( );
+		for ( DiffPair<Integer, Integer> pair : session.diff( ) ) {
+			result.append( pair.hasBoth( ) ? "=" : pair.hasFront( ) ? "-" : "+" );
+		}
+		return result.toString( );
+	}
+
+	@Test
+	public void testSplice( ) {
+		ArrayList<Integer> document = new ArrayList<>( );
+		for ( int i = 0; i < 20; i++ ) {
+			document.add( i );
+		}
+		DiffSession<Integer, Integer> session = DiffSession.nu(
+				KnittingTuple.wrap( document ), KnittingTuple.wrap( document ) );
+		assertEquals( "====================", print( session ) );
+		session.replaceFront( 5, 6, KnittingTuple.on( 50, 51 ) );
+		assertEquals( "=====--+==============", print( session ) );
+		session.replaceBack( 5, 6, KnittingTuple.on( 50, 51 ) );
+		assertEquals( "=====================", print( session ) );
+		session.replaceFront( 10, 10, KnittingTuple.on( 99 ) );
+		assertEquals( "==========-===========", print( session ) );
+		session.replaceFront( 10, 11, KnittingTuple.on( ) );
+		assertEquals( "=====================", print( session ) );
+		check( session );
+	}
+
+	@Test
+	public void testRandom( ) {
+		Random random = new Random( 7 );
+		for ( int i = 0; i < 20; i++ ) {
+			DiffSession<Integer, Integer> session = DiffSession.nu(
+					random( random, random.nextInt( 200 ) ),
+					random( random, random.nextInt( 200 ) ),
+					new BasicEquivalencer<Integer, Integer>( ) {
+					}, DiffOptions.nu( ) );
+			check( session );
+			for ( int e = 0; e < 50; e++ ) {
+				boolean front = random.nextBoolean( );
+				int size = front ? session.front( ).size( ) : session.back( ).size( );
+				int start = random.nextInt( size + 1 );
+				int end = start + random.nextInt( Math.min( 4, size - start ) + 1 );
+				KnittingTuple<Integer> replacement = random( random,
+						random.nextInt( 4 ) );
+				if ( front ) {
+					session.replaceFront( start, end, replacement );
+				}
+				else {
+					session.replaceBack( start, end, replacement );
+				}
+				check( session );
+			}
+		}
+	}
+
+	@Test
+	public void testArguments( ) {
+		DiffSession<Integer, Integer> session =
+				DiffSession.nu( KnittingTuple.on( 1, 2 ), KnittingTuple.on( 1 ) );
+		int failures = 0;
+		try {
+			session.replaceFront( 1, 3, KnittingTuple.on( ) );
+		}
+		catch ( IllegalArgumentException e ) {
+			failures++;
+		}
+		try {
+			session.replaceBack( 1, 0, KnittingTuple.on( ) );
+		}
+		catch ( IllegalArgumentException e ) {
+			failures++;
+		}
+		assertEquals( 2, failures );
+		assertEquals( "=-", print( session ) );
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.junit.Test;
+
+public class DistanceMatrixTest {
+
+	@Test
+	public void test( ) {
+		Random random = new Random( 9 );
+		ArrayList<KnittingTuple<Integer>> tuples = new ArrayList<>( );
+		// Enough tuples for three tiles on each side.
+		for ( int i = 0; i < 150; i++ ) {
+			ArrayList<Integer> tuple = new ArrayList<>( );
+			for ( int j = 3 + random.nextInt( 40 ); j > 0; j-- ) {
+				tuple.add( random.nextInt( 6 ) );
+			}
+			tuples.add( KnittingTuple.wrap( tuple ) );
+		}
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		DiffOptions parallel = DiffOptions.nu( ).parallel( pool, 1000 );
+
+		DistanceMatrix levenshtein =
+				DistanceMatrix.levenshtein( KnittingCursor.wrap( tuples.iterator( ) ) );
+		DistanceMatrix levenshtein_bounded = DistanceMatrix.levenshtein(
+				KnittingCursor.wrap( tuples.iterator( ) ), equivalencer, 12, parallel );
+		DistanceMatrix lcs =
+				DistanceMatrix.lcs( KnittingCursor.wrap( tuples.iterator( ) ) );
+		DistanceMatrix lcs_bounded = DistanceMatrix.lcs(
+				KnittingCursor.wrap( tuples.iterator( ) ),
+				new BasicEquivalencer<Integer, Integer>( ), 20, parallel );
+		assertEquals( "size", 150, levenshtein.size( ) );
+		for ( int i = 0; i < tuples.size( ); i++ ) {
+			DiffingTuple<Integer> front = DiffingTuple.wrap( tuples.get( i ) );
+			for ( int j = 0; j < tuples.size( ); j++ ) {
+				int expected = front.distance_levenshtein( tuples.get( j ) );
+				assertEquals( "levenshtein", expected, levenshtein.get( i, j ) );
+				assertEquals( "levenshtein bounded", expected <= 12 ? expected : -1,
+						levenshtein_bounded.get( i, j ) );
+				expected = front.distance_lcs( tuples.get( j ) );
+				assertEquals( "lcs", expected, lcs.get( i, j ) );
+				assertEquals( "lcs bounded", expected <= 20 ? expected : -1,
+						lcs_bounded.get( i, j ) );
+			}
+		}
+		pool.shutdown( );
+	}
+}
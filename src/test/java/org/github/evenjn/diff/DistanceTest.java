@@ -17,9 +17,17 @@
  */
 package org.github.evenjn.diff;
 
+import static org.github.evenjn.diff.fixtures.random;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.github.evenjn.knit.KnittingCursor;
 import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
 import org.junit.Test;
 
 public class DistanceTest {
@@ -43,127 +51,290 @@ public class DistanceTest {
 		assertEquals( "distance", 4,
 				t1.distance_levenshtein( KnittingTuple.on( 4, 9, 9, 9 ) ) );
 
-		/*
-		DiffingTuple<Integer> t2 = DiffingTuple.wrap( KnittingTuple.on( 1, 2, 3, 4, 5 ) );
-		assertEquals( "distance", 1,
-				t1.distanceAll( KnittingTuple.on( KnittingTuple.on( 1, 2, 3, 5 ) ) ) );
-
-		assertEquals( "distance", 1,
-				t1.distanceAll( KnittingTuple.on( KnittingTuple.on( 1, 2, 3 ) ) ) );
-		
-		
-		
-
-		assertEquals( "distance", 0,
-				t1.distanceAll( KnittingTuple.on(KnittingTuple.on( 1, 2, 3, 4 ) ) ));
-		assertEquals( "distance", 1,
-				t1.distanceAll( KnittingTuple.on(KnittingTuple.on( 1, 2, 3, 4, 5 ) ) ));
-		assertEquals( "distance", 2,
-				t1.distanceAll( KnittingTuple.on(KnittingTuple.on( 1, 2, 3, 4, 5, 5 ) ) ));
-		assertEquals( "distance", 3,
-				t1.distanceAll( KnittingTuple.on(KnittingTuple.on( 0, 2, 3, 4, 5, 5 ) ) ));
-		assertEquals( "distance", 4,
-				t1.distanceAll( KnittingTuple.on(KnittingTuple.on( 0, 2, 3, 1, 1, 4, 5 ) ) ));
-		assertEquals( "distance", 2,
-				t1.distanceAll( KnittingTuple.on(KnittingTuple.on( 2, 1, 3, 4 ) ) ));
-		
-		assertEquals( "distance", 4,
-				t1.distanceAll( KnittingTuple.on(KnittingTuple.on( 4, 9, 9, 9 ) ) ));
-		
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
+		DiffingTuple<Integer> t2 =
+				DiffingTuple.wrap( KnittingTuple.on( 1, 2, 3, 4, 5 ) );
+		check( t1, new int[] { 1 }, new int[] { 2 },
+				KnittingTuple.on( 1, 2, 3, 5 ) );
+		check( t1, new int[] { 1 }, new int[] { 1 },
+				KnittingTuple.on( 1, 2, 3 ) );
+		check( t1, new int[] { 0 }, new int[] { 0 },
+				KnittingTuple.on( 1, 2, 3, 4 ) );
+		check( t1, new int[] { 1 }, new int[] { 1 },
+				KnittingTuple.on( 1, 2, 3, 4, 5 ) );
+		check( t1, new int[] { 2 }, new int[] { 2 },
+				KnittingTuple.on( 1, 2, 3, 4, 5, 5 ) );
+		check( t1, new int[] { 3 }, new int[] { 4 },
+				KnittingTuple.on( 0, 2, 3, 4, 5, 5 ) );
+		check( t1, new int[] { 4 }, new int[] { 5 },
+				KnittingTuple.on( 0, 2, 3, 1, 1, 4, 5 ) );
+		check( t1, new int[] { 2 }, new int[] { 2 },
+				KnittingTuple.on( 2, 1, 3, 4 ) );
+		check( t1, new int[] { 4 }, new int[] { 6 },
+				KnittingTuple.on( 4, 9, 9, 9 ) );
+		check( t1, new int[] { 1, 1 }, new int[] { 1, 1 },
 				KnittingTuple.on( 1, 2, 3 ),
-				KnittingTuple.on( 1, 2, 3 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 3 ) );
+		check( t1, new int[] { 1, 1 }, new int[] { 1, 1 },
 				KnittingTuple.on( 1, 2, 3 ),
-				KnittingTuple.on( 1, 2, 4 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 4 ) );
+		check( t1, new int[] { 1, 1 }, new int[] { 1, 1 },
 				KnittingTuple.on( 1, 2, 4 ),
-				KnittingTuple.on( 1, 2, 4 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 4 ) );
+		check( t1, new int[] { 2, 1 }, new int[] { 2, 1 },
 				KnittingTuple.on( 1, 2 ),
-				KnittingTuple.on( 1, 2, 4 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
-				KnittingTuple.on( 2, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 4 ) );
+		check( t1, new int[] { 1 }, new int[] { 1 },
+				KnittingTuple.on( 2, 3, 4 ) );
+		check( t1, new int[] { 1, 1 }, new int[] { 1, 1 },
 				KnittingTuple.on( 2, 3, 4 ),
-				KnittingTuple.on( 2, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
-				KnittingTuple.on( 1, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 0, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 2, 3, 4 ) );
+		check( t1, new int[] { 1 }, new int[] { 1 },
+				KnittingTuple.on( 1, 3, 4 ) );
+		check( t1, new int[] { 0, 1 }, new int[] { 0, 1 },
 				KnittingTuple.on( 1, 2, 3, 4 ),
-				KnittingTuple.on( 2, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 0, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 2, 3, 4 ) );
+		check( t1, new int[] { 0, 1 }, new int[] { 0, 1 },
 				KnittingTuple.on( 1, 2, 3, 4 ),
-				KnittingTuple.on( 1, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 0, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 3, 4 ) );
+		check( t1, new int[] { 0, 1 }, new int[] { 0, 1 },
 				KnittingTuple.on( 1, 2, 3, 4 ),
-				KnittingTuple.on( 1, 2, 3 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
-				KnittingTuple.on( 1, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 0, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 3 ) );
+		check( t1, new int[] { 1 }, new int[] { 1 },
+				KnittingTuple.on( 1, 3, 4 ) );
+		check( t1, new int[] { 0, 2 }, new int[] { 0, 2 },
 				KnittingTuple.on( 1, 2, 3, 4 ),
-				KnittingTuple.on( 2, 4 ) ) ) );
-
-		assertEquals( "distance", 0, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 2, 4 ) );
+		check( t1, new int[] { 0, 2 }, new int[] { 0, 2 },
 				KnittingTuple.on( 1, 2, 3, 4 ),
-				KnittingTuple.on( 1, 4 ) ) ) );
-
-		assertEquals( "distance", 0, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 4 ) );
+		check( t1, new int[] { 0, 2 }, new int[] { 0, 2 },
 				KnittingTuple.on( 1, 2, 3, 4 ),
-				KnittingTuple.on( 1, 2 ) ) ) );
-
-		assertEquals( "distance", 1, t1.distanceAll( KnittingTuple.on(
-				KnittingTuple.on( 1, 2, 3, 4, 5 ) ) ) );
-
-		assertEquals( "distance", 2, t1.distanceAll( KnittingTuple.on(
-				KnittingTuple.on( 1, 2, 1, 2, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 2, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2 ) );
+		check( t1, new int[] { 1 }, new int[] { 1 },
+				KnittingTuple.on( 1, 2, 3, 4, 5 ) );
+		check( t1, new int[] { 2 }, new int[] { 2 },
+				KnittingTuple.on( 1, 2, 1, 2, 3, 4 ) );
+		check( t1, new int[] { 2, 2 }, new int[] { 2, 2 },
 				KnittingTuple.on( 1, 2, 3, 4, 3, 4 ),
-				KnittingTuple.on( 1, 2, 1, 2, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 2, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 1, 2, 3, 4 ) );
+		check( t1, new int[] { 2, 2 }, new int[] { 2, 2 },
 				KnittingTuple.on( 3, 4 ),
-				KnittingTuple.on( 1, 2, 1, 2, 3, 4 ) ) ) );
-
-		assertEquals( "distance", 2, t1.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 1, 2, 3, 4 ) );
+		check( t1, new int[] { 2, 2 }, new int[] { 2, 2 },
 				KnittingTuple.on( 3, 4 ),
-				KnittingTuple.on( 1, 2 ) ) ) );
-
-		assertEquals( "distance", 0, t2.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2 ) );
+		check( t2, new int[] { 2, 2 }, new int[] { 2, 2 },
 				KnittingTuple.on( 3, 4, 5 ),
-				KnittingTuple.on( 1, 2, 3 ) ) ) );
-
-		assertEquals( "distance", 1, t2.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 3 ) );
+		check( t2, new int[] { 1, 1 }, new int[] { 2, 2 },
 				KnittingTuple.on( 1, 2, 3, 7, 5 ),
-				KnittingTuple.on( 1, 2, 3, 6, 5 ) ) ) );
-
-		assertEquals( "distance", 2, t2.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 2, 3, 6, 5 ) );
+		check( t2, new int[] { 2, 2 }, new int[] { 4, 4 },
 				KnittingTuple.on( 1, 0, 3, 7, 5 ),
-				KnittingTuple.on( 1, 0, 3, 6, 5 ) ) ) );
-		assertEquals( "distance", 3, t2.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 0, 3, 6, 5 ) );
+		check( t2, new int[] { 3, 3 }, new int[] { 6, 6 },
 				KnittingTuple.on( 1, 0, 9, 7, 5 ),
-				KnittingTuple.on( 1, 0, 8, 6, 5 ) ) ) );
-		assertEquals( "distance", 3, t2.distanceAll( KnittingTuple.on(
+				KnittingTuple.on( 1, 0, 8, 6, 5 ) );
+		check( t2, new int[] { 3, 3 }, new int[] { 6, 4 },
 				KnittingTuple.on( 1, 0, 9, 7, 5 ),
-				KnittingTuple.on( 1, 3, 8, 6, 5 ) ) ) );
-		assertEquals( "distance", 1, t2.distanceAll( KnittingTuple.on(
-				KnittingTuple.on( 1, 2, 3, 4, 4, 5 ) ) ) );
-		assertEquals( "distance", 2, t2.distanceAll( KnittingTuple.on(
-				KnittingTuple.on( 1, 2, 3, 3, 4, 4, 5 ) ) ) );
-				*/
+				KnittingTuple.on( 1, 3, 8, 6, 5 ) );
+		check( t2, new int[] { 1 }, new int[] { 1 },
+				KnittingTuple.on( 1, 2, 3, 4, 4, 5 ) );
+		check( t2, new int[] { 2 }, new int[] { 2 },
+				KnittingTuple.on( 1, 2, 3, 3, 4, 4, 5 ) );
+	}
+
+	@SafeVarargs
+	private static void check( DiffingTuple<Integer> tuple, int[] levenshtein,
+			int[] lcs, KnittingTuple<Integer>... others ) {
+		assertEquals( "distance", Arrays.toString( levenshtein ),
+				Arrays.toString( tuple.distance_levenshtein_all(
+						KnittingCursor.wrap( Arrays.asList( others ).iterator( ) ) ) ) );
+		assertEquals( "distance", Arrays.toString( lcs ),
+				Arrays.toString( tuple.distance_lcs_all(
+						KnittingCursor.wrap( Arrays.asList( others ).iterator( ) ) ) ) );
+	}
+
+	@Test
+	public void testLevenshtein( ) {
+		assertEquals( "kitten", 3,
+				DiffingTuple.wrap( KnittingTuple.on( "kitten".split( "" ) ) )
+						.distance_levenshtein( KnittingTuple.on( "sitting".split( "" ) ) ) );
+
+		// a subclass is not recognized as basic, so the distance is not computed
+		// on symbols.
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		Random random = new Random( 4 );
+		for ( int i = 0; i < 300; i++ ) {
+			// Sizes span several blocks of 64 elements.
+			DiffingTuple<Integer> front = DiffingTuple
+					.wrap( random( random, random.nextInt( 200 ), -1, 1 + i % 30 ) );
+			KnittingTuple<Integer> back =
+					random( random, random.nextInt( 200 ), -1, 1 + i % 30 );
+			int expected = front.distance_levenshtein( back, equivalencer );
+			assertEquals( "symbols", expected, front.distance_levenshtein( back ) );
+			assertEquals( "keyed", expected, front.distance_levenshtein( back,
+					KeyedEquivalencer.<Integer> nu( x -> x ) ) );
+		}
+	}
+
+	/**
+	 * Checks that the argument alignment collects the two tuples, and returns
+	 * its cost.
+	 */
+	private static int cost( Iterable<DiffPair<Integer, Integer>> alignment,
+			KnittingTuple<Integer> front, KnittingTuple<Integer> back ) {
+		ArrayList<Integer> fronts = new ArrayList<>( );
+		ArrayList<Integer> backs = new ArrayList<>( );
+		int cost = 0;
+		for ( DiffPair<Integer, Integer> pair : alignment ) {
+			if ( pair.hasFront( ) ) {
+				fronts.add( pair.front( ) );
+			}
+			if ( pair.hasBack( ) ) {
+				backs.add( pair.back( ) );
+			}
+			if ( !pair.hasBoth( ) || !pair.front( ).equals( pair.back( ) ) ) {
+				cost++;
+			}
+		}
+		assertEquals( "front", front.size( ), fronts.size( ) );
+		for ( int i = 0; i < front.size( ); i++ ) {
+			assertEquals( "front", front.get( i ), fronts.get( i ) );
+		}
+		assertEquals( "back", back.size( ), backs.size( ) );
+		for ( int i = 0; i < back.size( ); i++ ) {
+			assertEquals( "back", back.get( i ), backs.get( i ) );
+		}
+		return cost;
 	}
 
+	@Test
+	public void testAlignment( ) {
+		StringBuilder sb = new StringBuilder( );
+		for ( DiffPair<String, String> pair : DiffingTuple
+				.wrap( KnittingTuple.on( "kitten".split( "" ) ) )
+				.diff_levenshtein( KnittingTuple.on( "sitting".split( "" ) ) ) ) {
+			sb.append( pair.hasFront( ) ? pair.front( ) : "-" );
+			sb.append( pair.hasBack( ) ? pair.back( ) : "-" );
+			sb.append( " " );
+		}
+		assertEquals( "kitten", "ks ii tt tt ei nn -g ", sb.toString( ) );
+
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		Random random = new Random( 10 );
+		for ( int i = 0; i < 300; i++ ) {
+			KnittingTuple<Integer> front =
+					random( random, random.nextInt( 200 ), -1, 1 + i % 30 );
+			KnittingTuple<Integer> back =
+					random( random, random.nextInt( 200 ), -1, 1 + i % 30 );
+			DiffingTuple<Integer> diffing = DiffingTuple.wrap( front );
+			int expected = diffing.distance_levenshtein( back );
+			assertEquals( "symbols", expected,
+					cost( diffing.diff_levenshtein( back ), front, back ) );
+			assertEquals( "generic", expected, cost(
+					diffing.diff_levenshtein( back, equivalencer ), front, back ) );
+		}
+	}
+
+	@Test
+	public void testBounded( ) {
+		DiffingTuple<String> kitten =
+				DiffingTuple.wrap( KnittingTuple.on( "kitten".split( "" ) ) );
+		KnittingTuple<String> sitting = KnittingTuple.on( "sitting".split( "" ) );
+		assertEquals( "levenshtein", 3, kitten.distance_levenshtein( sitting, 3 ) );
+		assertEquals( "levenshtein", -1, kitten.distance_levenshtein( sitting, 2 ) );
+		assertEquals( "lcs", 5, kitten.distance_lcs( sitting ) );
+		assertEquals( "lcs", 5, kitten.distance_lcs( sitting, 5 ) );
+		assertEquals( "lcs", -1, kitten.distance_lcs( sitting, 4 ) );
+
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		Random random = new Random( 5 );
+		for ( int i = 0; i < 300; i++ ) {
+			DiffingTuple<Integer> front = DiffingTuple
+					.wrap( random( random, random.nextInt( 200 ), -1, 1 + i % 30 ) );
+			KnittingTuple<Integer> back =
+					random( random, random.nextInt( 200 ), -1, 1 + i % 30 );
+			int levenshtein = front.distance_levenshtein( back, equivalencer );
+			int lcs = front.distance_lcs( back, equivalencer );
+			for ( int max : new int[] { 0, 3, random.nextInt( 250 ) } ) {
+				assertEquals( "levenshtein", levenshtein <= max ? levenshtein : -1,
+						front.distance_levenshtein( back, equivalencer, max ) );
+				assertEquals( "levenshtein symbols", levenshtein <= max ? levenshtein
+						: -1, front.distance_levenshtein( back, max ) );
+				assertEquals( "lcs", lcs <= max ? lcs : -1,
+						front.distance_lcs( back, equivalencer, max ) );
+				assertEquals( "lcs symbols", lcs <= max ? lcs : -1,
+						front.distance_lcs( back, max ) );
+			}
+		}
+	}
+
+	@Test
+	public void testLcs( ) {
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		Random random = new Random( 6 );
+		for ( int i = 0; i < 300; i++ ) {
+			DiffingTuple<Integer> front = DiffingTuple
+					.wrap( random( random, random.nextInt( 200 ), -1, 1 + i % 30 ) );
+			KnittingTuple<Integer> back =
+					random( random, random.nextInt( 200 ), -1, 1 + i % 30 );
+			int expected = front.size( ) + back.size( )
+					- 2 * front.longestCommonSubtuple( back, equivalencer ).size( );
+			assertEquals( "generic", expected,
+					front.distance_lcs( back, equivalencer ) );
+			assertEquals( "symbols", expected, front.distance_lcs( back ) );
+		}
+	}
+
+	@Test
+	public void testAll( ) {
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		DiffOptions parallel = DiffOptions.nu( ).parallel( pool, 100 );
+		Random random = new Random( 7 );
+		for ( int i = 0; i < 20; i++ ) {
+			DiffingTuple<Integer> front = DiffingTuple
+					.wrap( random( random, random.nextInt( 200 ), -1, 1 + i % 30 ) );
+			ArrayList<KnittingTuple<Integer>> others = new ArrayList<>( );
+			int[] levenshtein = new int[random.nextInt( 50 )];
+			int[] lcs = new int[levenshtein.length];
+			for ( int t = 0; t < levenshtein.length; t++ ) {
+				KnittingTuple<Integer> other =
+						random( random, random.nextInt( 200 ), -1, 1 + ( i + t ) % 30 );
+				others.add( other );
+				levenshtein[t] = front.distance_levenshtein( other, equivalencer );
+				lcs[t] = front.distance_lcs( other, equivalencer );
+			}
+			assertEquals( "levenshtein", Arrays.toString( levenshtein ),
+					Arrays.toString( front.distance_levenshtein_all(
+							KnittingCursor.wrap( others.iterator( ) ) ) ) );
+			assertEquals( "levenshtein generic", Arrays.toString( levenshtein ),
+					Arrays.toString( front.distance_levenshtein_all(
+							KnittingCursor.wrap( others.iterator( ) ), equivalencer,
+							parallel ) ) );
+			assertEquals( "levenshtein parallel", Arrays.toString( levenshtein ),
+					Arrays.toString( front.distance_levenshtein_all(
+							KnittingCursor.wrap( others.iterator( ) ),
+							KeyedEquivalencer.<Integer> nu( x -> x ), parallel ) ) );
+			assertEquals( "lcs", Arrays.toString( lcs ),
+					Arrays.toString( front.distance_lcs_all(
+							KnittingCursor.wrap( others.iterator( ) ) ) ) );
+			assertEquals( "lcs generic", Arrays.toString( lcs ),
+					Arrays.toString( front.distance_lcs_all(
+							KnittingCursor.wrap( others.iterator( ) ), equivalencer,
+							parallel ) ) );
+		}
+		pool.shutdown( );
+	}
 }
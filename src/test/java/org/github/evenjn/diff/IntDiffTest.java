@@ -0,0 +1,110 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.junit.Test;
+
+public class IntDiffTest {
+
+	private static int[] random( Random random, int size, int alphabet ) {
+		int[] result = new int[size];
+		for ( int i = 0; i < size; i++ ) {
+			result[i] = random.nextInt( alphabet );
+		}
+		return result;
+	}
+
+	private static KnittingTuple<Integer> boxed( int[] array ) {
+		ArrayList<Integer> result = new ArrayList<>( );
+		for ( int i : array ) {
+			result.add( i );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	static String print( Iterable<? extends DiffPair<?, ?>> diff ) {
+		StringBuilder sb = new StringBuilder( );
+		for ( DiffPair<?, ?> pair : diff ) {
+			sb.append( pair.hasFront( ) ? pair.front( ) : "-" );
+			sb.append( "/" );
+			sb.append( pair.hasBack( ) ? pair.back( ) : "-" );
+			sb.append( " " );
+		}
+		return sb.toString( );
+	}
+
+	@Test
+	public void test( ) {
+		Random random = new Random( 1 );
+		for ( int i = 0; i < 500; i++ ) {
+			int[] front = random( random, random.nextInt( 40 ), 1 + i % 6 );
+			int[] back = random( random, random.nextInt( 40 ), 1 + i % 6 );
+			// a subclass is not recognized as basic, so elements are not interned.
+			BasicEquivalencer<Integer, Integer> equivalencer =
+					new BasicEquivalencer<Integer, Integer>( ) {
+					};
+			String expected = print(
+					DiffingTuple.wrap( boxed( front ) ).diff( boxed( back ), equivalencer ) );
+			assertEquals( "primitive", expected,
+					print( DiffingTuple.diff( front, back ) ) );
+			assertEquals( "interned", expected,
+					print( DiffingTuple.wrap( boxed( front ) ).diff( boxed( back ) ) ) );
+		}
+	}
+
+	@Test
+	public void testKeyed( ) {
+		BasicEquivalencer<String, String> equivalencer =
+				new BasicEquivalencer<String, String>( ) {
+
+					@Override
+					public boolean equivalent( String front, String back ) {
+						return front.equalsIgnoreCase( back );
+					}
+				};
+		DiffingTuple<String> front =
+				DiffingTuple.wrap( KnittingTuple.on( "a", "B", "c", "D", "e" ) );
+		KnittingTuple<String> back = KnittingTuple.on( "A", "x", "C", "d", "y" );
+		assertEquals( "keyed",
+				print( front.diff( back, equivalencer ) ),
+				print( front.diff( back,
+						KeyedEquivalencer.<String> nu( String::toLowerCase ) ) ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullFront( ) {
+		DiffingTuple.diff( null, new int[] { 1 } );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullBack( ) {
+		DiffingTuple.diff( new int[] { 1 }, null );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullOptions( ) {
+		DiffingTuple.diff( new int[] { 1 }, new int[] { 1 }, null );
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.lang.BasicEquivalencer;
+import org.junit.Test;
+
+public class MultipleAlignmentTest {
+
+	/**
+	 * Prints the alignment one row per line, with a dash for each gap.
+	 */
+	private static String print( MultipleAlignment<?> alignment ) {
+		StringBuilder sb = new StringBuilder( );
+		for ( int r = 0; r < alignment.rows( ); r++ ) {
+			for ( int c = 0; c < alignment.columns( ); c++ ) {
+				sb.append( alignment.has( r, c ) ? alignment.get( r, c ) : "-" );
+			}
+			sb.append( "\n" );
+		}
+		return sb.toString( );
+	}
+
+	/**
+	 * Checks that each row is placed in increasing columns, and that each
+	 * column holds an element.
+	 */
+	private static void check( MultipleAlignment<Integer> alignment ) {
+		boolean[] used = new boolean[alignment.columns( )];
+		for ( int r = 0; r < alignment.rows( ); r++ ) {
+			int previous = -1;
+			for ( int i = 0; i < alignment.tuple( r ).size( ); i++ ) {
+				int column = alignment.column( r, i );
+				assertTrue( "increasing", column > previous );
+				assertEquals( "element", alignment.tuple( r ).get( i ),
+						alignment.get( r, column ) );
+				used[column] = true;
+				previous = column;
+			}
+		}
+		for ( boolean u : used ) {
+			assertTrue( "used", u );
+		}
+	}
+
+	@Test
+	public void testSmall( ) {
+		ArrayList<KnittingTuple<String>> tuples = new ArrayList<>( );
+		for ( String text : new String[] { "abcd", "acd", "abd", "bcd", "xabcd" } ) {
+			tuples.add( KnittingTuple.on( text.split( "" ) ) );
+		}
+		assertEquals( "-abcd\n-a-cd\n-ab-d\n--bcd\nxabcd\n",
+				print( MultipleAlignment
+						.progressive( KnittingCursor.wrap( tuples.iterator( ) ) ) ) );
+	}
+
+	@Test
+	public void testRandom( ) {
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		DiffOptions parallel = DiffOptions.nu( ).parallel( pool, 16 );
+		BasicEquivalencer<Integer, Integer> equivalencer =
+				new BasicEquivalencer<Integer, Integer>( ) {
+				};
+		Random random = new Random( 14 );
+		for ( int i = 0; i < 10; i++ ) {
+			// Variants of a template.
+			ArrayList<Integer> template = new ArrayList<>( );
+			for ( int j = 0; j < 30; j++ ) {
+				template.add( random.nextInt( 10 ) );
+			}
+			ArrayList<KnittingTuple<Integer>> tuples = new ArrayList<>( );
+			for ( int t = random.nextInt( 60 ); t > 0; t-- ) {
+				ArrayList<Integer> variant = new ArrayList<>( );
+				for ( Integer element : template ) {
+					if ( random.nextInt( 10 ) > 0 ) {
+						variant.add( element );
+					}
+					if ( random.nextInt( 10 ) == 0 ) {
+						variant.add( random.nextInt( 10 ) );
+					}
+				}
+				tuples.add( KnittingTuple.wrap( variant ) );
+			}
+			MultipleAlignment<Integer> serial = MultipleAlignment
+					.progressive( KnittingCursor.wrap( tuples.iterator( ) ) );
+			check( serial );
+			assertEquals( "rows", tuples.size( ), serial.rows( ) );
+			assertEquals( "parallel", print( serial ),
+					print( MultipleAlignment.progressive(
+							KnittingCursor.wrap( tuples.iterator( ) ),
+							KeyedEquivalencer.<Integer> nu( x -> x ), parallel ) ) );
+			MultipleAlignment<Integer> generic = MultipleAlignment.progressive(
+					KnittingCursor.wrap( tuples.iterator( ) ), equivalencer, parallel );
+			check( generic );
+			assertEquals( "generic", tuples.size( ), generic.rows( ) );
+		}
+		pool.shutdown( );
+	}
+}
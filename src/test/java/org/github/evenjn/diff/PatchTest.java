@@ -0,0 +1,183 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.fixtures.chars;
+import static org.github.evenjn.diff.fixtures.string;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.yarn.Tuple;
+import org.junit.Test;
+
+public class PatchTest {
+
+	private static final DeltaSerializer<Character> characters =
+			new DeltaSerializer<Character>( ) {
+
+				@Override
+				public void write( Character element, DataOutput output )
+						throws IOException {
+					output.writeChar( element );
+				}
+
+				@Override
+				public Character read( DataInput input )
+						throws IOException {
+					return input.readChar( );
+				}
+			};
+
+	private static String apply( String front, String back, String target ) {
+		return string(
+				Patch.make( chars( front ), chars( back ) ).apply( chars( target ) ) );
+	}
+
+	@Test
+	public void testHunks( ) {
+		String alphabet = "abcdefghijklmnopqrstuvwxyz";
+		Patch<Character> patch = Patch.make( chars( alphabet ),
+				chars( "aBcdefghijklmnopqrstuvwxYz" ) );
+		assertEquals( 2, patch.hunks( ) );
+		assertEquals( 0, patch.start( 0 ) );
+		assertEquals( "abcdef", string( patch.front( 0 ) ) );
+		assertEquals( "aBcdef", string( patch.back( 0 ) ) );
+		assertEquals( 20, patch.start( 1 ) );
+		assertEquals( "uvwxyz", string( patch.front( 1 ) ) );
+		assertEquals( 1, Patch.make( chars( alphabet ),
+				chars( "aBcdefghijKlmnopqrstuvwxyz" ) ).hunks( ) );
+		assertEquals( 0, Patch.make( chars( alphabet ), chars( alphabet ) )
+				.hunks( ) );
+	}
+
+	@Test
+	public void testApply( ) {
+		String front = "The quick brown fox jumps over the lazy dog.";
+		String back = "That quick brown fox jumped over a lazy dog.";
+		assertEquals( back, apply( front, back, front ) );
+		// The target has drifted.
+		assertEquals( ">> " + back, apply( front, back, ">> " + front ) );
+		// The context of a hunk has changed.
+		assertEquals( "That quick red fox jumped over a lazy dog.",
+				apply( front, back, "The quick red fox jumps over the lazy dog." ) );
+		assertEquals( "xyz", apply( "", "xyz", "" ) );
+		assertEquals( "", apply( "xyz", "", "xyz" ) );
+	}
+
+	@Test
+	public void testStream( )
+			throws IOException {
+		String front = "The quick brown fox jumps over the lazy dog.";
+		String back = "That quick brown fox jumped over a lazy dog.";
+		ByteArrayOutputStream stream = new ByteArrayOutputStream( );
+		Patch.make( chars( front ), chars( back ) ).write( characters, stream );
+		Patch.make( chars( "xyz" ), chars( "" ) ).write( characters, stream );
+		ByteArrayInputStream input =
+				new ByteArrayInputStream( stream.toByteArray( ) );
+		Patch<Character> patch = Patch.read( characters, input );
+		assertEquals( 2, patch.hunks( ) );
+		assertEquals( back, string( patch.apply( chars( front ) ) ) );
+		assertEquals( ">> " + back,
+				string( patch.apply( chars( ">> " + front ) ) ) );
+		assertEquals( "", string( Patch.read( characters, input )
+				.apply( chars( "xyz" ) ) ) );
+		assertEquals( -1, input.read( ) );
+	}
+
+	@Test
+	public void testLong( ) {
+		ArrayList<Integer> front = new ArrayList<>( );
+		for ( int i = 0; i < 1000; i++ ) {
+			front.add( i );
+		}
+		ArrayList<Integer> back = new ArrayList<>( front );
+		for ( int i = 400; i < 600; i++ ) {
+			back.set( i, -i );
+		}
+		Patch<Integer> patch =
+				Patch.make( KnittingTuple.wrap( front ), KnittingTuple.wrap( back ) );
+		assertEquals( 1, patch.hunks( ) );
+		// The target has drifted, and the context of the hunk has changed.
+		ArrayList<Integer> target = new ArrayList<>( front );
+		ArrayList<Integer> expected = new ArrayList<>( back );
+		target.set( 602, 9999 );
+		expected.set( 602, 9999 );
+		for ( int j = 30; j > 0; j-- ) {
+			target.add( 0, -j );
+			expected.add( 0, -j );
+		}
+		assertEquals( expected.toString( ),
+				list( patch.apply( KnittingTuple.wrap( target ) ) ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissing( ) {
+		apply( "The quick brown fox", "The slow brown fox",
+				"Lorem ipsum dolor sit amet" );
+	}
+
+	@Test
+	public void testRandom( ) {
+		Random random = new Random( 3 );
+		for ( int i = 0; i < 100; i++ ) {
+			ArrayList<Integer> front = new ArrayList<>( );
+			for ( int j = random.nextInt( 300 ); j > 0; j-- ) {
+				front.add( random.nextInt( 20 ) );
+			}
+			ArrayList<Integer> back = new ArrayList<>( );
+			for ( Integer element : front ) {
+				int dice = random.nextInt( 20 );
+				if ( dice == 0 ) {
+					back.add( random.nextInt( 20 ) );
+				}
+				if ( dice != 1 ) {
+					back.add( element );
+				}
+			}
+			Patch<Integer> patch =
+					Patch.make( KnittingTuple.wrap( front ), KnittingTuple.wrap( back ) );
+			assertEquals( back.toString( ),
+					list( patch.apply( KnittingTuple.wrap( front ) ) ) );
+			// The target has drifted.
+			ArrayList<Integer> target = new ArrayList<>( front );
+			ArrayList<Integer> expected = new ArrayList<>( back );
+			for ( int j = random.nextInt( 50 ); j > 0; j-- ) {
+				target.add( 0, -j );
+				expected.add( 0, -j );
+			}
+			assertEquals( expected.toString( ),
+					list( patch.apply( KnittingTuple.wrap( target ) ) ) );
+		}
+	}
+
+	private static String list( Tuple<Integer> tuple ) {
+		ArrayList<Integer> result = new ArrayList<>( );
+		for ( int i = 0; i < tuple.size( ); i++ ) {
+			result.add( tuple.get( i ) );
+		}
+		return result.toString( );
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import static org.github.evenjn.diff.fixtures.random;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingCursor;
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.yarn.Cursor;
+import org.github.evenjn.yarn.EndOfCursorException;
+import org.github.evenjn.yarn.Tuple;
+import org.junit.Test;
+
+public class QGramIndexTest {
+
+	private static String print( Tuple<Neighbor<Integer>> neighbors,
+			ArrayList<KnittingTuple<Integer>> catalog ) {
+		StringBuilder sb = new StringBuilder( );
+		for ( int i = 0; i < neighbors.size( ); i++ ) {
+			Neighbor<Integer> neighbor = neighbors.get( i );
+			int position = 0;
+			while ( catalog.get( position ) != neighbor.tuple( ) ) {
+				position++;
+			}
+			sb.append( position );
+			sb.append( "@" );
+			sb.append( neighbor.distance( ) );
+			sb.append( " " );
+		}
+		return sb.toString( );
+	}
+
+	private static String brute( ArrayList<KnittingTuple<Integer>> catalog,
+			KnittingTuple<Integer> query, int max_distance ) {
+		StringBuilder sb = new StringBuilder( );
+		for ( int distance = 0; distance <= max_distance; distance++ ) {
+			for ( int i = 0; i < catalog.size( ); i++ ) {
+				if ( DiffingTuple.wrap( catalog.get( i ) )
+						.distance_levenshtein( query ) == distance ) {
+					sb.append( i + "@" + distance + " " );
+				}
+			}
+		}
+		return sb.toString( );
+	}
+
+	@Test
+	public void test( ) {
+		Random random = new Random( 11 );
+		for ( int q = 1; q <= 4; q++ ) {
+			QGramIndex<Integer> index = q % 2 == 0 ? QGramIndex.nu( q )
+					: QGramIndex.nu( q, KeyedEquivalencer.<Integer> nu( x -> x ) );
+			ArrayList<KnittingTuple<Integer>> catalog = new ArrayList<>( );
+			for ( int i = 0; i < 300; i++ ) {
+				// Tuples differ by few edits, so searches find several of them.
+				KnittingTuple<Integer> tuple = i > 0 && random.nextBoolean( )
+						? mutate( random, catalog.get( random.nextInt( i ) ) )
+						: random( random, random.nextInt( 30 ), 6 );
+				catalog.add( tuple );
+				index.add( tuple );
+			}
+			assertEquals( "size", 300, index.size( ) );
+			ArrayList<KnittingTuple<Integer>> queries = new ArrayList<>( );
+			for ( int i = 0; i < 50; i++ ) {
+				queries.add( mutate( random, catalog.get( random.nextInt( 300 ) ) ) );
+			}
+			// Symbols that are not in the index match nothing.
+			queries.add( random( random, 20, 8 ) );
+			int max_distance = q % 3 + 1;
+			Cursor<Tuple<Neighbor<Integer>>> join = index.join(
+					KnittingCursor.wrap( queries.iterator( ) ), max_distance );
+			for ( KnittingTuple<Integer> query : queries ) {
+				String expected = brute( catalog, query, max_distance );
+				assertEquals( "within", expected,
+						print( index.within( query, max_distance ), catalog ) );
+				try {
+					assertEquals( "join", expected, print( join.next( ), catalog ) );
+				}
+				catch ( EndOfCursorException e ) {
+					throw new IllegalStateException( e );
+				}
+				for ( int distance : new int[] { 0, 7 } ) {
+					assertEquals( "distance " + distance,
+							brute( catalog, query, distance ),
+							print( index.within( query, distance ), catalog ) );
+				}
+			}
+		}
+	}
+
+	private static KnittingTuple<Integer> mutate( Random random,
+			KnittingTuple<Integer> tuple ) {
+		ArrayList<Integer> result = new ArrayList<>( );
+		for ( int i = 0; i < tuple.size( ); i++ ) {
+			result.add( tuple.get( i ) );
+		}
+		for ( int edits = random.nextInt( 4 ); edits > 0; edits-- ) {
+			int position = random.nextInt( result.size( ) + 1 );
+			switch ( random.nextInt( 3 ) ) {
+				case 0:
+					result.add( position, random.nextInt( 6 ) );
+					break;
+				case 1:
+					if ( position < result.size( ) ) {
+						result.remove( position );
+					}
+					break;
+				default:
+					if ( position < result.size( ) ) {
+						result.set( position, random.nextInt( 6 ) );
+					}
+			}
+		}
+		return KnittingTuple.wrap( result );
+	}
+}
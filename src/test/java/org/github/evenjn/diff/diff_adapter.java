@@ -20,11 +20,11 @@ package org.github.evenjn.diff;
 import static org.github.evenjn.diff.Diff.adiff_bisect;
 import static org.github.evenjn.diff.Diff.adiff_cleanupMerge;
 import static org.github.evenjn.diff.Diff.adiff_main_nc;
+import static org.github.evenjn.diff.Diff.texts;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
 
-import org.github.evenjn.diff.DiffOp;
 import org.github.evenjn.knit.KnittingCursor;
 import org.github.evenjn.knit.KnittingTuple;
 import org.github.evenjn.lang.BasicEquivalencer;
@@ -35,26 +35,33 @@ import name.fraser.neil.plaintext.diff_match_patch.Diff;
 
 public class diff_adapter {
 
+	/**
+	 * diff_match_patch sets no deadline as Long.MAX_VALUE.
+	 */
+	private static long deadline( long deadline ) {
+		return deadline == Long.MAX_VALUE ? -1 : deadline;
+	}
+
 	public static LinkedList<Diff> diff_main_nc( String text1, String text2,
 			long deadline ) {
-		LinkedList<DiffOp<Integer, Integer>> diffs = adiff_main_nc( tt( text1 ),
-				tt( text2 ), new BasicEquivalencer<Integer, Integer>( ), deadline );
-		LinkedList<Diff> result = new LinkedList<Diff>( );
-		for ( DiffOp<Integer, Integer> d : diffs ) {
-			result.add( encode( d ) );
-		}
-		return result;
+		KnittingTuple<Integer> t1 = tt( text1 );
+		KnittingTuple<Integer> t2 = tt( text2 );
+		EditScript diffs = new EditScript( );
+		adiff_main_nc( t1, 0, t1.size( ), t2, 0, t2.size( ),
+				new BasicEquivalencer<Integer, Integer>( ), DiffOptions.nu( ),
+				deadline( deadline ), diffs );
+		return encode( t1, t2, diffs );
 	}
 
 	public static LinkedList<Diff> diff_bisect( String text1, String text2,
 			long deadline ) {
-		LinkedList<DiffOp<Integer, Integer>> diffs = adiff_bisect( tt( text1 ),
-				tt( text2 ), new BasicEquivalencer<Integer, Integer>( ), deadline );
-		LinkedList<Diff> result = new LinkedList<Diff>( );
-		for ( DiffOp<Integer, Integer> d : diffs ) {
-			result.add( encode( d ) );
-		}
-		return result;
+		KnittingTuple<Integer> t1 = tt( text1 );
+		KnittingTuple<Integer> t2 = tt( text2 );
+		EditScript diffs = new EditScript( );
+		adiff_bisect( t1, 0, t1.size( ), t2, 0, t2.size( ),
+				new BasicEquivalencer<Integer, Integer>( ), DiffOptions.nu( ),
+				deadline( deadline ), diffs );
+		return encode( t1, t2, diffs );
 	}
 
 	private static KnittingTuple<Integer> tt( String s ) {
@@ -64,58 +71,77 @@ public class diff_adapter {
 				.collect( new ArrayList<Integer>( ) ) );
 	}
 
-	private static DiffOp<Integer, Integer> decode( Diff diff ) {
+	private static int kind( Diff diff ) {
 		switch ( diff.operation ) {
 			case DELETE:
-				return DiffOp.delete( tt( diff.text ) );
+				return EditScript.DELETE;
 			case INSERT:
-				return DiffOp.insert( tt( diff.text ) );
+				return EditScript.INSERT;
 			case EQUAL:
-				return DiffOp.equal( tt( diff.text ), tt( diff.text ) );
+				return EditScript.EQUAL;
 			default:
 				throw new IllegalStateException( );
 		}
 	}
 
-	private static Diff encode( DiffOp<Integer, Integer> diff ) {
-		diff_match_patch.Operation operation;
-		Tuple<Integer> tuple = null;
-		switch ( diff.getOperation( ) ) {
-			case DELETE:
-				tuple = diff.getDeletedText( );
-				operation = diff_match_patch.Operation.DELETE;
-				break;
-			case INSERT:
-				tuple = diff.getInsertedText( );
-				operation = diff_match_patch.Operation.INSERT;
-				break;
-			case EQUAL:
-				tuple = diff.getTextFront( );
-				operation = diff_match_patch.Operation.EQUAL;
-				break;
-			default:
-				throw new IllegalStateException( );
-		}
-		StringBuilder sb = new StringBuilder( );
-		for ( int i = 0; i < tuple.size( ); i++ ) {
-			Integer cp = tuple.get( i );
-			char[] chars = Character.toChars( cp );
-			sb.append( chars );
+	private static LinkedList<Diff> encode( Tuple<Integer> text1,
+			Tuple<Integer> text2, EditScript diffs ) {
+		LinkedList<Diff> result = new LinkedList<Diff>( );
+		int position1 = 0;
+		int position2 = 0;
+		for ( int i = 0; i < diffs.size( ); i++ ) {
+			diff_match_patch.Operation operation;
+			StringBuilder sb = new StringBuilder( );
+			switch ( diffs.kind( i ) ) {
+				case EditScript.DELETE:
+					operation = diff_match_patch.Operation.DELETE;
+					append( sb, text1, position1, diffs.length( i ) );
+					break;
+				case EditScript.INSERT:
+					operation = diff_match_patch.Operation.INSERT;
+					append( sb, text2, position2, diffs.length( i ) );
+					break;
+				default:
+					operation = diff_match_patch.Operation.EQUAL;
+					append( sb, text1, position1, diffs.length( i ) );
+					break;
+			}
+			position1 += diffs.frontLength( i );
+			position2 += diffs.backLength( i );
+			result.add( new Diff( operation, sb.toString( ) ) );
 		}
-		String text = sb.toString( );
-		Diff result = new Diff( operation, text );
 		return result;
 	}
 
+	private static void append( StringBuilder sb, Tuple<Integer> tuple,
+			int start, int length ) {
+		for ( int i = start; i < start + length; i++ ) {
+			sb.append( Character.toChars( tuple.get( i ) ) );
+		}
+	}
+
 	public static void diff_cleanupMerge( LinkedList<Diff> diffs ) {
-		LinkedList<DiffOp<Integer, Integer>> decoded = new LinkedList<>( );
+		// text1 is made of equalities and deletions, text2 of equalities and
+		// insertions.
+		StringBuilder sb1 = new StringBuilder( );
+		StringBuilder sb2 = new StringBuilder( );
+		EditScript decoded = new EditScript( );
 		for ( Diff d : diffs ) {
-			decoded.add( decode( d ) );
+			int kind = kind( d );
+			if ( kind != EditScript.INSERT ) {
+				sb1.append( d.text );
+			}
+			if ( kind != EditScript.DELETE ) {
+				sb2.append( d.text );
+			}
+			decoded.add( kind, d.text.codePointCount( 0, d.text.length( ) ) );
 		}
-		adiff_cleanupMerge( decoded, new BasicEquivalencer<Integer, Integer>( ) );
+		KnittingTuple<Integer> t1 = tt( sb1.toString( ) );
+		KnittingTuple<Integer> t2 = tt( sb2.toString( ) );
+		adiff_cleanupMerge(
+				texts( t1, t2, new BasicEquivalencer<Integer, Integer>( ) ), 0, 0,
+				decoded, 0 );
 		diffs.clear( );
-		for ( DiffOp<Integer, Integer> d : decoded ) {
-			diffs.add( encode( d ) );
-		}
+		diffs.addAll( encode( t1, t2, decoded ) );
 	}
 }
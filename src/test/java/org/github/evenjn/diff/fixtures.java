@@ -0,0 +1,78 @@
+/**
+ *
+ * Copyright 2018 Marco Trevisan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.github.evenjn.diff;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.github.evenjn.knit.KnittingTuple;
+import org.github.evenjn.yarn.Tuple;
+
+/**
+ * Tuples shared by the tests.
+ */
+class fixtures {
+
+	private fixtures() {
+	}
+
+	/**
+	 * Returns a tuple of the argument size, of integers from 0 to 4.
+	 */
+	static KnittingTuple<Integer> random( Random random, int size ) {
+		return random( random, size, 0, 5 );
+	}
+
+	/**
+	 * Returns a tuple of the argument size, of integers from 0 included to
+	 * {@code alphabet} excluded.
+	 */
+	static KnittingTuple<Integer> random( Random random, int size,
+			int alphabet ) {
+		return random( random, size, 0, alphabet );
+	}
+
+	/**
+	 * Returns a tuple of the argument size, of integers from {@code low}
+	 * included to {@code high} excluded.
+	 */
+	static KnittingTuple<Integer> random( Random random, int size, int low,
+			int high ) {
+		ArrayList<Integer> result = new ArrayList<>( );
+		for ( int i = 0; i < size; i++ ) {
+			result.add( low + random.nextInt( high - low ) );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	static KnittingTuple<Character> chars( String string ) {
+		ArrayList<Character> result = new ArrayList<>( );
+		for ( char c : string.toCharArray( ) ) {
+			result.add( c );
+		}
+		return KnittingTuple.wrap( result );
+	}
+
+	static <K> String string( Tuple<K> tuple ) {
+		StringBuilder result = new StringBuilder( );
+		for ( int i = 0; i < tuple.size( ); i++ ) {
+			result.append( tuple.get( i ) );
+		}
+		return result.toString( );
+	}
+}